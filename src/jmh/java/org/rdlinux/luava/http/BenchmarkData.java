@@ -0,0 +1,157 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 性能测试公用数据
+ */
+public class BenchmarkData {
+    public static Map<String, Object> flatMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("name", "zhangsan");
+        map.put("age", 18);
+        map.put("city", "成都 高新区");
+        map.put("page", 1);
+        map.put("size", 20);
+        map.put("sort", "createTime,desc");
+        return map;
+    }
+
+    public static Map<String, Object> nestedMap() {
+        Map<String, Object> map = flatMap();
+        Map<String, Object> student = new HashMap<>();
+        student.put("a", "z");
+        student.put("b", "y");
+        map.put("student", student);
+        map.put("tags", Arrays.asList("java", "http", "json"));
+        map.put("ids", new String[]{"1", "2", "3", "4"});
+        return map;
+    }
+
+    public static List<Item> items(int count) {
+        List<Item> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Item item = new Item();
+            item.setId((long) i);
+            item.setName("item-" + i);
+            item.setPrice(i * 1.5D);
+            item.setTags(Arrays.asList("a", "b", "c"));
+            items.add(item);
+        }
+        return items;
+    }
+
+    public static CloseableHttpResponse jsonResponse(byte[] body) {
+        BenchmarkResponse response = new BenchmarkResponse();
+        response.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+        return response;
+    }
+
+    public static class Item {
+        private Long id;
+        private String name;
+        private Double price;
+        private List<String> tags;
+
+        public Long getId() {
+            return this.id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Double getPrice() {
+            return this.price;
+        }
+
+        public void setPrice(Double price) {
+            this.price = price;
+        }
+
+        public List<String> getTags() {
+            return this.tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+    }
+
+    public static class Query {
+        private String name = "zhangsan";
+        private Integer page = 1;
+        private Integer size = 20;
+        private String keyword = "http client 性能";
+        private Query child;
+
+        public String getName() {
+            return this.name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Integer getPage() {
+            return this.page;
+        }
+
+        public void setPage(Integer page) {
+            this.page = page;
+        }
+
+        public Integer getSize() {
+            return this.size;
+        }
+
+        public void setSize(Integer size) {
+            this.size = size;
+        }
+
+        public String getKeyword() {
+            return this.keyword;
+        }
+
+        public void setKeyword(String keyword) {
+            this.keyword = keyword;
+        }
+
+        public Query getChild() {
+            return this.child;
+        }
+
+        public void setChild(Query child) {
+            this.child = child;
+        }
+    }
+
+    private static class BenchmarkResponse extends BasicHttpResponse implements CloseableHttpResponse {
+        private BenchmarkResponse() {
+            super(HttpVersion.HTTP_1_1, 200, "OK");
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
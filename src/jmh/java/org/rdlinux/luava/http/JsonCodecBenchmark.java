@@ -0,0 +1,76 @@
+package org.rdlinux.luava.http;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.apache.http.HttpEntity;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求体json序列化及响应json解析性能测试, 按元素个数区分负载大小
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonCodecBenchmark {
+    private static final TypeReference<List<BenchmarkData.Item>> itemsType =
+            new TypeReference<List<BenchmarkData.Item>>() {
+            };
+    private static final OutputStream nullOutputStream = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+    @Param({"10", "1000", "50000"})
+    private int itemCount;
+    private List<BenchmarkData.Item> items;
+    private byte[] json;
+
+    @Setup
+    public void setup() throws IOException {
+        this.items = BenchmarkData.items(this.itemCount);
+        this.json = JacksonSupport.camelCaseMapper.writeValueAsBytes(this.items);
+    }
+
+    /**
+     * httpRequest中非HttpEntity类型body的序列化及写出
+     */
+    @Benchmark
+    public long serializeBody() throws IOException {
+        HttpEntity entity = HttpRequestFactory.createEntity(this.items, false, null);
+        entity.writeTo(nullOutputStream);
+        return entity.getContentLength();
+    }
+
+    /**
+     * 响应体直接从流中解析
+     */
+    @Benchmark
+    public List<BenchmarkData.Item> decodeStreaming() {
+        return HttpRequestUtils.responseDataConversion(BenchmarkData.jsonResponse(this.json), itemsType);
+    }
+
+    /**
+     * 响应体先转换为字符串再解析, 作为对照
+     */
+    @Benchmark
+    public List<BenchmarkData.Item> decodeViaString() throws IOException {
+        String body = EntityUtils.toString(BenchmarkData.jsonResponse(this.json).getEntity());
+        return JacksonSupport.camelCaseMapper.readValue(body, itemsType);
+    }
+}
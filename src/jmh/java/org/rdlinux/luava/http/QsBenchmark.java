@@ -0,0 +1,75 @@
+package org.rdlinux.luava.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Qs.stringify性能测试
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QsBenchmark {
+    private Map<String, Object> flatMap;
+    private Map<String, Object> nestedMap;
+    private BenchmarkData.Query flatQuery;
+    private BenchmarkData.Query nestedQuery;
+    private Map<String, Object> ids;
+    private QsOptions repeatOptions;
+    private QsOptions commaOptions;
+
+    @Setup
+    public void setup() {
+        this.flatMap = BenchmarkData.flatMap();
+        this.nestedMap = BenchmarkData.nestedMap();
+        this.flatQuery = new BenchmarkData.Query();
+        this.nestedQuery = new BenchmarkData.Query();
+        this.nestedQuery.setChild(new BenchmarkData.Query());
+        long[] ids = new long[5000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = 1000000000L + i;
+        }
+        this.ids = Collections.singletonMap("ids", ids);
+        this.repeatOptions = new QsOptions();
+        this.commaOptions = new QsOptions().setArrayFormat(QsOptions.ArrayFormat.COMMA);
+    }
+
+    @Benchmark
+    public String flatMap() {
+        return Qs.stringify(this.flatMap);
+    }
+
+    @Benchmark
+    public String nestedMap() {
+        return Qs.stringify(this.nestedMap);
+    }
+
+    @Benchmark
+    public String flatPojo() {
+        return Qs.stringify(this.flatQuery);
+    }
+
+    @Benchmark
+    public String nestedPojo() {
+        return Qs.stringify(this.nestedQuery);
+    }
+
+    @Benchmark
+    public String idsRepeat() {
+        return Qs.stringify(this.ids, this.repeatOptions);
+    }
+
+    @Benchmark
+    public String idsComma() {
+        return Qs.stringify(this.ids, this.commaOptions);
+    }
+}
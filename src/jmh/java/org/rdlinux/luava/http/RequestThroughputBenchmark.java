@@ -0,0 +1,117 @@
+package org.rdlinux.luava.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于进程内http服务的端到端吞吐量测试, 对比连接池、无连接池配置及异步客户端
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class RequestThroughputBenchmark {
+    @Param({"pooled", "unpooled", "async"})
+    private String client;
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private String url;
+    private HttpRequestUtils httpRequestUtils;
+    private AsyncHttpRequestUtils asyncHttpRequestUtils;
+    private List<BenchmarkData.Item> body;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        // jdk内置http服务默认未关闭nagle算法, 会与客户端的延迟确认叠加产生约40ms的停顿
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        byte[] response = JacksonSupport.camelCaseMapper.writeValueAsBytes(BenchmarkData.items(20));
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 512);
+        this.server.createContext("/", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) != -1) {
+                    // 丢弃请求体
+                }
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        this.serverExecutor = Executors.newFixedThreadPool(16);
+        this.server.setExecutor(this.serverExecutor);
+        this.server.start();
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/items";
+        ConnectPool connectPool = new ConnectPool().setSingleMaxActive(16).setAllMaxActive(32);
+        if ("pooled".equals(this.client)) {
+            this.httpRequestUtils = new HttpRequestUtils(connectPool);
+        } else if ("unpooled".equals(this.client)) {
+            this.httpRequestUtils = new HttpRequestUtils();
+        } else {
+            this.asyncHttpRequestUtils = new AsyncHttpRequestUtils(connectPool);
+        }
+        this.body = BenchmarkData.items(20);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (this.httpRequestUtils != null) {
+            this.httpRequestUtils.close();
+        }
+        if (this.asyncHttpRequestUtils != null) {
+            this.asyncHttpRequestUtils.close();
+        }
+        this.server.stop(0);
+        this.serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public int get() throws IOException, ExecutionException, InterruptedException {
+        if (this.asyncHttpRequestUtils != null) {
+            return this.consume(this.asyncHttpRequestUtils.getRequest(this.url).get());
+        }
+        try (CloseableHttpResponse response = this.httpRequestUtils.getRequest(this.url)) {
+            return this.consume(response);
+        }
+    }
+
+    @Benchmark
+    public int post() throws IOException, ExecutionException, InterruptedException {
+        if (this.asyncHttpRequestUtils != null) {
+            return this.consume(this.asyncHttpRequestUtils.postRequest(this.url, this.body).get());
+        }
+        try (CloseableHttpResponse response = this.httpRequestUtils.postRequest(this.url, this.body)) {
+            return this.consume(response);
+        }
+    }
+
+    private int consume(HttpResponse response) throws IOException {
+        EntityUtils.consume(response.getEntity());
+        return response.getStatusLine().getStatusCode();
+    }
+}
@@ -1,28 +1,38 @@
 package org.rdlinux.luava.http;
 
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
 import org.apache.http.config.ConnectionConfig;
-import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.impl.DefaultConnectionReuseStrategy;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.apache.http.impl.nio.client.HttpAsyncClients;
 import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
 import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
 import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.NHttpClientConnection;
 import org.apache.http.nio.conn.NHttpClientConnectionManager;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
 import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.nio.reactor.IOReactorExceptionHandler;
+import org.apache.http.pool.ConnPoolControl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class AsyncCloseableHttpClientBuilder extends BaseBuilder {
     private static final Logger log = LoggerFactory.getLogger(AsyncCloseableHttpClientBuilder.class);
     private ConnectPool connectPool;
+    private ConnPoolControl<HttpRoute> poolControl;
 
     /**
      * 创建异步连接池管理
@@ -55,32 +65,87 @@ public class AsyncCloseableHttpClientBuilder extends BaseBuilder {
             }
         });
         // 配置连接池
-        clientConnectionManager = new PoolingNHttpClientConnectionManager(ioReactor);
+        SslConfig sslConfig = sslConfig(this.connectPool);
+        // https使用连接池配置的SSLContext, 连接池管理对象存在时客户端构建器上的ssl配置不生效
+        Registry<SchemeIOSessionStrategy> ioSessionStrategyRegistry = RegistryBuilder
+                .<SchemeIOSessionStrategy>create()
+                .register("http", NoopIOSessionStrategy.INSTANCE)
+                .register("https", new SSLIOSessionStrategy(sslConfig.getSSLContext(),
+                        sslConfig.getHostnameVerifier()))
+                .build();
+        clientConnectionManager = this.createPoolingConnectionManager(ioReactor, ioSessionStrategyRegistry,
+                this.connectPool.getMetrics());
         // 最大连接
         clientConnectionManager.setMaxTotal(this.connectPool.getAllMaxActive());
         // 默认的每个路由的最大连接数
         clientConnectionManager.setDefaultMaxPerRoute(this.connectPool.getSingleMaxActive());
-        // 设置路由的最大连接数，会覆盖defaultMaxPerRoute
-        // clientConnectionManager.setMaxPerRoute(new HttpRoute(new
-        // HttpHost("https://www.linuxprobe.org", 443)), 10);
         ConnectionConfig connectionConfig = ConnectionConfig.custom().build();
         // 默认路由的socket配置
         clientConnectionManager.setDefaultConnectionConfig(connectionConfig);
-        // 针对特定路由的socket配置
-        // clientConnectionManager.setSocketConfig(new HttpHost("somehost", 80),
-        // socketConfig);
+        // 针对特定路由的最大连接数, 超时时间在请求配置中按路由覆盖
+        this.bindRouteConfigs(clientConnectionManager, this.connectPool);
+        if (this.connectPool.getMetrics() != null) {
+            this.connectPool.getMetrics().bindConnectionPool(nextPoolName("async-http-client"),
+                    clientConnectionManager);
+        }
         clientConnectionManager.closeIdleConnections(this.connectPool.getMaxIdleTime(), TimeUnit.MILLISECONDS);
+        this.poolControl = clientConnectionManager;
         return clientConnectionManager;
     }
 
+    /**
+     * 创建连接池, 配置了指标采集时记录获取连接的等待时间, 新建连接时包含建立连接的时间
+     */
+    private PoolingNHttpClientConnectionManager createPoolingConnectionManager(
+            DefaultConnectingIOReactor ioReactor, Registry<SchemeIOSessionStrategy> ioSessionStrategyRegistry,
+            HttpMetrics metrics) {
+        if (metrics == null) {
+            return new PoolingNHttpClientConnectionManager(ioReactor, ioSessionStrategyRegistry);
+        }
+        return new PoolingNHttpClientConnectionManager(ioReactor, ioSessionStrategyRegistry) {
+            @Override
+            public Future<NHttpClientConnection> requestConnection(HttpRoute route, Object state,
+                                                                   long connectTimeout, long leaseTimeout,
+                                                                   TimeUnit timeUnit,
+                                                                   FutureCallback<NHttpClientConnection> callback) {
+                long start = System.nanoTime();
+                String routeKey = RouteConfig.routeKey(route);
+                return super.requestConnection(route, state, connectTimeout, leaseTimeout, timeUnit,
+                        new FutureCallback<NHttpClientConnection>() {
+                            @Override
+                            public void completed(NHttpClientConnection result) {
+                                metrics.recordLeaseWait(routeKey, System.nanoTime() - start, true);
+                                if (callback != null) {
+                                    callback.completed(result);
+                                }
+                            }
+
+                            @Override
+                            public void failed(Exception ex) {
+                                metrics.recordLeaseWait(routeKey, System.nanoTime() - start, false);
+                                if (callback != null) {
+                                    callback.failed(ex);
+                                }
+                            }
+
+                            @Override
+                            public void cancelled() {
+                                metrics.recordLeaseWait(routeKey, System.nanoTime() - start, false);
+                                if (callback != null) {
+                                    callback.cancelled();
+                                }
+                            }
+                        });
+            }
+        };
+    }
+
     private CloseableHttpAsyncClient getAsyncHttpClient() {
         if (this.connectPool == null) {
             return HttpAsyncClients.createDefault();
         } else {
             PoolingNHttpClientConnectionManager asyncClientConnectionManager = this.createAsyncClientConnectionManager();
             CloseableHttpAsyncClient client = HttpAsyncClients.custom()
-                    .setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE)
-                    .setSSLContext(this.createSSLContext())
                     // 配置连接池管理对象
                     .setConnectionManager(asyncClientConnectionManager)
                     // 设置保持长连接策略
@@ -102,6 +167,13 @@ public class AsyncCloseableHttpClientBuilder extends BaseBuilder {
         return this;
     }
 
+    /**
+     * 获取最近一次构建的客户端使用的连接池, 未使用连接池配置时为null
+     */
+    ConnPoolControl<HttpRoute> getPoolControl() {
+        return this.poolControl;
+    }
+
     /**
      * 构建连接池
      */
@@ -0,0 +1,712 @@
+package org.rdlinux.luava.http;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.*;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.execchain.RequestAbortedException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 异步http请求工具, 基于NIO连接池, 请求不占用调用线程;<br/>
+ * 转换返回数据可使用: asyncHttpRequestUtils.getRequest(url).thenApply(r -> AsyncHttpRequestUtils.responseDataConversion(r, Type.class))
+ */
+public class AsyncHttpRequestUtils {
+    private static final Logger log = LoggerFactory.getLogger(AsyncHttpRequestUtils.class);
+    private volatile CloseableHttpAsyncClient httpClient;
+    private volatile ConnPoolControl<HttpRoute> poolControl;
+    private volatile Http2Transport http2Transport;
+    private ConnectPool connectPool;
+
+    /**
+     * 构造一个异步http请求工具
+     *
+     * @param connectPool 连接池配置对象,当为null时,使用默认配置
+     */
+    public AsyncHttpRequestUtils(ConnectPool connectPool) {
+        if (connectPool == null) {
+            connectPool = new ConnectPool();
+        }
+        this.connectPool = connectPool;
+    }
+
+    /**
+     * 构造一个使用默认连接池配置的异步http请求工具
+     */
+    public AsyncHttpRequestUtils() {
+        this(null);
+    }
+
+    /**
+     * 把返回数据转换为指定对象
+     */
+    public static <T> T responseDataConversion(HttpResponse response, Class<T> type) {
+        ObjectMapper objectMapper = JacksonSupport.camelCaseMapper;
+        return HttpRequestUtils.responseToObject(response, objectMapper, objectMapper.constructType(type));
+    }
+
+    /**
+     * 把返回数据转换为指定对象
+     */
+    public static <T> T responseDataSnakeConversion(HttpResponse response, Class<T> type) {
+        ObjectMapper objectMapper = JacksonSupport.snakeCaseMapper;
+        return HttpRequestUtils.responseToObject(response, objectMapper, objectMapper.constructType(type));
+    }
+
+    /**
+     * 把返回数据转换为指定对象
+     */
+    public static <T> T responseDataConversion(HttpResponse response, Type type) {
+        ObjectMapper objectMapper = JacksonSupport.camelCaseMapper;
+        return HttpRequestUtils.responseToObject(response, objectMapper, objectMapper.constructType(type));
+    }
+
+    /**
+     * 把返回数据转换为指定对象
+     */
+    public static <T> T responseDataSnakeConversion(HttpResponse response, Type type) {
+        ObjectMapper objectMapper = JacksonSupport.snakeCaseMapper;
+        return HttpRequestUtils.responseToObject(response, objectMapper, objectMapper.constructType(type));
+    }
+
+    /**
+     * 把返回数据转换为指定对象
+     */
+    public static <T> T responseDataConversion(HttpResponse response, JavaType type) {
+        return HttpRequestUtils.responseToObject(response, JacksonSupport.camelCaseMapper, type);
+    }
+
+    /**
+     * 把返回数据转换为指定对象
+     */
+    public static <T> T responseDataSnakeConversion(HttpResponse response, JavaType type) {
+        return HttpRequestUtils.responseToObject(response, JacksonSupport.snakeCaseMapper, type);
+    }
+
+    /**
+     * 把返回数据转换为指定对象
+     */
+    public static <T> T responseDataConversion(HttpResponse response, TypeReference<T> type) {
+        ObjectMapper objectMapper = JacksonSupport.camelCaseMapper;
+        return HttpRequestUtils.responseToObject(response, objectMapper,
+                objectMapper.getTypeFactory().constructType(type));
+    }
+
+    /**
+     * 把返回数据转换为指定对象
+     */
+    public static <T> T responseDataSnakeConversion(HttpResponse response, TypeReference<T> type) {
+        ObjectMapper objectMapper = JacksonSupport.snakeCaseMapper;
+        return HttpRequestUtils.responseToObject(response, objectMapper,
+                objectMapper.getTypeFactory().constructType(type));
+    }
+
+    /**
+     * 异步http请求, 取消返回的future会中止请求
+     *
+     * @param method      请求方法
+     * @param url         请求地址
+     * @param urlParams   url参数
+     * @param bodyParam   body参数,如果不是HttpEntity类型,将根据useFormData使用json或formData传递body参数
+     * @param useFormData 使用formData传递参数
+     * @param headers     请求头
+     */
+    public CompletableFuture<HttpResponse> httpRequest(String method, String url, Object urlParams, Object bodyParam,
+                                                       boolean useFormData, Header... headers) {
+        HttpEntityEnclosingRequestBase request = HttpRequestFactory.createRequest(method, url, urlParams, bodyParam,
+                useFormData, this.connectPool, headers);
+        HttpRequestFactory.applyRouteConfig(request, this.connectPool);
+        return this.execute(request);
+    }
+
+    /**
+     * 执行请求, 配置了对冲策略时, 幂等的安全请求超过对冲延时未返回则再发送一次相同请求, 先返回成功响应的请求胜出,
+     * 另一请求被取消, 两次请求均失败时才失败
+     */
+    private CompletableFuture<HttpResponse> execute(HttpRequestBase request) {
+        HedgeSupport hedgeSupport = this.connectPool.getHedgeSupport();
+        if (!hedgeSupport.isEnabled() || !HttpRequestFactory.isSafeRequest(request)) {
+            return this.doExecute(request);
+        }
+        String route = RouteGuard.routeKey(request.getURI());
+        hedgeSupport.onRequest(route);
+        long delay = hedgeSupport.hedgeDelay(route);
+        HttpRequestBase hedgeRequest = null;
+        if (delay >= 0) {
+            // 发送前复制, 发送时会修改请求头, 负载均衡地址也会被替换为实例地址
+            try {
+                hedgeRequest = (HttpRequestBase) request.clone();
+            } catch (CloneNotSupportedException e) {
+                delay = -1;
+            }
+        }
+        CompletableFuture<HttpResponse> primary = this.timedExecute(request, route, hedgeSupport);
+        if (delay < 0) {
+            return primary;
+        }
+        HttpRequestBase hedged = hedgeRequest;
+        CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+        AtomicInteger attempts = new AtomicInteger(1);
+        AtomicInteger failures = new AtomicInteger();
+        AtomicReference<CompletableFuture<HttpResponse>> hedge = new AtomicReference<>();
+        primary.whenComplete((response, throwable) -> offerHedged(result, attempts, failures, response, throwable,
+                hedge.get()));
+        RetrySupport.schedule(() -> {
+            if (result.isDone() || !hedgeSupport.tryAcquire(route)) {
+                return;
+            }
+            attempts.incrementAndGet();
+            if (result.isDone()) {
+                return;
+            }
+            CompletableFuture<HttpResponse> future = this.timedExecute(hedged, route, hedgeSupport);
+            hedge.set(future);
+            future.whenComplete((response, throwable) -> offerHedged(result, attempts, failures, response,
+                    throwable, primary));
+        }, delay);
+        result.whenComplete((response, throwable) -> {
+            if (result.isCancelled()) {
+                primary.cancel(true);
+                CompletableFuture<HttpResponse> future = hedge.get();
+                if (future != null) {
+                    future.cancel(true);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 处理对冲请求中一次请求的结果
+     *
+     * @param other 另一请求, 本次请求胜出时取消
+     */
+    private static void offerHedged(CompletableFuture<HttpResponse> result, AtomicInteger attempts,
+                                    AtomicInteger failures, HttpResponse response, Throwable throwable,
+                                    CompletableFuture<HttpResponse> other) {
+        if (throwable == null) {
+            if (result.complete(response)) {
+                if (other != null) {
+                    other.cancel(true);
+                }
+            } else {
+                EntityUtils.consumeQuietly(response.getEntity());
+            }
+        } else if (failures.incrementAndGet() >= attempts.get()) {
+            result.completeExceptionally(throwable);
+        }
+    }
+
+    /**
+     * 执行请求并记录成功请求的耗时, 用于计算对冲延时
+     */
+    private CompletableFuture<HttpResponse> timedExecute(HttpRequestBase request, String route,
+                                                         HedgeSupport hedgeSupport) {
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse> future = this.doExecute(request);
+        future.thenRun(() -> hedgeSupport.record(route, System.nanoTime() - start));
+        return future;
+    }
+
+    /**
+     * 执行请求, 路由熔断或等待连接的请求过多时直接失败, 按重试策略延时重试,
+     * 配置了指标采集时记录包含重试在内的耗时及传输字节数
+     */
+    private CompletableFuture<HttpResponse> doExecute(HttpRequestBase request) {
+        CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+        // 先创建客户端, 以便检查其连接池, HTTP/2传输不检查等待连接的请求数
+        if (!this.connectPool.isHttp2()) {
+            this.getHttpClient();
+        }
+        ServiceEndpoint endpoint;
+        try {
+            endpoint = HttpRequestFactory.resolveEndpoint(request, this.connectPool, this.poolControl);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        URI uri = request.getURI();
+        String route = RouteGuard.routeKey(uri);
+        RouteGuard routeGuard = this.connectPool.getRouteGuard();
+        try {
+            routeGuard.acquire(route, uri, this.poolControl);
+        } catch (RequestRejectedException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        // 取消的请求不记录结果, 归还熔断器许可
+        result.whenComplete((response, throwable) -> {
+            if (result.isCancelled()) {
+                routeGuard.onCancel(route);
+            }
+        });
+        if (endpoint != null) {
+            endpoint.onStart();
+            long start = System.nanoTime();
+            result.whenComplete((response, throwable) -> {
+                if (result.isCancelled()) {
+                    endpoint.onCancel();
+                } else {
+                    endpoint.onComplete(response == null ? -1 : response.getStatusLine().getStatusCode(),
+                            System.nanoTime() - start);
+                }
+            });
+        }
+        HttpMetrics metrics = this.connectPool.getMetrics();
+        if (metrics != null) {
+            MetricsSupport.beforeRequest(request, metrics);
+        }
+        // 异步客户端不支持响应解压, 由此处声明Accept-Encoding并在收到响应后解压
+        CompressionSupport.addAcceptEncoding(request,
+                CompressionSupport.acceptEncoding(this.connectPool.getResponseCodecs()));
+        this.connectPool.getRetrySupport().onRequest(route);
+        AtomicReference<Future<?>> current = new AtomicReference<>();
+        this.executeAttempt(request, route, 1, System.nanoTime(), result, current);
+        result.whenComplete((response, throwable) -> {
+            Future<?> future = current.get();
+            if (result.isCancelled() && future != null) {
+                future.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 执行一次请求
+     *
+     * @param executionCount 本次为第几次执行
+     * @param current        当前执行中的请求, 用于取消
+     */
+    private void executeAttempt(HttpRequestBase request, String route, int executionCount, long start,
+                                CompletableFuture<HttpResponse> result,
+                                AtomicReference<Future<?>> current) {
+        if (result.isDone()) {
+            return;
+        }
+        HttpMetrics metrics = this.connectPool.getMetrics();
+        List<HttpCodec> responseCodecs = this.connectPool.getResponseCodecs();
+        RetrySupport retrySupport = this.connectPool.getRetrySupport();
+        RouteGuard routeGuard = this.connectPool.getRouteGuard();
+        FutureCallback<HttpResponse> callback = new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                if (result.isDone()) {
+                    // 已取消, 如对冲请求中的落后请求
+                    EntityUtils.consumeQuietly(response.getEntity());
+                    return;
+                }
+                long delay = HttpRequestFactory.isRepeatable(request)
+                        ? retrySupport.retryDelay(request, response, executionCount, route) : -1;
+                if (delay >= 0) {
+                    EntityUtils.consumeQuietly(response.getEntity());
+                    RetrySupport.schedule(() -> AsyncHttpRequestUtils.this.executeAttempt(request, route,
+                            executionCount + 1, start, result, current), delay);
+                    return;
+                }
+                if (metrics != null) {
+                    MetricsSupport.afterResponse(request, response, metrics, start);
+                }
+                routeGuard.onComplete(route, response.getStatusLine().getStatusCode(),
+                        System.nanoTime() - start);
+                CompressionSupport.decompress(response, responseCodecs);
+                result.complete(response);
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                // 被中止的请求与取消相同, 不计入指标及熔断统计
+                if (result.isDone() || ex instanceof RequestAbortedException || ex instanceof CancellationException) {
+                    result.cancel(false);
+                    return;
+                }
+                long delay = ex instanceof IOException && HttpRequestFactory.isRepeatable(request)
+                        ? retrySupport.retryDelay(request, (IOException) ex, executionCount, route) : -1;
+                if (delay >= 0) {
+                    RetrySupport.schedule(() -> AsyncHttpRequestUtils.this.executeAttempt(request, route,
+                            executionCount + 1, start, result, current), delay);
+                    return;
+                }
+                if (metrics != null) {
+                    MetricsSupport.afterFailure(request, metrics, start);
+                }
+                routeGuard.onComplete(route, -1, System.nanoTime() - start);
+                result.completeExceptionally(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                result.cancel(false);
+            }
+        };
+        Future<?> future;
+        try {
+            future = this.connectPool.isHttp2() ? this.getHttp2Transport().execute(request, callback)
+                    : this.getHttpClient().execute(request, callback);
+        } catch (RuntimeException e) {
+            // 如客户端已关闭
+            routeGuard.onCancel(route);
+            result.completeExceptionally(e);
+            return;
+        }
+        current.set(future);
+        if (result.isCancelled()) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * 异步http请求
+     *
+     * @param method    请求方法
+     * @param url       请求地址
+     * @param urlParams url参数
+     * @param bodyParam body参数,如果不是HttpEntity类型,使用json传递body参数
+     * @param headers   请求头
+     */
+    public CompletableFuture<HttpResponse> httpRequest(String method, String url, Object urlParams, Object bodyParam,
+                                                       Header... headers) {
+        return this.httpRequest(method, url, urlParams, bodyParam, false, headers);
+    }
+
+    /**
+     * get请求
+     *
+     * @param url     请求地址
+     * @param headers 请求头
+     */
+    public CompletableFuture<HttpResponse> getRequest(String url, Object urlParams, Object bodyParam,
+                                                      Header... headers) {
+        return this.httpRequest(HttpGet.METHOD_NAME, url, urlParams, bodyParam, headers);
+    }
+
+    /**
+     * get请求
+     *
+     * @param url       请求地址
+     * @param urlParams url参数
+     * @param headers   请求头
+     */
+    public CompletableFuture<HttpResponse> getRequest(String url, Object urlParams, Header... headers) {
+        return this.getRequest(url, urlParams, null, headers);
+    }
+
+    /**
+     * get请求
+     *
+     * @param url 请求地址
+     */
+    public CompletableFuture<HttpResponse> getRequest(String url) {
+        return this.getRequest(url, null);
+    }
+
+    /**
+     * delete请求
+     *
+     * @param url     请求地址
+     * @param headers 请求头
+     */
+    public CompletableFuture<HttpResponse> deleteRequest(String url, Object urlParams, Object bodyParam,
+                                                         Header... headers) {
+        return this.httpRequest(HttpDelete.METHOD_NAME, url, urlParams, bodyParam, headers);
+    }
+
+    /**
+     * delete请求
+     *
+     * @param url       请求地址
+     * @param urlParams url参数
+     * @param headers   请求头
+     */
+    public CompletableFuture<HttpResponse> deleteRequest(String url, Object urlParams, Header... headers) {
+        return this.deleteRequest(url, urlParams, null, headers);
+    }
+
+    /**
+     * delete请求
+     *
+     * @param url 请求地址
+     */
+    public CompletableFuture<HttpResponse> deleteRequest(String url) {
+        return this.deleteRequest(url, null);
+    }
+
+    /**
+     * head请求
+     *
+     * @param url     请求地址
+     * @param headers 请求头
+     */
+    public CompletableFuture<HttpResponse> headRequest(String url, Object urlParams, Object bodyParam,
+                                                       Header... headers) {
+        return this.httpRequest(HttpHead.METHOD_NAME, url, urlParams, bodyParam, headers);
+    }
+
+    /**
+     * head请求
+     *
+     * @param url       请求地址
+     * @param urlParams url参数
+     * @param headers   请求头
+     */
+    public CompletableFuture<HttpResponse> headRequest(String url, Object urlParams, Header... headers) {
+        return this.headRequest(url, urlParams, null, headers);
+    }
+
+    /**
+     * head请求
+     *
+     * @param url 请求地址
+     */
+    public CompletableFuture<HttpResponse> headRequest(String url) {
+        return this.headRequest(url, null);
+    }
+
+    /**
+     * options请求
+     *
+     * @param url     请求地址
+     * @param headers 请求头
+     */
+    public CompletableFuture<HttpResponse> optionsRequest(String url, Object urlParams, Object bodyParam,
+                                                          Header... headers) {
+        return this.httpRequest(HttpOptions.METHOD_NAME, url, urlParams, bodyParam, headers);
+    }
+
+    /**
+     * options请求
+     *
+     * @param url       请求地址
+     * @param urlParams url参数
+     * @param headers   请求头
+     */
+    public CompletableFuture<HttpResponse> optionsRequest(String url, Object urlParams, Header... headers) {
+        return this.optionsRequest(url, urlParams, null, headers);
+    }
+
+    /**
+     * options请求
+     *
+     * @param url 请求地址
+     */
+    public CompletableFuture<HttpResponse> optionsRequest(String url) {
+        return this.optionsRequest(url, null);
+    }
+
+    /**
+     * post请求
+     *
+     * @param url       请求地址, 不可为null
+     * @param urlParams url参数, 可为null
+     * @param bodyParam body参数,如果不是HttpEntity类型,则把bodyParam转换为json(如果是Sting,不转换),使用StringEntity传递参数,
+     *                  可为null
+     * @param headers   请求头, 可为null
+     */
+    public CompletableFuture<HttpResponse> postRequest(String url, Object urlParams, Object bodyParam,
+                                                       Header... headers) {
+        return this.httpRequest(HttpPost.METHOD_NAME, url, urlParams, bodyParam, headers);
+    }
+
+    /**
+     * post请求
+     *
+     * @param url       请求地址, 不可为null
+     * @param bodyParam body参数,如果不是HttpEntity类型,则把bodyParam转换为json(如果是Sting,不转换),使用StringEntity传递参数,
+     *                  可为null
+     * @param headers   请求头, 可为null
+     */
+    public CompletableFuture<HttpResponse> postRequest(String url, Object bodyParam, Header... headers) {
+        return this.postRequest(url, null, bodyParam, headers);
+    }
+
+    /**
+     * put请求
+     *
+     * @param url       请求地址, 不可为null
+     * @param urlParams url参数, 可为null
+     * @param bodyParam body参数,如果不是HttpEntity类型,则把bodyParam转换为json(如果是Sting,不转换),使用StringEntity传递参数,
+     *                  可为null
+     * @param headers   请求头, 可为null
+     */
+    public CompletableFuture<HttpResponse> putRequest(String url, Object urlParams, Object bodyParam,
+                                                      Header... headers) {
+        return this.httpRequest(HttpPut.METHOD_NAME, url, urlParams, bodyParam, headers);
+    }
+
+    /**
+     * put请求
+     *
+     * @param url       请求地址, 不可为null
+     * @param bodyParam body参数,如果不是HttpEntity类型,则把bodyParam转换为json(如果是Sting,不转换),使用StringEntity传递参数,
+     *                  可为null
+     * @param headers   请求头, 可为null
+     */
+    public CompletableFuture<HttpResponse> putRequest(String url, Object bodyParam, Header... headers) {
+        return this.putRequest(url, null, bodyParam, headers);
+    }
+
+    /**
+     * patch请求
+     *
+     * @param url       请求地址, 不可为null
+     * @param urlParams url参数, 可为null
+     * @param bodyParam body参数,如果不是HttpEntity类型,则把bodyParam转换为json(如果是Sting,不转换),使用StringEntity传递参数,
+     *                  可为null
+     * @param headers   请求头, 可为null
+     */
+    public CompletableFuture<HttpResponse> patchRequest(String url, Object urlParams, Object bodyParam,
+                                                        Header... headers) {
+        return this.httpRequest(HttpPatch.METHOD_NAME, url, urlParams, bodyParam, headers);
+    }
+
+    /**
+     * patch请求
+     *
+     * @param url       请求地址, 不可为null
+     * @param bodyParam body参数,如果不是HttpEntity类型,则把bodyParam转换为json(如果是Sting,不转换),使用StringEntity传递参数,
+     *                  可为null
+     * @param headers   请求头, 可为null
+     */
+    public CompletableFuture<HttpResponse> patchRequest(String url, Object bodyParam, Header... headers) {
+        return this.patchRequest(url, null, bodyParam, headers);
+    }
+
+    /**
+     * 异步http请求, 响应体以Reactive Streams发布, 需依赖org.reactivestreams:reactive-streams;<br/>
+     * 按订阅者请求的数量从连接读取响应体, 订阅者处理缓慢时暂停读取连接; 请求体可使用{@link PublisherEntity}按需发送;<br/>
+     * 请求不经过重试及对冲, 开启HTTP/2传输时也使用HTTP/1.1连接
+     *
+     * @param method    请求方法
+     * @param url       请求地址
+     * @param urlParams url参数
+     * @param bodyParam body参数,如果不是HttpEntity类型,使用json传递body参数
+     * @param headers   请求头
+     * @return 收到响应头时完成, 取消时中止请求
+     */
+    public CompletableFuture<ReactiveResponse> streamRequest(String method, String url, Object urlParams,
+                                                             Object bodyParam, Header... headers) {
+        HttpEntityEnclosingRequestBase request = HttpRequestFactory.createRequest(method, url, urlParams, bodyParam,
+                false, this.connectPool, headers);
+        HttpRequestFactory.applyRouteConfig(request, this.connectPool);
+        try {
+            HttpRequestFactory.resolveEndpoint(request, this.connectPool, this.poolControl);
+        } catch (RuntimeException e) {
+            CompletableFuture<ReactiveResponse> result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+            return result;
+        }
+        return ResponseBodyPublisher.execute(this.getHttpClient(), request);
+    }
+
+    /**
+     * 订阅服务端推送事件(Server-Sent Events), 使用默认选项
+     *
+     * @param url      请求地址
+     * @param listener 事件监听
+     * @param headers  请求头
+     */
+    public EventSource eventSource(String url, EventSourceListener listener, Header... headers) {
+        return this.eventSource(url, null, listener, null, headers);
+    }
+
+    /**
+     * 订阅服务端推送事件(Server-Sent Events), 使用NIO连接池中的连接, 少量io线程即可维持大量长连接,
+     * 连接池的singleMaxActive及allMaxActive需大于同时订阅的数量; 开启HTTP/2传输时也使用HTTP/1.1连接;<br/>
+     * 每次重连都重新创建请求, 负载均衡地址每次重连时重新选择实例
+     *
+     * @param url       请求地址
+     * @param urlParams url参数
+     * @param listener  事件监听
+     * @param options   事件源选项, 可为null
+     * @param headers   请求头
+     * @return 事件源, 不再使用时需关闭
+     */
+    public EventSource eventSource(String url, Object urlParams, EventSourceListener listener,
+                                   EventSourceOptions options, Header... headers) {
+        EventSourceOptions eventSourceOptions = options == null ? new EventSourceOptions() : options;
+        EventSource eventSource = new EventSource(() -> {
+            HttpEntityEnclosingRequestBase request = HttpRequestFactory.createRequest(HttpGet.METHOD_NAME, url,
+                    urlParams, null, false, this.connectPool, headers);
+            HttpRequestFactory.applyRouteConfig(request, this.connectPool);
+            HttpRequestFactory.resolveEndpoint(request, this.connectPool, this.poolControl);
+            Integer readTimeout = eventSourceOptions.getReadTimeout();
+            if (readTimeout != null) {
+                RequestConfig config = request.getConfig() == null
+                        ? BaseBuilder.requestConfigBuilder(this.connectPool).build() : request.getConfig();
+                request.setConfig(RequestConfig.copy(config).setSocketTimeout(readTimeout).build());
+            }
+            return request;
+        }, this::getHttpClient, listener, eventSourceOptions);
+        eventSource.connect();
+        return eventSource;
+    }
+
+    /**
+     * 获取已启动的异步客户端
+     */
+    public CloseableHttpAsyncClient getHttpClient() {
+        if (this.httpClient == null) {
+            synchronized (this) {
+                if (this.httpClient == null) {
+                    AsyncCloseableHttpClientBuilder builder = new AsyncCloseableHttpClientBuilder()
+                            .setConnectPool(this.connectPool);
+                    CloseableHttpAsyncClient client = builder.build();
+                    client.start();
+                    this.poolControl = builder.getPoolControl();
+                    this.httpClient = client;
+                }
+            }
+        }
+        return this.httpClient;
+    }
+
+    /**
+     * 获取HTTP/2传输, 首次使用时创建
+     */
+    private Http2Transport getHttp2Transport() {
+        if (this.http2Transport == null) {
+            synchronized (this) {
+                if (this.http2Transport == null) {
+                    this.http2Transport = new Http2Transport(this.connectPool);
+                }
+            }
+        }
+        return this.http2Transport;
+    }
+
+    /**
+     * 关闭连接池
+     */
+    public void close() {
+        if (this.http2Transport != null) {
+            this.http2Transport.close();
+            this.http2Transport = null;
+        }
+        try {
+            if (this.httpClient != null) {
+                this.httpClient.close();
+                this.httpClient = null;
+            }
+        } catch (IOException e) {
+            log.error("", e);
+        }
+    }
+}
@@ -3,39 +3,105 @@ package org.rdlinux.luava.http;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.pool.ConnPoolControl;
 import org.apache.http.protocol.HttpContext;
-import org.apache.http.ssl.SSLContexts;
 
 import javax.net.ssl.SSLContext;
-import java.security.KeyManagementException;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BaseBuilder {
+    private static final AtomicInteger poolOrder = new AtomicInteger(1);
+
+    /**
+     * 生成连接池名称, 用于指标采集
+     */
+    protected static String nextPoolName(String prefix) {
+        return prefix + "-" + poolOrder.getAndIncrement();
+    }
+
+    /**
+     * 获取共享的默认SSLContext, 信任所有证书
+     */
     protected SSLContext createSSLContext() {
-        // 这里设置信任所有证书
-        SSLContext sslContext;
-        try {
-            // 信任所有
-            sslContext = SSLContexts.custom().loadTrustMaterial(null, (chain, authType) -> true).build();
-        } catch (KeyManagementException | NoSuchAlgorithmException | KeyStoreException e) {
-            throw new RuntimeException(e);
-        }
-        return sslContext;
+        return SslConfig.getDefault().getSSLContext();
     }
 
     /**
-     * 创建Http请求配置参数
+     * 获取连接池的https配置, 未配置时使用共享的默认配置
      */
-    protected RequestConfig createRequestConfig(ConnectPool connectPool) {
+    static SslConfig sslConfig(ConnectPool connectPool) {
+        SslConfig sslConfig = connectPool == null ? null : connectPool.getSslConfig();
+        return sslConfig == null ? SslConfig.getDefault() : sslConfig;
+    }
+
+    static RequestConfig.Builder requestConfigBuilder(ConnectPool connectPool) {
         return RequestConfig.custom()
                 // 连接超时时间
                 .setConnectTimeout(connectPool.getConnectTimeout())
                 // 读超时时间（等待数据超时时间
                 .setSocketTimeout(connectPool.getSocketTimeout())
                 // 从池中获取连接超时时间
-                .setConnectionRequestTimeout(connectPool.getConnectionRequestTimeout()).build();
+                .setConnectionRequestTimeout(connectPool.getConnectionRequestTimeout());
+    }
+
+    /**
+     * 创建路由级请求配置, 该路由未配置超时时间时返回null
+     */
+    static RequestConfig createRouteRequestConfig(ConnectPool connectPool, RouteConfig routeConfig) {
+        if (routeConfig == null || (routeConfig.getConnectTimeout() == null && routeConfig.getSocketTimeout() == null)) {
+            return null;
+        }
+        RequestConfig.Builder builder = requestConfigBuilder(connectPool);
+        if (routeConfig.getConnectTimeout() != null) {
+            builder.setConnectTimeout(routeConfig.getConnectTimeout());
+        }
+        if (routeConfig.getSocketTimeout() != null) {
+            builder.setSocketTimeout(routeConfig.getSocketTimeout());
+        }
+        return builder.build();
+    }
+
+    /**
+     * 创建Http请求配置参数
+     */
+    protected RequestConfig createRequestConfig(ConnectPool connectPool) {
+        return requestConfigBuilder(connectPool).build();
+    }
+
+    /**
+     * 把路由级配置应用到连接池, 并监听运行时的配置变更, 连接池被回收后自动取消监听
+     */
+    protected void bindRouteConfigs(ConnPoolControl<HttpRoute> poolControl, ConnectPool connectPool) {
+        for (RouteConfig routeConfig : connectPool.getRouteConfigs()) {
+            this.applyRouteConfig(poolControl, routeConfig, false);
+        }
+        WeakReference<ConnPoolControl<HttpRoute>> reference = new WeakReference<>(poolControl);
+        connectPool.addRouteConfigListener((routeConfig, removed) -> {
+            ConnPoolControl<HttpRoute> control = reference.get();
+            if (control == null) {
+                return false;
+            }
+            this.applyRouteConfig(control, routeConfig, removed);
+            return true;
+        });
+    }
+
+    /**
+     * 应用路由级配置
+     *
+     * @param removed 是否为移除配置, 移除时恢复全局配置
+     */
+    protected void applyRouteConfig(ConnPoolControl<HttpRoute> poolControl, RouteConfig routeConfig,
+                                    boolean removed) {
+        HttpRoute route = routeConfig.toHttpRoute();
+        if (removed || routeConfig.getMaxActive() == null) {
+            poolControl.setMaxPerRoute(route, poolControl.getDefaultMaxPerRoute());
+        } else {
+            poolControl.setMaxPerRoute(route, routeConfig.getMaxActive());
+        }
     }
 
     protected ConnectionKeepAliveStrategy createConnectionKeepAliveStrategy(ConnectPool connectPool) {
@@ -0,0 +1,95 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+
+/**
+ * 批量请求描述, 参数含义与{@link HttpRequestUtils#httpRequest(String, String, Object, Object, boolean, Header...)}一致
+ */
+public class BatchRequest {
+    private final String method;
+    private final String url;
+    private Object urlParams;
+    private Object bodyParam;
+    private boolean useFormData = false;
+    private Header[] headers;
+
+    /**
+     * @param method 请求方法
+     * @param url    请求地址
+     */
+    public BatchRequest(String method, String url) {
+        if (method == null || method.isEmpty()) {
+            throw new IllegalArgumentException("method can not be empty");
+        }
+        if (url == null || url.isEmpty()) {
+            throw new IllegalArgumentException("url can not be empty");
+        }
+        this.method = method;
+        this.url = url;
+    }
+
+    /**
+     * get请求
+     */
+    public static BatchRequest get(String url, Object urlParams) {
+        return new BatchRequest(HttpGet.METHOD_NAME, url).setUrlParams(urlParams);
+    }
+
+    /**
+     * post请求, body参数使用json传递
+     */
+    public static BatchRequest post(String url, Object bodyParam) {
+        return new BatchRequest(HttpPost.METHOD_NAME, url).setBodyParam(bodyParam);
+    }
+
+    public String getMethod() {
+        return this.method;
+    }
+
+    public String getUrl() {
+        return this.url;
+    }
+
+    public Object getUrlParams() {
+        return this.urlParams;
+    }
+
+    public BatchRequest setUrlParams(Object urlParams) {
+        this.urlParams = urlParams;
+        return this;
+    }
+
+    public Object getBodyParam() {
+        return this.bodyParam;
+    }
+
+    public BatchRequest setBodyParam(Object bodyParam) {
+        this.bodyParam = bodyParam;
+        return this;
+    }
+
+    public boolean isUseFormData() {
+        return this.useFormData;
+    }
+
+    public BatchRequest setUseFormData(boolean useFormData) {
+        this.useFormData = useFormData;
+        return this;
+    }
+
+    public Header[] getHeaders() {
+        return this.headers;
+    }
+
+    public BatchRequest setHeaders(Header... headers) {
+        this.headers = headers;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return this.method + " " + this.url;
+    }
+}
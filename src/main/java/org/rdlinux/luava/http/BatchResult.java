@@ -0,0 +1,61 @@
+package org.rdlinux.luava.http;
+
+/**
+ * 批量请求中单个请求的结果, 成功时包含解析后的数据, 失败时包含异常
+ */
+public class BatchResult<T> {
+    private final int index;
+    private final BatchRequest request;
+    private final T value;
+    private final Throwable error;
+
+    private BatchResult(int index, BatchRequest request, T value, Throwable error) {
+        this.index = index;
+        this.request = request;
+        this.value = value;
+        this.error = error;
+    }
+
+    static <T> BatchResult<T> success(int index, BatchRequest request, T value) {
+        return new BatchResult<>(index, request, value, null);
+    }
+
+    static <T> BatchResult<T> failure(int index, BatchRequest request, Throwable error) {
+        return new BatchResult<>(index, request, null, error);
+    }
+
+    /**
+     * 请求在批量请求列表中的下标
+     */
+    public int getIndex() {
+        return this.index;
+    }
+
+    public BatchRequest getRequest() {
+        return this.request;
+    }
+
+    /**
+     * 解析后的数据, 失败时为null
+     */
+    public T getValue() {
+        return this.value;
+    }
+
+    /**
+     * 请求或解析异常, 成功时为null
+     */
+    public Throwable getError() {
+        return this.error;
+    }
+
+    public boolean isSuccess() {
+        return this.error == null;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" + this.index + ", " + this.request + ", "
+                + (this.isSuccess() ? "value=" + this.value : "error=" + this.error) + "}";
+    }
+}
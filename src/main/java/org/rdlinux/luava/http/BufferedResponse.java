@@ -0,0 +1,76 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+
+/**
+ * 读取到内存中的响应, 读取后立即释放连接, 可多次生成相互独立的响应副本
+ */
+final class BufferedResponse {
+    private final StatusLine statusLine;
+    private final Header[] headers;
+    private final byte[] content;
+    private final Header contentType;
+    private final Header contentEncoding;
+    /**
+     * 响应缓存状态, 未使用响应缓存时为null
+     */
+    private final Object cacheResponseStatus;
+
+    private BufferedResponse(CloseableHttpResponse response, Object cacheResponseStatus) throws IOException {
+        HttpEntity entity = response.getEntity();
+        this.statusLine = response.getStatusLine();
+        this.headers = response.getAllHeaders();
+        this.content = entity == null ? null : EntityUtils.toByteArray(entity);
+        this.contentType = entity == null ? null : entity.getContentType();
+        this.contentEncoding = entity == null ? null : entity.getContentEncoding();
+        this.cacheResponseStatus = cacheResponseStatus;
+    }
+
+    /**
+     * 读取响应并关闭
+     */
+    static BufferedResponse read(CloseableHttpResponse response, Object cacheResponseStatus) {
+        try (CloseableHttpResponse closeable = response) {
+            return new BufferedResponse(closeable, cacheResponseStatus);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    Object getCacheResponseStatus() {
+        return this.cacheResponseStatus;
+    }
+
+    /**
+     * 生成新的响应副本, 各副本的响应体可独立读取
+     */
+    CloseableHttpResponse newResponse() {
+        Response response = new Response(this.statusLine);
+        response.setHeaders(this.headers);
+        if (this.content != null) {
+            ByteArrayEntity entity = new ByteArrayEntity(this.content);
+            entity.setContentType(this.contentType);
+            entity.setContentEncoding(this.contentEncoding);
+            response.setEntity(entity);
+        }
+        return response;
+    }
+
+    private static class Response extends BasicHttpResponse implements CloseableHttpResponse {
+        private Response(StatusLine statusLine) {
+            super(statusLine);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
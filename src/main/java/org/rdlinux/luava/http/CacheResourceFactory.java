@@ -0,0 +1,70 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.client.cache.InputLimit;
+import org.apache.http.client.cache.Resource;
+import org.apache.http.client.cache.ResourceFactory;
+import org.apache.http.impl.client.cache.FileResource;
+import org.apache.http.impl.client.cache.FileResourceFactory;
+import org.apache.http.impl.client.cache.HeapResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+/**
+ * 缓存响应体资源工厂, 响应体不超过阈值时保存在内存中, 超过阈值且配置了磁盘目录时写入磁盘
+ */
+final class CacheResourceFactory implements ResourceFactory {
+    private static final int bufferSize = 8192;
+    private final FileResourceFactory diskFactory;
+    private final long diskThreshold;
+
+    /**
+     * @param diskDirectory 磁盘缓存目录, 为null时只使用内存
+     * @param diskThreshold 写入磁盘的响应体大小阈值
+     */
+    CacheResourceFactory(File diskDirectory, long diskThreshold) {
+        this.diskFactory = diskDirectory == null ? null : new FileResourceFactory(diskDirectory);
+        this.diskThreshold = diskThreshold;
+    }
+
+    @Override
+    public Resource generate(String requestId, InputStream inStream, InputLimit limit) throws IOException {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[bufferSize];
+        long total = 0;
+        int n;
+        while ((n = inStream.read(buffer)) != -1) {
+            outStream.write(buffer, 0, n);
+            total += n;
+            if (limit != null && total > limit.getValue()) {
+                limit.reached();
+                break;
+            }
+            if (this.diskFactory != null && total > this.diskThreshold) {
+                // 已读取的部分与剩余的流一起写入磁盘
+                InputStream content = new SequenceInputStream(new ByteArrayInputStream(outStream.toByteArray()),
+                        inStream);
+                return this.diskFactory.generate(requestId, content, limit);
+            }
+        }
+        return new HeapResource(outStream.toByteArray());
+    }
+
+    @Override
+    public Resource copy(String requestId, Resource resource) throws IOException {
+        if (resource instanceof FileResource && this.diskFactory != null) {
+            return this.diskFactory.copy(requestId, resource);
+        }
+        // 内存资源不可变, 释放时无操作, 直接复用
+        if (resource instanceof HeapResource) {
+            return resource;
+        }
+        try (InputStream inStream = resource.getInputStream()) {
+            return this.generate(requestId, inStream, null);
+        }
+    }
+}
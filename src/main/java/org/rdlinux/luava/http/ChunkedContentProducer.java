@@ -0,0 +1,104 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 异步请求体分段发送, 异步客户端不能阻塞io线程, 首次发送时先把内容写入分段缓冲区, 再按连接可写情况分段发送
+ */
+final class ChunkedContentProducer {
+    private static final int chunkSize = 8192;
+    private final ContentWriter writer;
+    /**
+     * 待发送的分段缓冲区, 发送结束或重置后为null
+     */
+    private List<ByteBuffer> chunks;
+    private int chunkIndex;
+
+    ChunkedContentProducer(ContentWriter writer) {
+        this.writer = writer;
+    }
+
+    void produceContent(ContentEncoder encoder, IOControl ioControl) throws IOException {
+        if (this.chunks == null) {
+            ChunkOutputStream outputStream = new ChunkOutputStream();
+            this.writer.writeTo(outputStream);
+            this.chunks = outputStream.finish();
+            this.chunkIndex = 0;
+        }
+        while (this.chunkIndex < this.chunks.size()) {
+            ByteBuffer chunk = this.chunks.get(this.chunkIndex);
+            encoder.write(chunk);
+            if (chunk.hasRemaining()) {
+                // 连接暂不可写, 等待下次回调
+                return;
+            }
+            this.chunks.set(this.chunkIndex++, null);
+        }
+        encoder.complete();
+        this.chunks = null;
+    }
+
+    /**
+     * 重置发送状态, 重试时重新写入
+     */
+    void reset() {
+        this.chunks = null;
+        this.chunkIndex = 0;
+    }
+
+    interface ContentWriter {
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * 分段缓冲输出流, 避免单个大数组扩容复制
+     */
+    private static class ChunkOutputStream extends OutputStream {
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private byte[] current = new byte[chunkSize];
+        private int position;
+
+        @Override
+        public void write(int b) {
+            if (this.position == this.current.length) {
+                this.nextChunk();
+            }
+            this.current[this.position++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+                if (this.position == this.current.length) {
+                    this.nextChunk();
+                }
+                int n = Math.min(len, this.current.length - this.position);
+                System.arraycopy(b, off, this.current, this.position, n);
+                this.position += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void nextChunk() {
+            this.chunks.add(ByteBuffer.wrap(this.current, 0, this.position));
+            this.current = new byte[chunkSize];
+            this.position = 0;
+        }
+
+        private List<ByteBuffer> finish() {
+            if (this.position > 0) {
+                this.chunks.add(ByteBuffer.wrap(this.current, 0, this.position));
+            }
+            this.current = null;
+            return this.chunks;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.rdlinux.luava.http;
+
+/**
+ * 单个路由的熔断器, 按最近的调用结果统计失败率及慢调用率, 状态变更见{@link CircuitBreakerPolicy}
+ */
+final class CircuitBreaker {
+    private static final byte failedFlag = 1;
+    private static final byte slowFlag = 2;
+    private final CircuitBreakerPolicy policy;
+    /**
+     * 环形统计窗口, 每个元素记录一次调用是否失败及是否慢调用
+     */
+    private final byte[] window;
+    private State state = State.CLOSED;
+    private int windowIndex;
+    private int windowCount;
+    private int failedCount;
+    private int slowCount;
+    /**
+     * 进入熔断或半开状态的时间
+     */
+    private long stateTime;
+    private int halfOpenPermits;
+    private int halfOpenCount;
+    private int halfOpenFailed;
+    private int halfOpenSlow;
+
+    CircuitBreaker(CircuitBreakerPolicy policy) {
+        this.policy = policy;
+        this.window = new byte[policy.getWindowSize()];
+    }
+
+    /**
+     * 获取调用许可, 熔断中或半开状态探测次数已用完时返回false
+     */
+    synchronized boolean tryAcquire() {
+        long now = System.currentTimeMillis();
+        if (this.state == State.CLOSED) {
+            return true;
+        }
+        if (this.state == State.OPEN) {
+            if (now - this.stateTime < this.policy.getOpenDuration()) {
+                return false;
+            }
+            this.toHalfOpen(now);
+        } else if (this.halfOpenPermits == 0 && now - this.stateTime >= this.policy.getOpenDuration()) {
+            // 探测调用长时间未返回结果, 重新放行探测
+            this.toHalfOpen(now);
+        }
+        if (this.halfOpenPermits > 0) {
+            this.halfOpenPermits--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 当前是否可能放行调用, 不占用许可
+     */
+    synchronized boolean isCallPermitted() {
+        if (this.state == State.CLOSED) {
+            return true;
+        }
+        boolean expired = System.currentTimeMillis() - this.stateTime >= this.policy.getOpenDuration();
+        return this.state == State.OPEN ? expired : this.halfOpenPermits > 0 || expired;
+    }
+
+    /**
+     * 记录调用结果
+     */
+    synchronized void record(boolean failed, long durationMillis) {
+        boolean slow = durationMillis >= this.policy.getSlowCallDuration();
+        if (this.state == State.CLOSED) {
+            byte outcome = (byte) ((failed ? failedFlag : 0) | (slow ? slowFlag : 0));
+            if (this.windowCount == this.window.length) {
+                byte eldest = this.window[this.windowIndex];
+                this.failedCount -= eldest & failedFlag;
+                this.slowCount -= (eldest & slowFlag) >> 1;
+            } else {
+                this.windowCount++;
+            }
+            this.window[this.windowIndex] = outcome;
+            this.windowIndex = (this.windowIndex + 1) % this.window.length;
+            this.failedCount += failed ? 1 : 0;
+            this.slowCount += slow ? 1 : 0;
+            if (this.windowCount >= Math.max(1, this.policy.getMinimumCalls())
+                    && this.exceeded(this.failedCount, this.slowCount, this.windowCount)) {
+                this.toOpen();
+            }
+        } else if (this.state == State.HALF_OPEN) {
+            this.halfOpenCount++;
+            this.halfOpenFailed += failed ? 1 : 0;
+            this.halfOpenSlow += slow ? 1 : 0;
+            if (this.halfOpenCount >= this.policy.getHalfOpenCalls()) {
+                if (this.exceeded(this.halfOpenFailed, this.halfOpenSlow, this.halfOpenCount)) {
+                    this.toOpen();
+                } else {
+                    this.toClosed();
+                }
+            }
+        }
+    }
+
+    /**
+     * 归还未记录结果的调用许可, 如调用被取消或在发送前失败, 半开状态下归还探测次数, 避免探测次数耗尽后一直半开
+     */
+    synchronized void release() {
+        if (this.state == State.HALF_OPEN
+                && this.halfOpenPermits + this.halfOpenCount < this.policy.getHalfOpenCalls()) {
+            this.halfOpenPermits++;
+        }
+    }
+
+    synchronized State getState() {
+        return this.state;
+    }
+
+    private boolean exceeded(int failed, int slow, int total) {
+        return (double) failed / total >= this.policy.getFailureRateThreshold()
+                || (double) slow / total >= this.policy.getSlowCallRateThreshold();
+    }
+
+    private void toOpen() {
+        this.state = State.OPEN;
+        this.stateTime = System.currentTimeMillis();
+    }
+
+    private void toHalfOpen(long now) {
+        this.state = State.HALF_OPEN;
+        this.stateTime = now;
+        this.halfOpenPermits = this.policy.getHalfOpenCalls();
+        this.halfOpenCount = 0;
+        this.halfOpenFailed = 0;
+        this.halfOpenSlow = 0;
+    }
+
+    private void toClosed() {
+        this.state = State.CLOSED;
+        this.windowIndex = 0;
+        this.windowCount = 0;
+        this.failedCount = 0;
+        this.slowCount = 0;
+    }
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+}
@@ -0,0 +1,114 @@
+package org.rdlinux.luava.http;
+
+/**
+ * 路由级熔断策略, 同步和异步客户端共用;<br/>
+ * 按最近windowSize次调用统计失败率及慢调用率, 超过阈值后熔断, 熔断期间请求直接失败, openDuration后进入半开状态,
+ * 放行halfOpenCalls次探测调用, 探测结果未超过阈值时恢复, 否则继续熔断;
+ * 请求异常及5xx响应视为失败
+ */
+public class CircuitBreakerPolicy {
+    private static final double defaultFailureRateThreshold = 0.5;
+    private static final double defaultSlowCallRateThreshold = 1;
+    private static final long defaultSlowCallDuration = 60000;
+    private static final int defaultWindowSize = 100;
+    private static final int defaultMinimumCalls = 20;
+    private static final long defaultOpenDuration = 30000;
+    private static final int defaultHalfOpenCalls = 5;
+    /**
+     * 失败率阈值, 默认0.5
+     */
+    private double failureRateThreshold = defaultFailureRateThreshold;
+    /**
+     * 慢调用率阈值, 默认1, 即统计窗口内的调用全部为慢调用时熔断
+     */
+    private double slowCallRateThreshold = defaultSlowCallRateThreshold;
+    /**
+     * 慢调用耗时, 默认60000, 单位毫秒
+     */
+    private long slowCallDuration = defaultSlowCallDuration;
+    /**
+     * 统计窗口的调用次数, 默认100
+     */
+    private int windowSize = defaultWindowSize;
+    /**
+     * 计算失败率需要的最少调用次数, 默认20
+     */
+    private int minimumCalls = defaultMinimumCalls;
+    /**
+     * 熔断持续时间, 默认30000, 单位毫秒
+     */
+    private long openDuration = defaultOpenDuration;
+    /**
+     * 半开状态放行的探测调用次数, 默认5
+     */
+    private int halfOpenCalls = defaultHalfOpenCalls;
+
+    public double getFailureRateThreshold() {
+        return this.failureRateThreshold;
+    }
+
+    public CircuitBreakerPolicy setFailureRateThreshold(double failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+        return this;
+    }
+
+    public double getSlowCallRateThreshold() {
+        return this.slowCallRateThreshold;
+    }
+
+    public CircuitBreakerPolicy setSlowCallRateThreshold(double slowCallRateThreshold) {
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        return this;
+    }
+
+    public long getSlowCallDuration() {
+        return this.slowCallDuration;
+    }
+
+    public CircuitBreakerPolicy setSlowCallDuration(long slowCallDuration) {
+        this.slowCallDuration = slowCallDuration;
+        return this;
+    }
+
+    public int getWindowSize() {
+        return this.windowSize;
+    }
+
+    public CircuitBreakerPolicy setWindowSize(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be greater than 0");
+        }
+        this.windowSize = windowSize;
+        return this;
+    }
+
+    public int getMinimumCalls() {
+        return this.minimumCalls;
+    }
+
+    public CircuitBreakerPolicy setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = minimumCalls;
+        return this;
+    }
+
+    public long getOpenDuration() {
+        return this.openDuration;
+    }
+
+    public CircuitBreakerPolicy setOpenDuration(long openDuration) {
+        this.openDuration = openDuration;
+        return this;
+    }
+
+    public int getHalfOpenCalls() {
+        return this.halfOpenCalls;
+    }
+
+    public CircuitBreakerPolicy setHalfOpenCalls(int halfOpenCalls) {
+        if (halfOpenCalls <= 0) {
+            throw new IllegalArgumentException("halfOpenCalls must be greater than 0");
+        }
+        this.halfOpenCalls = halfOpenCalls;
+        return this;
+    }
+}
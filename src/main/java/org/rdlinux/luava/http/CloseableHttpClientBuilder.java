@@ -1,31 +1,44 @@
 package org.rdlinux.luava.http;
 
-import org.apache.http.HttpEntityEnclosingRequest;
-import org.apache.http.HttpRequest;
-import org.apache.http.NoHttpResponseException;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpRequestRetryHandler;
+import org.apache.http.client.ServiceUnavailableRetryStrategy;
+import org.apache.http.client.cache.HttpCacheStorage;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
 import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.routing.RouteInfo;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
-import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.DefaultConnectionReuseStrategy;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.client.cache.CacheConfig;
+import org.apache.http.impl.client.cache.CachingHttpClientBuilder;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
 
-import javax.net.ssl.SSLException;
-import javax.net.ssl.SSLHandshakeException;
-import java.io.InterruptedIOException;
-import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 public class CloseableHttpClientBuilder extends BaseBuilder {
+    private static final String retryBudgetAttribute = "luava.http.retry-budget";
     private ConnectPool connectPool;
+    private ConnPoolControl<HttpRoute> poolControl;
 
     public CloseableHttpClientBuilder() {
     }
@@ -35,84 +48,218 @@ public class CloseableHttpClientBuilder extends BaseBuilder {
      */
     private HttpClientConnectionManager createClientConnectionManager(ConnectPool connectPool) {
         PoolingHttpClientConnectionManager clientConnectionManager;
-        SSLConnectionSocketFactory sslSf = new SSLConnectionSocketFactory(this.createSSLContext(),
-                NoopHostnameVerifier.INSTANCE);
+        SslConfig sslConfig = sslConfig(connectPool);
+        SSLConnectionSocketFactory sslSf = new SSLConnectionSocketFactory(sslConfig.getSSLContext(),
+                sslConfig.getHostnameVerifier());
         Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
                 .register("https", sslSf).register("http", PlainConnectionSocketFactory.getSocketFactory())
                 .build();
         // 配置连接池
-        clientConnectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+        clientConnectionManager = this.createPoolingConnectionManager(socketFactoryRegistry, connectPool.getMetrics());
         // 最大连接
         clientConnectionManager.setMaxTotal(connectPool.getAllMaxActive());
         // 默认的每个路由的最大连接数
         clientConnectionManager.setDefaultMaxPerRoute(connectPool.getSingleMaxActive());
-        // 设置路由的最大连接数，会覆盖defaultMaxPerRoute
-        // clientConnectionManager.setMaxPerRoute(new HttpRoute(new
-        // HttpHost("https://www.linuxprobe.org", 443)), 10);
-        SocketConfig socketConfig = SocketConfig.custom()
+        // 默认路由的socket配置
+        clientConnectionManager.setDefaultSocketConfig(this.createSocketConfig(connectPool.getSocketTimeout()));
+        // 针对特定路由的最大连接数及socket配置
+        this.bindRouteConfigs(clientConnectionManager, connectPool);
+        if (connectPool.getMetrics() != null) {
+            connectPool.getMetrics().bindConnectionPool(nextPoolName("http-client"), clientConnectionManager);
+        }
+        this.poolControl = clientConnectionManager;
+        return clientConnectionManager;
+    }
+
+    /**
+     * 创建连接池, {@link HttpRequestUtils#submit}任务中的请求先获取路由许可再获取连接, 配置了指标采集时记录获取连接的等待时间
+     */
+    private PoolingHttpClientConnectionManager createPoolingConnectionManager(
+            Registry<ConnectionSocketFactory> socketFactoryRegistry, HttpMetrics metrics) {
+        return new PoolingHttpClientConnectionManager(socketFactoryRegistry) {
+            private final RoutePermits routePermits = new RoutePermits(this);
+
+            @Override
+            public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+                ConnectionRequest connectionRequest = super.requestConnection(route, state);
+                return new ConnectionRequest() {
+                    private volatile boolean cancelled;
+
+                    @Override
+                    public HttpClientConnection get(long timeout, TimeUnit timeUnit)
+                            throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                        long start = System.nanoTime();
+                        boolean success = false;
+                        Semaphore permit = routePermits.acquire(route, () -> this.cancelled);
+                        try {
+                            HttpClientConnection connection = connectionRequest.get(timeout, timeUnit);
+                            routePermits.leased(connection, permit);
+                            success = true;
+                            return connection;
+                        } finally {
+                            if (!success && permit != null) {
+                                permit.release();
+                            }
+                            if (metrics != null) {
+                                metrics.recordLeaseWait(RouteConfig.routeKey(route), System.nanoTime() - start,
+                                        success);
+                            }
+                        }
+                    }
+
+                    @Override
+                    public boolean cancel() {
+                        this.cancelled = true;
+                        return connectionRequest.cancel();
+                    }
+                };
+            }
+
+            @Override
+            public void releaseConnection(HttpClientConnection managedConn, Object state, long keepalive,
+                                          TimeUnit timeUnit) {
+                try {
+                    super.releaseConnection(managedConn, state, keepalive, timeUnit);
+                } finally {
+                    this.routePermits.release(managedConn);
+                }
+            }
+        };
+    }
+
+    private SocketConfig createSocketConfig(int soTimeout) {
+        return SocketConfig.custom()
                 // 是否立即发送数据，设置为true会关闭Socket缓冲，默认为false
                 .setTcpNoDelay(true)
                 // 是否可以在一个进程关闭Socket后，即使它还没有释放端口，其它进程还可以立即重用端口
                 .setSoReuseAddress(true)
                 // 接收数据的等待超时时间，单位ms
-                .setSoTimeout(connectPool.getSocketTimeout())
+                .setSoTimeout(soTimeout)
                 // 关闭Socket时，要么发送完所有数据，要么等待60s后，就关闭连接，此时socket.close()是阻塞的
                 .setSoLinger(6)
                 // 开启监视TCP连接是否有效
                 .setSoKeepAlive(true).build();
-        // 默认路由的socket配置
-        clientConnectionManager.setDefaultSocketConfig(socketConfig);
-        // 针对特定路由的socket配置
-        // clientConnectionManager.setSocketConfig(new HttpHost("somehost", 80),
-        // socketConfig);
-        return clientConnectionManager;
+    }
+
+    @Override
+    protected void applyRouteConfig(ConnPoolControl<HttpRoute> poolControl, RouteConfig routeConfig,
+                                    boolean removed) {
+        super.applyRouteConfig(poolControl, routeConfig, removed);
+        if (poolControl instanceof PoolingHttpClientConnectionManager) {
+            PoolingHttpClientConnectionManager clientConnectionManager = (PoolingHttpClientConnectionManager) poolControl;
+            SocketConfig socketConfig = clientConnectionManager.getDefaultSocketConfig();
+            if (!removed && routeConfig.getSocketTimeout() != null) {
+                socketConfig = this.createSocketConfig(routeConfig.getSocketTimeout());
+            }
+            clientConnectionManager.setSocketConfig(routeConfig.toHttpHost(), socketConfig);
+        }
     }
 
     /**
-     * 创建重试策略
+     * 创建请求异常重试策略, 按重试策略退避后重试
      */
     private HttpRequestRetryHandler createHttpRequestRetryHandler(ConnectPool connectPool) {
-        // 自定义重试策略
+        RetrySupport retrySupport = connectPool.getRetrySupport();
         return (exception, executionCount, context) -> {
-            // 如果重试次数大于等于规定次数
-            if (executionCount >= connectPool.getRetryCount()) {
-                return false;
-            }
-            // 如果服务器丢掉了连接，那么就重试
-            else if (exception instanceof NoHttpResponseException) {
-                return true;
-            }
-            // 不要重试SSL握手异常
-            else if (exception instanceof SSLHandshakeException) {
-                return false;
+            HttpClientContext clientContext = HttpClientContext.adapt(context);
+            long delay = retrySupport.retryDelay(clientContext.getRequest(), exception, executionCount,
+                    retryRoute(clientContext));
+            return delay >= 0 && backoff(delay);
+        };
+    }
+
+    /**
+     * 创建响应码重试策略, 先释放连接再退避, 退避时间已在判断时等待, 不再使用重试间隔
+     */
+    private ServiceUnavailableRetryStrategy createServiceUnavailableRetryStrategy(ConnectPool connectPool) {
+        RetrySupport retrySupport = connectPool.getRetrySupport();
+        return new ServiceUnavailableRetryStrategy() {
+            @Override
+            public boolean retryRequest(HttpResponse response, int executionCount, HttpContext context) {
+                HttpClientContext clientContext = HttpClientContext.adapt(context);
+                long delay = retrySupport.retryDelay(clientContext.getRequest(), response, executionCount,
+                        retryRoute(clientContext));
+                if (delay < 0) {
+                    return false;
+                }
+                EntityUtils.consumeQuietly(response.getEntity());
+                return backoff(delay);
             }
-            // io中断
-            else if (exception instanceof InterruptedIOException) {
-                return false;
+
+            @Override
+            public long getRetryInterval() {
+                return 0;
             }
-            // 目标服务器不可达
-            else if (exception instanceof UnknownHostException) {
-                return false;
+        };
+    }
+
+    /**
+     * 每次调用为路由的重试预算累积一次额度, 重试时不累积
+     */
+    private HttpRequestInterceptor createRetryBudgetInterceptor(ConnectPool connectPool) {
+        RetrySupport retrySupport = connectPool.getRetrySupport();
+        return (request, context) -> {
+            if (context.getAttribute(retryBudgetAttribute) == null) {
+                context.setAttribute(retryBudgetAttribute, Boolean.TRUE);
+                retrySupport.onRequest(retryRoute(HttpClientContext.adapt(context)));
             }
-            // SSL握手异常
-            else if (exception instanceof SSLException) {
+        };
+    }
+
+    private static String retryRoute(HttpClientContext context) {
+        RouteInfo route = context.getHttpRoute();
+        if (route != null) {
+            return RouteConfig.routeKey(route);
+        }
+        HttpHost target = context.getTargetHost();
+        return target == null ? "" : RouteConfig.routeKey(target.getSchemeName(), target.getHostName(),
+                target.getPort());
+    }
+
+    /**
+     * 重试前等待, 被中断时放弃重试
+     */
+    private static boolean backoff(long delay) {
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
                 return false;
             }
-            HttpClientContext clientContext = HttpClientContext.adapt(context);
-            HttpRequest request = clientContext.getRequest();
-            // Retry if the request is considered idempotent
-            // 如果请求类型不是HttpEntityEnclosingRequest，被认为是幂等的，那么就重试
-            // HttpEntityEnclosingRequest指的是有请求体的request，比HttpRequest多一个Entity属性
-            // 而常用的GET请求是没有请求体的，POST、PUT都是有请求体的 Rest一般用GET请求获取数据，故幂等，POST用于新增数据，故不幂等
-            return !(request instanceof HttpEntityEnclosingRequest);
-        };
+        }
+        return true;
+    }
+
+    /**
+     * 创建客户端构建器, 配置了响应缓存时使用缓存客户端
+     */
+    private HttpClientBuilder createHttpClientBuilder(ResponseCache responseCache) {
+        if (responseCache == null) {
+            return HttpClients.custom();
+        }
+        CacheConfig cacheConfig = CacheConfig.custom()
+                .setMaxObjectSize(responseCache.getMaxObjectSize())
+                .setSharedCache(responseCache.isSharedCache())
+                // 只缓存明确声明了有效期或可重新验证的响应
+                .setHeuristicCachingEnabled(false)
+                .build();
+        HttpCacheStorage storage = responseCache.getStorage();
+        if (storage == null) {
+            storage = new MemoryCacheStorage(responseCache.getMaxMemoryBytes());
+        }
+        return CachingHttpClientBuilder.create()
+                .setCacheConfig(cacheConfig)
+                .setHttpCacheStorage(storage)
+                .setResourceFactory(new CacheResourceFactory(responseCache.getDiskDirectory(),
+                        responseCache.getDiskThreshold()));
     }
 
     private CloseableHttpClient getHttpClient() {
         if (this.connectPool == null) {
             return HttpClients.createDefault();
         } else {
-            return HttpClients.custom()
+            HttpClientBuilder builder = this.createHttpClientBuilder(this.connectPool.getResponseCache())
                     // 配置连接池管理对象
                     .setConnectionManager(this.createClientConnectionManager(this.connectPool))
                     // 设置保持长连接策略
@@ -122,10 +269,20 @@ public class CloseableHttpClientBuilder extends BaseBuilder {
                     .setDefaultRequestConfig(this.createRequestConfig(this.connectPool))
                     // 重试策略
                     .setRetryHandler(this.createHttpRequestRetryHandler(this.connectPool))
+                    .setServiceUnavailableRetryStrategy(this.createServiceUnavailableRetryStrategy(this.connectPool))
+                    .addInterceptorFirst(this.createRetryBudgetInterceptor(this.connectPool))
                     // If you set it to true the client won't close the connection manager
                     .setConnectionManagerShared(this.connectPool.getConnectionManagerShared())
                     // 空闲和无效连接释放
-                    .evictIdleConnections(this.connectPool.getMaxIdleTime(), TimeUnit.MILLISECONDS).build();
+                    .evictIdleConnections(this.connectPool.getMaxIdleTime(), TimeUnit.MILLISECONDS);
+            // 响应压缩编码, 由客户端声明Accept-Encoding并流式解压
+            List<HttpCodec> responseCodecs = this.connectPool.getResponseCodecs();
+            if (responseCodecs == null || responseCodecs.isEmpty()) {
+                builder.disableContentCompression();
+            } else {
+                builder.setContentDecoderRegistry(CompressionSupport.decoderRegistry(responseCodecs));
+            }
+            return builder.build();
         }
     }
 
@@ -134,6 +291,13 @@ public class CloseableHttpClientBuilder extends BaseBuilder {
         return this;
     }
 
+    /**
+     * 获取最近一次构建的客户端使用的连接池, 未使用连接池配置时为null
+     */
+    ConnPoolControl<HttpRoute> getPoolControl() {
+        return this.poolControl;
+    }
+
     /**
      * 构建连接池
      */
@@ -0,0 +1,87 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+import org.apache.http.protocol.HTTP;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 压缩请求体, 发送时边写边压缩, 使用chunked传输
+ */
+class CompressedEntity extends HttpEntityWrapper implements HttpAsyncContentProducer {
+    private final HttpCodec codec;
+    private final ChunkedContentProducer producer;
+
+    CompressedEntity(HttpEntity wrappedEntity, HttpCodec codec) {
+        super(wrappedEntity);
+        this.codec = codec;
+        this.producer = new ChunkedContentProducer(this::writeTo);
+    }
+
+    @Override
+    public Header getContentEncoding() {
+        return new BasicHeader(HTTP.CONTENT_ENCODING, this.codec.getEncoding());
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public boolean isChunked() {
+        return true;
+    }
+
+    /**
+     * 获取压缩后的内容, 会完整压缩到内存, 发送请求时不会调用
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        this.writeTo(outputStream);
+        return new ByteArrayInputStream(outputStream.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        if (outStream == null) {
+            throw new IllegalArgumentException("Output stream may not be null");
+        }
+        // 关闭压缩流以写出剩余数据, 但不能关闭连接输出流
+        try (OutputStream compressed = this.codec.compress(new FilterOutputStream(outStream) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                this.out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                this.flush();
+            }
+        })) {
+            this.wrappedEntity.writeTo(compressed);
+        }
+    }
+
+    @Override
+    public void produceContent(ContentEncoder encoder, IOControl ioControl) throws IOException {
+        this.producer.produceContent(encoder, ioControl);
+    }
+
+    @Override
+    public void close() {
+        this.producer.reset();
+    }
+}
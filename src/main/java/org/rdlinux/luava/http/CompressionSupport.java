@@ -0,0 +1,107 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.entity.DecompressingEntity;
+import org.apache.http.client.entity.InputStreamFactory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 请求体压缩及响应体解压, 同步和异步请求共用
+ */
+final class CompressionSupport {
+    private CompressionSupport() {
+    }
+
+    /**
+     * 按连接池配置压缩请求体, 长度小于阈值的请求体不压缩, 长度未知时只在开启compressUnknownLength时压缩
+     */
+    static HttpEntity compress(HttpEntity entity, ConnectPool connectPool) {
+        if (entity == null || connectPool == null || connectPool.getRequestCodec() == null) {
+            return entity;
+        }
+        long contentLength = entity.getContentLength();
+        if (contentLength < 0 ? !connectPool.isCompressUnknownLength()
+                : contentLength < connectPool.getCompressThreshold()) {
+            return entity;
+        }
+        return new CompressedEntity(entity, connectPool.getRequestCodec());
+    }
+
+    /**
+     * 创建响应解压注册表, key为小写的编码名称, 后添加的同名编码覆盖先添加的
+     */
+    static Map<String, InputStreamFactory> decoderRegistry(List<HttpCodec> codecs) {
+        Map<String, InputStreamFactory> registry = new LinkedHashMap<>();
+        for (HttpCodec codec : codecs) {
+            registry.put(codec.getEncoding().toLowerCase(Locale.ROOT), codec::decompress);
+        }
+        return registry;
+    }
+
+    /**
+     * 生成Accept-Encoding请求头的值, 没有可用编码时返回null
+     */
+    static String acceptEncoding(List<HttpCodec> codecs) {
+        if (codecs == null || codecs.isEmpty()) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (String encoding : decoderRegistry(codecs).keySet()) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(encoding);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 添加Accept-Encoding请求头, 已存在时不覆盖
+     */
+    static void addAcceptEncoding(HttpRequest request, String acceptEncoding) {
+        if (acceptEncoding != null && !request.containsHeader(HttpHeaders.ACCEPT_ENCODING)) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+    }
+
+    /**
+     * 按Content-Encoding包装响应体为流式解压实体, 未知编码保持原样
+     */
+    static void decompress(HttpResponse response, List<HttpCodec> codecs) {
+        HttpEntity entity = response.getEntity();
+        if (entity == null || entity.getContentLength() == 0 || codecs == null || codecs.isEmpty()) {
+            return;
+        }
+        Header contentEncoding = entity.getContentEncoding();
+        if (contentEncoding == null) {
+            return;
+        }
+        HeaderElement[] elements = contentEncoding.getElements();
+        if (elements.length != 1) {
+            return;
+        }
+        String encoding = elements[0].getName();
+        HttpCodec codec = null;
+        for (HttpCodec candidate : codecs) {
+            if (candidate.getEncoding().equalsIgnoreCase(encoding)) {
+                codec = candidate;
+            }
+        }
+        if (codec == null) {
+            return;
+        }
+        response.setEntity(new DecompressingEntity(entity, codec::decompress));
+        response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+        response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+        response.removeHeaders(HttpHeaders.CONTENT_MD5);
+    }
+}
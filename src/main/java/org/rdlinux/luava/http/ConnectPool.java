@@ -1,5 +1,14 @@
 package org.rdlinux.luava.http;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * 连接池配置
  */
@@ -26,6 +35,12 @@ public class ConnectPool {
      * 默认失败重试次数
      */
     private static final int defaultRetryCount = 3;
+    /**
+     * 默认请求体压缩阈值, 单位字节
+     */
+    private static final int defaultCompressThreshold = 2048;
+    private static final List<HttpCodec> defaultResponseCodecs = Collections.unmodifiableList(
+            Arrays.asList(HttpCodecs.gzip, HttpCodecs.deflate));
     /**
      * 连接超时时间, 默认5秒, 单位毫秒
      */
@@ -65,9 +80,103 @@ public class ConnectPool {
      */
     private Boolean connectionManagerShared = defaultConnectionManagerShared;
     /**
-     * 失败重试次数, 默认3
+     * 失败重试次数, 默认3, 为包含首次请求在内的最大执行次数
      */
     private int retryCount = defaultRetryCount;
+    /**
+     * 重试策略, 默认为null, 即只按retryCount重试请求异常, 使用默认的指数退避及重试预算, 不重试响应码;
+     * 设置后按策略重试429、503等响应码
+     */
+    private RetryPolicy retryPolicy;
+    private volatile RetrySupport retrySupport;
+    /**
+     * 路由级熔断策略, 默认为null, 即不熔断
+     */
+    private CircuitBreakerPolicy circuitBreakerPolicy;
+    /**
+     * 每个路由等待连接的最大请求数, 默认0, 即不限制, 超出时请求直接失败, 避免下游变慢时调用方大量堆积
+     */
+    private int maxPendingPerRoute = 0;
+    private volatile RouteGuard routeGuard;
+    /**
+     * 对冲请求策略, 默认为null, 即不对冲
+     */
+    private HedgePolicy hedgePolicy;
+    private volatile HedgeSupport hedgeSupport;
+    /**
+     * 是否使用虚拟线程执行{@link HttpRequestUtils#submit}及{@link HttpRequestUtils#executeAll}提交的任务, 默认false;<br/>
+     * 需要jdk21及以上, 不支持时使用平台线程; 两种方式的最大并发数均为allMaxActive, 与连接池大小一致,
+     * 同一路由的并发数不超过该路由的最大连接数, 超出的任务按路由排队等待, 不会因connectionRequestTimeout失败
+     */
+    private boolean virtualThreads = false;
+    /**
+     * 是否使用HTTP/2传输, 默认false; 需要引入httpclient5依赖, https通过ALPN协商h2, http使用h2c(prior knowledge),
+     * 同一路由的并发请求复用一个连接; 开启后不支持响应缓存, 请求体及响应体均读取到内存中;
+     * 下载、流式解析及SSE等流式读取响应体的请求仍使用HTTP/1.1连接
+     */
+    private boolean http2 = false;
+    /**
+     * https配置, 为null时使用共享的默认配置, 信任所有证书且不校验主机名
+     */
+    private SslConfig sslConfig;
+    /**
+     * 指标采集, 默认不采集
+     */
+    private HttpMetrics metrics;
+    /**
+     * url参数及formData参数转换选项, 默认为null, 即使用{@link Qs#stringify(Object)}
+     */
+    private QsOptions qsOptions;
+    /**
+     * json请求体缓冲阈值, 默认64K, 单位字节, 序列化后不超过该长度的请求体带Content-Length发送, 超过时边序列化边发送,
+     * 使用chunked传输; 为0时总是chunked, 上游不支持chunked请求体时可调大
+     */
+    private int jsonBufferSize = JsonEntity.defaultBufferSize;
+    /**
+     * 请求体压缩编码, 默认为null, 即不压缩, 只压缩json及formData参数生成的请求体, 不压缩直接传入的HttpEntity
+     */
+    private HttpCodec requestCodec;
+    /**
+     * 请求体压缩阈值, 默认2048, 单位字节, 小于该长度的请求体不压缩
+     */
+    private int compressThreshold = defaultCompressThreshold;
+    /**
+     * 是否压缩长度未知的请求体(如超过jsonBufferSize的json), 默认false
+     */
+    private boolean compressUnknownLength = false;
+    /**
+     * 支持的响应压缩编码, 用于生成Accept-Encoding请求头及流式解压响应体, 默认gzip、deflate, 为空时不声明也不解压
+     */
+    private List<HttpCodec> responseCodecs = defaultResponseCodecs;
+    /**
+     * 响应缓存, 默认为null, 即不缓存
+     */
+    private ResponseCache responseCache;
+    /**
+     * 是否合并相同的并发请求, 默认false, 只合并无请求体的GET、HEAD、OPTIONS请求, 见{@link HttpRequestUtils#httpRequest}
+     */
+    private boolean singleFlight = false;
+    /**
+     * 合并请求时参与比较的请求头名称, 默认为null, 即比较除调用链追踪外的所有请求头
+     */
+    private List<String> singleFlightHeaders;
+    /**
+     * 合并请求时等待首个请求结果的最长时间, 默认0, 即connectionRequestTimeout、connectTimeout及socketTimeout之和,
+     * 单位毫秒; 超时后单独发送请求
+     */
+    private long singleFlightTimeout = 0;
+    /**
+     * 路由级配置, key为scheme://host:port
+     */
+    private final Map<String, RouteConfig> routeConfigs = new ConcurrentHashMap<>();
+    /**
+     * 负载均衡的服务配置, key为服务名
+     */
+    private final Map<String, ServiceConfig> serviceConfigs = new ConcurrentHashMap<>();
+    /**
+     * 已创建的连接池对路由配置变更的监听
+     */
+    private final List<RouteConfigListener> routeConfigListeners = new CopyOnWriteArrayList<>();
 
     public int getConnectTimeout() {
         return this.connectTimeout;
@@ -158,4 +267,343 @@ public class ConnectPool {
         this.retryCount = retryCount;
         return this;
     }
+
+    public RetryPolicy getRetryPolicy() {
+        return this.retryPolicy;
+    }
+
+    /**
+     * 设置重试策略, 为null时不重试响应码
+     */
+    public ConnectPool setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    /**
+     * 获取重试判断及重试预算, 同一配置创建的客户端共用
+     */
+    RetrySupport getRetrySupport() {
+        if (this.retrySupport == null) {
+            synchronized (this) {
+                if (this.retrySupport == null) {
+                    this.retrySupport = new RetrySupport(this);
+                }
+            }
+        }
+        return this.retrySupport;
+    }
+
+    public CircuitBreakerPolicy getCircuitBreakerPolicy() {
+        return this.circuitBreakerPolicy;
+    }
+
+    /**
+     * 设置路由级熔断策略, 需在发送请求前设置
+     */
+    public ConnectPool setCircuitBreakerPolicy(CircuitBreakerPolicy circuitBreakerPolicy) {
+        this.circuitBreakerPolicy = circuitBreakerPolicy;
+        return this;
+    }
+
+    public int getMaxPendingPerRoute() {
+        return this.maxPendingPerRoute;
+    }
+
+    public ConnectPool setMaxPendingPerRoute(int maxPendingPerRoute) {
+        this.maxPendingPerRoute = maxPendingPerRoute;
+        return this;
+    }
+
+    /**
+     * 获取路由级熔断及过载保护, 同一配置创建的客户端共用
+     */
+    RouteGuard getRouteGuard() {
+        if (this.routeGuard == null) {
+            synchronized (this) {
+                if (this.routeGuard == null) {
+                    this.routeGuard = new RouteGuard(this);
+                }
+            }
+        }
+        return this.routeGuard;
+    }
+
+    public HedgePolicy getHedgePolicy() {
+        return this.hedgePolicy;
+    }
+
+    /**
+     * 设置对冲请求策略, 同步客户端的首次请求及对冲请求在独立的执行器中执行
+     */
+    public ConnectPool setHedgePolicy(HedgePolicy hedgePolicy) {
+        this.hedgePolicy = hedgePolicy;
+        return this;
+    }
+
+    /**
+     * 获取对冲延时计算及对冲预算, 同一配置创建的客户端共用
+     */
+    HedgeSupport getHedgeSupport() {
+        if (this.hedgeSupport == null) {
+            synchronized (this) {
+                if (this.hedgeSupport == null) {
+                    this.hedgeSupport = new HedgeSupport(this);
+                }
+            }
+        }
+        return this.hedgeSupport;
+    }
+
+    public boolean isVirtualThreads() {
+        return this.virtualThreads;
+    }
+
+    public ConnectPool setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    public SslConfig getSslConfig() {
+        return this.sslConfig;
+    }
+
+    public ConnectPool setSslConfig(SslConfig sslConfig) {
+        this.sslConfig = sslConfig;
+        return this;
+    }
+
+    public boolean isHttp2() {
+        return this.http2;
+    }
+
+    public ConnectPool setHttp2(boolean http2) {
+        this.http2 = http2;
+        return this;
+    }
+
+    public HttpMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * 设置指标采集, 需在创建客户端前设置, 可使用{@link SimpleHttpMetrics}
+     */
+    public ConnectPool setMetrics(HttpMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public QsOptions getQsOptions() {
+        return this.qsOptions;
+    }
+
+    public ConnectPool setQsOptions(QsOptions qsOptions) {
+        this.qsOptions = qsOptions;
+        return this;
+    }
+
+    public int getJsonBufferSize() {
+        return this.jsonBufferSize;
+    }
+
+    public ConnectPool setJsonBufferSize(int jsonBufferSize) {
+        this.jsonBufferSize = jsonBufferSize;
+        return this;
+    }
+
+    public HttpCodec getRequestCodec() {
+        return this.requestCodec;
+    }
+
+    /**
+     * 设置请求体压缩编码, 服务端需支持对应的Content-Encoding, 如{@link HttpCodecs#gzip}
+     */
+    public ConnectPool setRequestCodec(HttpCodec requestCodec) {
+        this.requestCodec = requestCodec;
+        return this;
+    }
+
+    public int getCompressThreshold() {
+        return this.compressThreshold;
+    }
+
+    public ConnectPool setCompressThreshold(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+        return this;
+    }
+
+    public boolean isCompressUnknownLength() {
+        return this.compressUnknownLength;
+    }
+
+    public ConnectPool setCompressUnknownLength(boolean compressUnknownLength) {
+        this.compressUnknownLength = compressUnknownLength;
+        return this;
+    }
+
+    public List<HttpCodec> getResponseCodecs() {
+        return this.responseCodecs;
+    }
+
+    /**
+     * 设置支持的响应压缩编码, 需在创建客户端前设置
+     */
+    public ConnectPool setResponseCodecs(List<HttpCodec> responseCodecs) {
+        this.responseCodecs = responseCodecs == null ? Collections.emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(responseCodecs));
+        return this;
+    }
+
+    public ResponseCache getResponseCache() {
+        return this.responseCache;
+    }
+
+    /**
+     * 设置响应缓存, 需在创建客户端前设置, 只对同步客户端生效
+     */
+    public ConnectPool setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+        return this;
+    }
+
+    public boolean isSingleFlight() {
+        return this.singleFlight;
+    }
+
+    /**
+     * 设置是否合并相同的并发请求, 合并后只发送一次请求, 响应体读取到内存中, 每个调用获得独立的响应副本,
+     * 不适用于响应体较大的请求
+     */
+    public ConnectPool setSingleFlight(boolean singleFlight) {
+        this.singleFlight = singleFlight;
+        return this;
+    }
+
+    public List<String> getSingleFlightHeaders() {
+        return this.singleFlightHeaders;
+    }
+
+    public ConnectPool setSingleFlightHeaders(List<String> singleFlightHeaders) {
+        this.singleFlightHeaders = singleFlightHeaders == null ? null
+                : Collections.unmodifiableList(new ArrayList<>(singleFlightHeaders));
+        return this;
+    }
+
+    /**
+     * 获取合并请求时的等待时间, 未配置时为connectionRequestTimeout、connectTimeout及socketTimeout之和
+     */
+    public long getSingleFlightTimeout() {
+        if (this.singleFlightTimeout > 0) {
+            return this.singleFlightTimeout;
+        }
+        return (long) this.connectionRequestTimeout + this.connectTimeout + this.socketTimeout;
+    }
+
+    public ConnectPool setSingleFlightTimeout(long singleFlightTimeout) {
+        this.singleFlightTimeout = singleFlightTimeout;
+        return this;
+    }
+
+    /**
+     * 获取所有路由级配置
+     */
+    public Collection<RouteConfig> getRouteConfigs() {
+        return new ArrayList<>(this.routeConfigs.values());
+    }
+
+    /**
+     * 获取路由级配置, 不存在时返回null
+     *
+     * @param scheme 协议
+     * @param host   主机
+     * @param port   端口, 小于等于0时使用协议默认端口
+     */
+    public RouteConfig getRouteConfig(String scheme, String host, int port) {
+        if (this.routeConfigs.isEmpty() || scheme == null || host == null) {
+            return null;
+        }
+        return this.routeConfigs.get(RouteConfig.routeKey(scheme, host, port));
+    }
+
+    /**
+     * 替换所有路由级配置
+     */
+    public ConnectPool setRouteConfigs(Collection<RouteConfig> routeConfigs) {
+        for (RouteConfig routeConfig : this.getRouteConfigs()) {
+            this.removeRouteConfig(routeConfig.getScheme(), routeConfig.getHost(), routeConfig.getPort());
+        }
+        if (routeConfigs != null) {
+            for (RouteConfig routeConfig : routeConfigs) {
+                this.putRouteConfig(routeConfig);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 添加或更新路由级配置, 已创建的客户端无需重建即可生效;<br/>
+     * 修改已添加的RouteConfig对象后需要重新调用该方法, 最大连接数才会应用到已创建的连接池
+     */
+    public ConnectPool putRouteConfig(RouteConfig routeConfig) {
+        if (routeConfig == null) {
+            throw new IllegalArgumentException("routeConfig can not be null");
+        }
+        this.routeConfigs.put(routeConfig.getRouteKey(), routeConfig);
+        this.fireRouteConfigChange(routeConfig, false);
+        return this;
+    }
+
+    /**
+     * 移除路由级配置, 该路由恢复使用全局配置
+     */
+    public ConnectPool removeRouteConfig(String scheme, String host, int port) {
+        RouteConfig routeConfig = this.routeConfigs.remove(RouteConfig.routeKey(scheme, host, port));
+        if (routeConfig != null) {
+            this.fireRouteConfigChange(routeConfig, true);
+        }
+        return this;
+    }
+
+    /**
+     * 获取所有服务配置
+     */
+    public Collection<ServiceConfig> getServiceConfigs() {
+        return new ArrayList<>(this.serviceConfigs.values());
+    }
+
+    /**
+     * 获取服务配置, 不存在时返回null
+     */
+    public ServiceConfig getServiceConfig(String name) {
+        return name == null ? null : this.serviceConfigs.get(name);
+    }
+
+    /**
+     * 添加或更新服务配置, 之后可使用lb://服务名/路径形式的地址请求该服务
+     */
+    public ConnectPool putServiceConfig(ServiceConfig serviceConfig) {
+        if (serviceConfig == null) {
+            throw new IllegalArgumentException("serviceConfig can not be null");
+        }
+        this.serviceConfigs.put(serviceConfig.getName(), serviceConfig);
+        return this;
+    }
+
+    public ConnectPool removeServiceConfig(String name) {
+        this.serviceConfigs.remove(name);
+        return this;
+    }
+
+    void addRouteConfigListener(RouteConfigListener listener) {
+        this.routeConfigListeners.add(listener);
+    }
+
+    private void fireRouteConfigChange(RouteConfig routeConfig, boolean removed) {
+        for (RouteConfigListener listener : this.routeConfigListeners) {
+            if (!listener.onChange(routeConfig, removed)) {
+                this.routeConfigListeners.remove(listener);
+            }
+        }
+    }
 }
@@ -0,0 +1,49 @@
+package org.rdlinux.luava.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 解析后对象缓存, 按url及目标类型缓存, 记录对应响应的校验值, 校验值不变时复用解析结果
+ */
+final class DecodedObjectCache {
+    private final Map<String, DecodedValue> entries;
+
+    DecodedObjectCache(int maxEntries) {
+        this.entries = new LinkedHashMap<String, DecodedValue>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DecodedValue> eldest) {
+                return this.size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 获取校验值一致的缓存对象, 不存在时返回null
+     */
+    synchronized Object get(String key, String validator) {
+        DecodedValue entry = this.entries.get(key);
+        if (entry == null || !entry.validator.equals(validator)) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    synchronized void put(String key, String validator, Object value) {
+        this.entries.put(key, new DecodedValue(validator, value));
+    }
+
+    synchronized void remove(String key) {
+        this.entries.remove(key);
+    }
+
+    private static class DecodedValue {
+        private final String validator;
+        private final Object value;
+
+        private DecodedValue(String validator, Object value) {
+            this.validator = validator;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.rdlinux.luava.http;
+
+/**
+ * 文件下载选项, 见{@link HttpRequestUtils#download}
+ */
+public class DownloadOptions {
+    private static final int defaultBufferSize = 64 * 1024;
+    private static final int defaultMaxResumes = 3;
+    /**
+     * 读写缓冲区大小, 默认64K, 单位字节, 使用直接内存
+     */
+    private int bufferSize = defaultBufferSize;
+    /**
+     * 是否从已存在文件的末尾继续下载, 默认false, 即覆盖已存在的文件
+     */
+    private boolean resumeExisting = false;
+    /**
+     * 读取响应体出错后使用Range请求续传的最大次数, 默认3, 为0时不续传
+     */
+    private int maxResumes = defaultMaxResumes;
+    /**
+     * 校验和算法, 如SHA-256、MD5, 为null时不计算校验和
+     */
+    private String checksumAlgorithm;
+    /**
+     * 期望的校验和, 十六进制, 不为null时下载完成后校验, 不一致时删除文件并抛出异常
+     */
+    private String expectedChecksum;
+    /**
+     * 进度监听
+     */
+    private ProgressListener progressListener;
+
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    public DownloadOptions setBufferSize(int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be greater than 0");
+        }
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    public boolean isResumeExisting() {
+        return this.resumeExisting;
+    }
+
+    public DownloadOptions setResumeExisting(boolean resumeExisting) {
+        this.resumeExisting = resumeExisting;
+        return this;
+    }
+
+    public int getMaxResumes() {
+        return this.maxResumes;
+    }
+
+    public DownloadOptions setMaxResumes(int maxResumes) {
+        this.maxResumes = maxResumes;
+        return this;
+    }
+
+    public String getChecksumAlgorithm() {
+        return this.checksumAlgorithm;
+    }
+
+    public DownloadOptions setChecksumAlgorithm(String checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+        return this;
+    }
+
+    public String getExpectedChecksum() {
+        return this.expectedChecksum;
+    }
+
+    /**
+     * 设置期望的校验和, 同时需要设置校验和算法
+     */
+    public DownloadOptions setExpectedChecksum(String expectedChecksum) {
+        this.expectedChecksum = expectedChecksum;
+        return this;
+    }
+
+    public ProgressListener getProgressListener() {
+        return this.progressListener;
+    }
+
+    public DownloadOptions setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+}
@@ -0,0 +1,43 @@
+package org.rdlinux.luava.http;
+
+/**
+ * 文件下载结果
+ */
+public class DownloadResult {
+    private final long length;
+    private final String checksum;
+    private final int resumes;
+
+    DownloadResult(long length, String checksum, int resumes) {
+        this.length = length;
+        this.checksum = checksum;
+        this.resumes = resumes;
+    }
+
+    /**
+     * 文件长度, 包含续传前已存在的部分
+     */
+    public long getLength() {
+        return this.length;
+    }
+
+    /**
+     * 整个文件的校验和, 十六进制小写, 未设置校验和算法时为null
+     */
+    public String getChecksum() {
+        return this.checksum;
+    }
+
+    /**
+     * 下载过程中续传的次数
+     */
+    public int getResumes() {
+        return this.resumes;
+    }
+
+    @Override
+    public String toString() {
+        return "DownloadResult{length=" + this.length + ", checksum=" + this.checksum + ", resumes=" + this.resumes
+                + "}";
+    }
+}
@@ -0,0 +1,313 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 服务端推送事件源, 基于NIO客户端接收text/event-stream, 在io线程中解析事件, 不占用调用线程;<br/>
+ * 事件按请求数交付给监听, 未交付的事件过多时暂停读取连接; 连接断开后按重连间隔自动重连, 并携带Last-Event-ID请求头
+ */
+public class EventSource implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(EventSource.class);
+    private static final String lastEventIdHeader = "Last-Event-ID";
+    private static final int bufferSize = 8192;
+    private final Supplier<HttpRequestBase> requestSupplier;
+    private final Supplier<CloseableHttpAsyncClient> clientSupplier;
+    private final EventSourceListener listener;
+    private final EventSourceOptions options;
+    private final Queue<ServerSentEvent> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong demand;
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile String lastEventId = "";
+    private volatile long reconnectDelay;
+    private volatile boolean closed;
+    private volatile boolean suspended;
+    private volatile IOControl ioControl;
+    private volatile Future<?> current;
+    private final AtomicInteger reconnects = new AtomicInteger();
+
+    /**
+     * @param requestSupplier 每次连接创建新的GET请求
+     * @param clientSupplier  异步客户端
+     */
+    EventSource(Supplier<HttpRequestBase> requestSupplier, Supplier<CloseableHttpAsyncClient> clientSupplier,
+                EventSourceListener listener, EventSourceOptions options) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener can not be null");
+        }
+        this.requestSupplier = requestSupplier;
+        this.clientSupplier = clientSupplier;
+        this.listener = listener;
+        this.options = options;
+        this.demand = new AtomicLong(options.getInitialDemand());
+        this.reconnectDelay = options.getReconnectDelay();
+    }
+
+    /**
+     * 最后收到的事件id, 重连时作为Last-Event-ID请求头
+     */
+    public String getLastEventId() {
+        return this.lastEventId;
+    }
+
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * 请求后续n个事件, 有未交付的事件时在当前线程中交付
+     */
+    public void request(long n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be greater than 0");
+        }
+        while (true) {
+            long current = this.demand.get();
+            if (current == Long.MAX_VALUE) {
+                break;
+            }
+            long next = current + n;
+            if (this.demand.compareAndSet(current, next < 0 ? Long.MAX_VALUE : next)) {
+                break;
+            }
+        }
+        this.drain();
+    }
+
+    /**
+     * 关闭事件源, 断开当前连接且不再重连
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        Future<?> future = this.current;
+        if (future != null) {
+            future.cancel(true);
+        }
+        this.pending.clear();
+        this.pendingCount.set(0);
+        try {
+            this.listener.onClosed(this);
+        } catch (RuntimeException e) {
+            log.error("event source listener failed", e);
+        }
+    }
+
+    void connect() {
+        if (this.closed) {
+            return;
+        }
+        HttpRequestBase request;
+        try {
+            request = this.requestSupplier.get();
+        } catch (RuntimeException e) {
+            this.onFailure(e, false);
+            return;
+        }
+        request.setHeader(HttpHeaders.ACCEPT, "text/event-stream");
+        request.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        String lastEventId = this.lastEventId;
+        if (!lastEventId.isEmpty()) {
+            request.setHeader(lastEventIdHeader, lastEventId);
+        }
+        StreamConsumer consumer = new StreamConsumer(lastEventId);
+        Future<Void> future;
+        try {
+            future = this.clientSupplier.get().execute(HttpAsyncMethods.create(request), consumer,
+                    new FutureCallback<Void>() {
+                        @Override
+                        public void completed(Void result) {
+                            EventSource.this.onFailure(null, false);
+                        }
+
+                        @Override
+                        public void failed(Exception ex) {
+                            if (consumer.stopped) {
+                                EventSource.this.close();
+                            } else {
+                                EventSource.this.onFailure(ex, consumer.fatal);
+                            }
+                        }
+
+                        @Override
+                        public void cancelled() {
+                        }
+                    });
+        } catch (RuntimeException e) {
+            // 如客户端已关闭
+            this.onFailure(e, true);
+            return;
+        }
+        this.current = future;
+        if (this.closed) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * 连接结束或出错
+     *
+     * @param cause 出错原因, 服务端正常结束时为null
+     * @param fatal 不可恢复的错误, 不再重连
+     */
+    private void onFailure(Throwable cause, boolean fatal) {
+        if (this.closed) {
+            return;
+        }
+        if (cause != null) {
+            try {
+                this.listener.onError(this, cause);
+            } catch (RuntimeException e) {
+                log.error("event source listener failed", e);
+            }
+        }
+        int maxReconnects = this.options.getMaxReconnects();
+        if (fatal || (maxReconnects >= 0 && this.reconnects.get() >= maxReconnects)) {
+            this.close();
+            return;
+        }
+        this.reconnects.incrementAndGet();
+        RetrySupport.schedule(this::connect, this.reconnectDelay);
+    }
+
+    private void onParsed(ServerSentEvent event) {
+        this.pending.offer(event);
+        this.pendingCount.incrementAndGet();
+    }
+
+    /**
+     * 按请求数交付事件, 同一时刻只有一个线程交付, 未交付的事件减少到一半以下时恢复读取连接
+     */
+    private void drain() {
+        if (this.wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (!this.closed && this.demand.get() > 0) {
+                ServerSentEvent event = this.pending.poll();
+                if (event == null) {
+                    break;
+                }
+                this.pendingCount.decrementAndGet();
+                if (this.demand.get() != Long.MAX_VALUE) {
+                    this.demand.decrementAndGet();
+                }
+                try {
+                    this.listener.onEvent(this, event);
+                } catch (RuntimeException e) {
+                    log.error("event source listener failed", e);
+                }
+            }
+            if (this.suspended && this.pendingCount.get() <= this.options.getMaxPendingEvents() / 2) {
+                this.suspended = false;
+                IOControl ioControl = this.ioControl;
+                if (ioControl != null) {
+                    ioControl.requestInput();
+                }
+            }
+            missed = this.wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * 在io线程中读取响应体并解析事件
+     */
+    private class StreamConsumer extends AbstractAsyncResponseConsumer<Void> {
+        private final SseParser parser;
+        private final ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        private volatile boolean fatal;
+        /**
+         * 服务端以204要求停止
+         */
+        private volatile boolean stopped;
+
+        private StreamConsumer(String lastEventId) {
+            this.parser = new SseParser(lastEventId, EventSource.this::onParsed,
+                    id -> EventSource.this.lastEventId = id, delay -> EventSource.this.reconnectDelay = delay);
+        }
+
+        @Override
+        protected void onResponseReceived(HttpResponse response) throws IOException {
+            int status = response.getStatusLine().getStatusCode();
+            if (status == HttpStatus.SC_NO_CONTENT) {
+                this.stopped = true;
+                throw new IOException("event stream stopped by server");
+            }
+            // 5xx可能是暂时的错误, 重连, 其他状态不再重连
+            if (status != HttpStatus.SC_OK) {
+                this.fatal = status < 500;
+                throw new IOException("unexpected event stream status: " + response.getStatusLine());
+            }
+            Header contentType = response.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+            if (contentType == null || !contentType.getValue().toLowerCase(Locale.ROOT).startsWith("text/event-stream")) {
+                this.fatal = true;
+                throw new IOException("unexpected event stream content type: "
+                        + (contentType == null ? null : contentType.getValue()));
+            }
+            EventSource.this.reconnects.set(0);
+            EventSource.this.listener.onOpen(EventSource.this, response);
+        }
+
+        @Override
+        protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) {
+        }
+
+        @Override
+        protected void onContentReceived(ContentDecoder decoder, IOControl ioControl) throws IOException {
+            EventSource.this.ioControl = ioControl;
+            while (decoder.read(this.buffer) > 0) {
+                ((Buffer) this.buffer).flip();
+                this.parser.feed(this.buffer);
+                ((Buffer) this.buffer).clear();
+            }
+            EventSource.this.drain();
+            if (!EventSource.this.closed
+                    && EventSource.this.pendingCount.get() >= EventSource.this.options.getMaxPendingEvents()) {
+                ioControl.suspendInput();
+                EventSource.this.suspended = true;
+                // 暂停前后可能已被其他线程交付完毕
+                EventSource.this.drain();
+            }
+        }
+
+        @Override
+        protected Void buildResult(HttpContext context) {
+            return null;
+        }
+
+        @Override
+        protected void releaseResources() {
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.HttpResponse;
+
+/**
+ * 服务端推送事件监听, 在io线程或调用{@link EventSource#request}的线程中调用, 同一事件源的onEvent不会并发执行;<br/>
+ * 不应执行耗时操作, 耗时处理应交给其他线程并在处理完成后再请求后续事件
+ */
+public interface EventSourceListener {
+    /**
+     * 收到事件
+     */
+    void onEvent(EventSource eventSource, ServerSentEvent event);
+
+    /**
+     * 连接建立, 每次重连成功都会调用
+     */
+    default void onOpen(EventSource eventSource, HttpResponse response) {
+    }
+
+    /**
+     * 连接出错, 之后会按重连间隔重连, 不再重连时随后调用{@link #onClosed}
+     */
+    default void onError(EventSource eventSource, Throwable throwable) {
+    }
+
+    /**
+     * 事件源已关闭, 不再重连
+     */
+    default void onClosed(EventSource eventSource) {
+    }
+}
@@ -0,0 +1,85 @@
+package org.rdlinux.luava.http;
+
+/**
+ * 服务端推送事件源选项, 见{@link AsyncHttpRequestUtils#eventSource}
+ */
+public class EventSourceOptions {
+    private static final long defaultReconnectDelay = 3000;
+    private static final int defaultMaxPendingEvents = 256;
+    /**
+     * 重连间隔, 默认3000, 单位毫秒, 服务端通过retry字段指定时使用服务端的值
+     */
+    private long reconnectDelay = defaultReconnectDelay;
+    /**
+     * 最大重连次数, 默认-1, 即不限制, 为0时不重连; 连接成功后重新计数
+     */
+    private int maxReconnects = -1;
+    /**
+     * 读取超时时间, 单位毫秒, 默认0, 即不超时, 为null时使用连接池的socketTimeout;
+     * 服务端定时发送注释行作为心跳时可设置为大于心跳间隔的值, 以便及时发现断开的连接
+     */
+    private Integer readTimeout = 0;
+    /**
+     * 初始请求的事件数, 默认Long.MAX_VALUE, 即不限制;
+     * 设置为较小的值并在处理完成后调用{@link EventSource#request}请求后续事件, 实现背压
+     */
+    private long initialDemand = Long.MAX_VALUE;
+    /**
+     * 未交付的事件达到该数量时暂停读取连接, 默认256
+     */
+    private int maxPendingEvents = defaultMaxPendingEvents;
+
+    public long getReconnectDelay() {
+        return this.reconnectDelay;
+    }
+
+    public EventSourceOptions setReconnectDelay(long reconnectDelay) {
+        if (reconnectDelay < 0) {
+            throw new IllegalArgumentException("reconnectDelay can not be negative");
+        }
+        this.reconnectDelay = reconnectDelay;
+        return this;
+    }
+
+    public int getMaxReconnects() {
+        return this.maxReconnects;
+    }
+
+    public EventSourceOptions setMaxReconnects(int maxReconnects) {
+        this.maxReconnects = maxReconnects;
+        return this;
+    }
+
+    public Integer getReadTimeout() {
+        return this.readTimeout;
+    }
+
+    public EventSourceOptions setReadTimeout(Integer readTimeout) {
+        this.readTimeout = readTimeout;
+        return this;
+    }
+
+    public long getInitialDemand() {
+        return this.initialDemand;
+    }
+
+    public EventSourceOptions setInitialDemand(long initialDemand) {
+        if (initialDemand < 0) {
+            throw new IllegalArgumentException("initialDemand can not be negative");
+        }
+        this.initialDemand = initialDemand;
+        return this;
+    }
+
+    public int getMaxPendingEvents() {
+        return this.maxPendingEvents;
+    }
+
+    public EventSourceOptions setMaxPendingEvents(int maxPendingEvents) {
+        if (maxPendingEvents <= 0) {
+            throw new IllegalArgumentException("maxPendingEvents must be greater than 0");
+        }
+        this.maxPendingEvents = maxPendingEvents;
+        return this;
+    }
+}
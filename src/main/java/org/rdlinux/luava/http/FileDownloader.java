@@ -0,0 +1,276 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 流式下载响应体到文件, 使用直接内存缓冲区写入FileChannel, 读取中断时使用Range请求续传,
+ * 每次请求结束后都关闭响应, 读取完整的连接归还连接池
+ */
+final class FileDownloader {
+    private static final Logger log = LoggerFactory.getLogger(FileDownloader.class);
+    private static final char[] hexDigits = "0123456789abcdef".toCharArray();
+    private final Supplier<HttpRequestBase> requestSupplier;
+    private final Function<HttpRequestBase, CloseableHttpResponse> executor;
+    private final DownloadOptions options;
+    private final MessageDigest digest;
+    /**
+     * 用于If-Range的ETag或Last-Modified, 保证续传的是同一版本的资源
+     */
+    private String validator;
+    private long total = -1;
+
+    /**
+     * @param requestSupplier 每次请求创建新的GET请求
+     * @param executor        执行请求
+     */
+    FileDownloader(Supplier<HttpRequestBase> requestSupplier, Function<HttpRequestBase, CloseableHttpResponse> executor,
+                   DownloadOptions options) {
+        this.requestSupplier = requestSupplier;
+        this.executor = executor;
+        this.options = options;
+        if (options.getChecksumAlgorithm() == null) {
+            this.digest = null;
+        } else {
+            try {
+                this.digest = MessageDigest.getInstance(options.getChecksumAlgorithm());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+
+    /**
+     * 下载到文件通道, 开启resumeExisting时从通道末尾继续, 否则清空通道后从头写入
+     */
+    DownloadResult download(FileChannel channel) throws IOException {
+        long offset = 0;
+        if (this.options.isResumeExisting()) {
+            offset = channel.size();
+            this.digestExisting(channel, offset);
+        } else {
+            channel.truncate(0);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(this.options.getBufferSize());
+        int resumes = 0;
+        while (true) {
+            IOException readFailure;
+            HttpRequestBase request = this.requestSupplier.get();
+            // 不使用压缩编码, 保证Range的偏移与文件偏移一致
+            request.setHeader(HttpHeaders.ACCEPT_ENCODING, "identity");
+            if (offset > 0) {
+                request.setHeader(HttpHeaders.RANGE, "bytes=" + offset + "-");
+                if (this.validator != null) {
+                    request.setHeader(HttpHeaders.IF_RANGE, this.validator);
+                }
+            }
+            try (CloseableHttpResponse response = this.executor.apply(request)) {
+                offset = this.prepare(response, channel, offset);
+                if (offset == this.total) {
+                    break;
+                }
+                readFailure = this.transfer(response.getEntity(), channel, buffer, offset);
+                if (readFailure == null) {
+                    break;
+                }
+                offset = channel.position();
+            }
+            if (resumes >= this.options.getMaxResumes()) {
+                throw readFailure;
+            }
+            resumes++;
+            log.warn("download interrupted at {}, resuming, error:{}", offset, readFailure.toString());
+        }
+        String checksum = this.digest == null ? null : toHex(this.digest.digest());
+        return new DownloadResult(channel.position(), checksum, resumes);
+    }
+
+    /**
+     * 校验下载结果的校验和
+     */
+    static void verify(DownloadResult result, DownloadOptions options) throws IOException {
+        String expected = options.getExpectedChecksum();
+        if (expected != null && !expected.equalsIgnoreCase(result.getChecksum())) {
+            throw new IOException("checksum mismatch, expected:" + expected + ", actual:" + result.getChecksum());
+        }
+    }
+
+    /**
+     * 根据响应确定写入位置, 服务端忽略Range时从头写入
+     *
+     * @return 写入位置
+     */
+    private long prepare(CloseableHttpResponse response, FileChannel channel, long offset) throws IOException {
+        int status = response.getStatusLine().getStatusCode();
+        Header contentRange = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+        if (status == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE && offset > 0) {
+            // 已存在的部分等于文件长度, 无需再下载
+            if (contentRange != null && parseContentRange(contentRange.getValue())[2] == offset) {
+                this.total = offset;
+                channel.position(offset);
+                return offset;
+            }
+            throw new IOException("range not satisfiable, offset:" + offset);
+        }
+        if (status == HttpStatus.SC_PARTIAL_CONTENT && offset > 0 && contentRange != null) {
+            long[] range = parseContentRange(contentRange.getValue());
+            if (range[0] != offset) {
+                throw new IOException("unexpected content range: " + contentRange.getValue());
+            }
+            this.total = range[2];
+        } else if (status == HttpStatus.SC_OK) {
+            offset = 0;
+            channel.truncate(0);
+            if (this.digest != null) {
+                this.digest.reset();
+            }
+            HttpEntity entity = response.getEntity();
+            this.total = entity == null ? 0 : entity.getContentLength();
+        } else {
+            throw new IOException("download failed, status:" + status);
+        }
+        this.validator = validator(response);
+        channel.position(offset);
+        return offset;
+    }
+
+    /**
+     * 读取响应体写入文件, 读取出错时返回异常以便续传, 写文件出错直接抛出
+     *
+     * @return 读取出错时返回异常, 完成时返回null
+     */
+    private IOException transfer(HttpEntity entity, FileChannel channel, ByteBuffer buffer, long offset)
+            throws IOException {
+        if (entity == null) {
+            return null;
+        }
+        ProgressListener progressListener = this.options.getProgressListener();
+        long position = offset;
+        InputStream content;
+        try {
+            content = entity.getContent();
+        } catch (IOException e) {
+            return e;
+        }
+        ReadableByteChannel in = Channels.newChannel(content);
+        while (true) {
+            ((Buffer) buffer).clear();
+            int read;
+            try {
+                read = in.read(buffer);
+            } catch (IOException e) {
+                return e;
+            }
+            if (read < 0) {
+                break;
+            }
+            ((Buffer) buffer).flip();
+            if (this.digest != null) {
+                ((Buffer) buffer).mark();
+                this.digest.update(buffer);
+                ((Buffer) buffer).reset();
+            }
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer);
+            }
+            if (progressListener != null) {
+                progressListener.onProgress(position, this.total);
+            }
+        }
+        if (this.total >= 0 && position < this.total) {
+            return new IOException("premature end of content, received:" + position + ", expected:" + this.total);
+        }
+        return null;
+    }
+
+    /**
+     * 续传已存在的文件时, 先计算已存在部分的校验和
+     */
+    private void digestExisting(FileChannel channel, long length) throws IOException {
+        if (this.digest == null || length == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(this.options.getBufferSize());
+        long position = 0;
+        while (position < length) {
+            ((Buffer) buffer).clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            ((Buffer) buffer).flip();
+            this.digest.update(buffer);
+            position += read;
+        }
+    }
+
+    /**
+     * 强ETag优先, 其次Last-Modified
+     */
+    private static String validator(CloseableHttpResponse response) {
+        Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+        if (etag != null && !etag.getValue().startsWith("W/")) {
+            return etag.getValue();
+        }
+        Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+        return lastModified == null ? null : lastModified.getValue();
+    }
+
+    /**
+     * 解析Content-Range, 如bytes 0-99/200
+     *
+     * @return 起始位置、结束位置、总长度, 未知的值为-1
+     */
+    static long[] parseContentRange(String value) {
+        long[] range = {-1, -1, -1};
+        String spec = value.trim();
+        if (spec.regionMatches(true, 0, "bytes", 0, 5)) {
+            spec = spec.substring(5).trim();
+        }
+        int slash = spec.indexOf('/');
+        try {
+            if (slash >= 0) {
+                String length = spec.substring(slash + 1).trim();
+                if (!"*".equals(length)) {
+                    range[2] = Long.parseLong(length);
+                }
+                spec = spec.substring(0, slash).trim();
+            }
+            int dash = spec.indexOf('-');
+            if (dash > 0) {
+                range[0] = Long.parseLong(spec.substring(0, dash).trim());
+                range[1] = Long.parseLong(spec.substring(dash + 1).trim());
+            }
+        } catch (NumberFormatException e) {
+            return new long[]{-1, -1, -1};
+        }
+        return range;
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = hexDigits[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = hexDigits[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,74 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MIME;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * multipart文件部分, 用于{@link org.apache.http.entity.mime.MultipartEntityBuilder#addPart},
+ * 发送时打开文件通道使用{@link java.nio.channels.FileChannel#transferTo}写出, 可重复发送, 可只发送文件的一部分
+ */
+public class FileRegionBody extends AbstractContentBody {
+    private final Path file;
+    private final long position;
+    private final long length;
+    private final String filename;
+
+    /**
+     * @param file 文件, 文件名作为上传文件名
+     */
+    public FileRegionBody(Path file) {
+        this(file, ContentType.DEFAULT_BINARY, file.getFileName().toString());
+    }
+
+    public FileRegionBody(Path file, ContentType contentType, String filename) {
+        this(file, 0, -1, contentType, filename);
+    }
+
+    /**
+     * @param file        文件
+     * @param position    起始位置
+     * @param length      长度, 为-1时发送到文件末尾
+     * @param contentType 内容类型
+     * @param filename    上传文件名
+     */
+    public FileRegionBody(Path file, long position, long length, ContentType contentType, String filename) {
+        super(contentType == null ? ContentType.DEFAULT_BINARY : contentType);
+        if (position < 0) {
+            throw new IllegalArgumentException("position can not be negative");
+        }
+        this.file = file;
+        this.position = position;
+        this.length = length < 0 ? FileRegionEntity.regionLength(file, position) : length;
+        this.filename = filename;
+    }
+
+    public Path getFile() {
+        return this.file;
+    }
+
+    @Override
+    public String getFilename() {
+        return this.filename;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        FileRegionEntity.transfer(this.file, this.position, this.length, out);
+        out.flush();
+    }
+
+    @Override
+    public String getTransferEncoding() {
+        return MIME.ENC_BINARY;
+    }
+
+    @Override
+    public long getContentLength() {
+        return this.length;
+    }
+}
@@ -0,0 +1,216 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.FileContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 文件或文件片段请求体, 每次发送时重新打开文件通道, 可重复发送, 重试时不需要把文件缓冲到内存;<br/>
+ * 同步发送使用{@link FileChannel#transferTo}写入连接输出流, 异步发送明文连接时直接由文件通道传输到socket
+ */
+public class FileRegionEntity extends AbstractHttpEntity implements HttpAsyncContentProducer {
+    private static final int bufferSize = 8192;
+    private final Path file;
+    private final long position;
+    private final long length;
+    /**
+     * 异步发送状态
+     */
+    private FileChannel channel;
+    private long produced;
+    private ByteBuffer buffer;
+
+    /**
+     * @param file 文件, 发送整个文件
+     */
+    public FileRegionEntity(Path file) {
+        this(file, 0, -1, ContentType.APPLICATION_OCTET_STREAM);
+    }
+
+    /**
+     * @param file        文件
+     * @param position    起始位置
+     * @param length      长度, 为-1时发送到文件末尾
+     * @param contentType 内容类型, 可为null
+     */
+    public FileRegionEntity(Path file, long position, long length, ContentType contentType) {
+        if (file == null) {
+            throw new IllegalArgumentException("file can not be null");
+        }
+        if (position < 0) {
+            throw new IllegalArgumentException("position can not be negative");
+        }
+        this.file = file;
+        this.position = position;
+        this.length = length < 0 ? regionLength(file, position) : length;
+        if (contentType != null) {
+            this.setContentType(contentType.toString());
+        }
+    }
+
+    public Path getFile() {
+        return this.file;
+    }
+
+    public long getPosition() {
+        return this.position;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return this.length;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ);
+        channel.position(this.position);
+        return new RegionInputStream(Channels.newInputStream(channel), this.length);
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        if (outStream == null) {
+            throw new IllegalArgumentException("Output stream may not be null");
+        }
+        transfer(this.file, this.position, this.length, outStream);
+        outStream.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public void produceContent(ContentEncoder encoder, IOControl ioControl) throws IOException {
+        if (this.channel == null) {
+            this.channel = FileChannel.open(this.file, StandardOpenOption.READ);
+            this.produced = 0;
+        }
+        long remaining = this.length - this.produced;
+        if (remaining > 0) {
+            long written;
+            if (encoder instanceof FileContentEncoder) {
+                written = ((FileContentEncoder) encoder).transfer(this.channel, this.position + this.produced,
+                        remaining);
+            } else {
+                if (this.buffer == null) {
+                    this.buffer = ByteBuffer.allocate(bufferSize);
+                    ((Buffer) this.buffer).flip();
+                }
+                if (!this.buffer.hasRemaining()) {
+                    ((Buffer) this.buffer).clear();
+                    ((Buffer) this.buffer).limit((int) Math.min(bufferSize, remaining));
+                    int read = this.channel.read(this.buffer, this.position + this.produced);
+                    if (read < 0) {
+                        throw new IOException("file truncated: " + this.file);
+                    }
+                    ((Buffer) this.buffer).flip();
+                }
+                written = encoder.write(this.buffer);
+            }
+            this.produced += written;
+        }
+        if (this.produced >= this.length) {
+            encoder.complete();
+            this.close();
+        }
+    }
+
+    /**
+     * 重置异步发送状态, 重试时从头发送
+     */
+    @Override
+    public void close() throws IOException {
+        FileChannel channel = this.channel;
+        this.channel = null;
+        this.buffer = null;
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * 把文件片段写入输出流, 使用{@link FileChannel#transferTo}, 目标不是文件或socket通道时由jdk分段复制
+     */
+    static void transfer(Path file, long position, long length, OutputStream outStream) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(outStream);
+            long transferred = 0;
+            while (transferred < length) {
+                long n = channel.transferTo(position + transferred, length - transferred, target);
+                if (n <= 0 && position + transferred >= channel.size()) {
+                    throw new IOException("file truncated: " + file);
+                }
+                transferred += n;
+            }
+        }
+    }
+
+    static long regionLength(Path file, long position) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return Math.max(0, channel.size() - position);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class RegionInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        private RegionInputStream(InputStream in, long remaining) {
+            this.in = in;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (this.remaining <= 0) {
+                return -1;
+            }
+            int b = this.in.read();
+            if (b >= 0) {
+                this.remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (this.remaining <= 0) {
+                return -1;
+            }
+            int n = this.in.read(b, off, (int) Math.min(len, this.remaining));
+            if (n > 0) {
+                this.remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.in.close();
+        }
+    }
+}
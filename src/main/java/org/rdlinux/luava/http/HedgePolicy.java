@@ -0,0 +1,94 @@
+package org.rdlinux.luava.http;
+
+/**
+ * 对冲请求策略, 只用于无请求体的GET、HEAD、OPTIONS请求;<br/>
+ * 请求在对冲延时内未收到响应时再发送一次相同的请求, 使用先收到的响应, 中止另一个请求;
+ * 每个路由有独立的对冲预算, 对冲请求数不超过正常请求数的一定比例
+ */
+public class HedgePolicy {
+    private static final double defaultPercentile = 0.95;
+    private static final long defaultMinDelay = 5;
+    private static final int defaultMinSamples = 50;
+    private static final double defaultBudgetRatio = 0.05;
+    /**
+     * 固定对冲延时, 默认0, 单位毫秒, 为0时按该路由最近的响应耗时分位数计算
+     */
+    private long delay = 0;
+    /**
+     * 计算对冲延时使用的耗时分位数, 默认0.95
+     */
+    private double percentile = defaultPercentile;
+    /**
+     * 最小对冲延时, 默认5, 单位毫秒
+     */
+    private long minDelay = defaultMinDelay;
+    /**
+     * 按分位数计算对冲延时需要的最少耗时样本数, 默认50, 样本不足时不对冲
+     */
+    private int minSamples = defaultMinSamples;
+    /**
+     * 每个路由的对冲请求数占请求数的最大比例, 默认0.05
+     */
+    private double budgetRatio = defaultBudgetRatio;
+    /**
+     * 每个路由每秒至少允许的对冲请求数, 默认0
+     */
+    private int budgetMinPerSecond = 0;
+
+    public long getDelay() {
+        return this.delay;
+    }
+
+    public HedgePolicy setDelay(long delay) {
+        this.delay = delay;
+        return this;
+    }
+
+    public double getPercentile() {
+        return this.percentile;
+    }
+
+    public HedgePolicy setPercentile(double percentile) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1");
+        }
+        this.percentile = percentile;
+        return this;
+    }
+
+    public long getMinDelay() {
+        return this.minDelay;
+    }
+
+    public HedgePolicy setMinDelay(long minDelay) {
+        this.minDelay = minDelay;
+        return this;
+    }
+
+    public int getMinSamples() {
+        return this.minSamples;
+    }
+
+    public HedgePolicy setMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+        return this;
+    }
+
+    public double getBudgetRatio() {
+        return this.budgetRatio;
+    }
+
+    public HedgePolicy setBudgetRatio(double budgetRatio) {
+        this.budgetRatio = budgetRatio;
+        return this;
+    }
+
+    public int getBudgetMinPerSecond() {
+        return this.budgetMinPerSecond;
+    }
+
+    public HedgePolicy setBudgetMinPerSecond(int budgetMinPerSecond) {
+        this.budgetMinPerSecond = budgetMinPerSecond;
+        return this;
+    }
+}
@@ -0,0 +1,122 @@
+package org.rdlinux.luava.http;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对冲延时计算及对冲预算, 同一连接池配置创建的同步和异步客户端共用
+ */
+final class HedgeSupport {
+    /**
+     * 每个路由保留的最近耗时样本数
+     */
+    private static final int sampleSize = 256;
+    /**
+     * 每新增多少个样本重新计算一次分位数
+     */
+    private static final int recomputeInterval = 32;
+    private final ConnectPool connectPool;
+    private final ConcurrentMap<String, RouteStats> routes = new ConcurrentHashMap<>();
+
+    HedgeSupport(ConnectPool connectPool) {
+        this.connectPool = connectPool;
+    }
+
+    boolean isEnabled() {
+        return this.connectPool.getHedgePolicy() != null;
+    }
+
+    /**
+     * 记录一次请求, 为该路由的对冲预算累积额度
+     */
+    void onRequest(String route) {
+        HedgePolicy policy = this.connectPool.getHedgePolicy();
+        if (policy != null) {
+            this.getStats(route, policy).budget.deposit(policy.getBudgetRatio());
+        }
+    }
+
+    /**
+     * 获取对冲延时, 单位毫秒, 不对冲时返回-1
+     */
+    long hedgeDelay(String route) {
+        HedgePolicy policy = this.connectPool.getHedgePolicy();
+        if (policy == null) {
+            return -1;
+        }
+        if (policy.getDelay() > 0) {
+            return Math.max(policy.getDelay(), policy.getMinDelay());
+        }
+        long percentileNanos = this.getStats(route, policy).percentile(policy);
+        if (percentileNanos < 0) {
+            return -1;
+        }
+        return Math.max(TimeUnit.NANOSECONDS.toMillis(percentileNanos), policy.getMinDelay());
+    }
+
+    /**
+     * 获取发送对冲请求的许可
+     */
+    boolean tryAcquire(String route) {
+        HedgePolicy policy = this.connectPool.getHedgePolicy();
+        return policy != null && this.getStats(route, policy).budget.tryAcquire();
+    }
+
+    /**
+     * 记录收到响应的耗时
+     */
+    void record(String route, long durationNanos) {
+        HedgePolicy policy = this.connectPool.getHedgePolicy();
+        if (policy != null) {
+            this.getStats(route, policy).record(durationNanos);
+        }
+    }
+
+    private RouteStats getStats(String route, HedgePolicy policy) {
+        return this.routes.computeIfAbsent(route, k -> new RouteStats(policy.getBudgetMinPerSecond()));
+    }
+
+    /**
+     * 路由的对冲预算及最近的耗时样本
+     */
+    private static class RouteStats {
+        private final TokenBudget budget;
+        private final long[] samples = new long[sampleSize];
+        private int sampleIndex;
+        private int sampleCount;
+        private int pendingSamples;
+        private long percentile = -1;
+
+        private RouteStats(int budgetMinPerSecond) {
+            this.budget = new TokenBudget(budgetMinPerSecond);
+        }
+
+        private synchronized void record(long durationNanos) {
+            this.samples[this.sampleIndex] = durationNanos;
+            this.sampleIndex = (this.sampleIndex + 1) % this.samples.length;
+            if (this.sampleCount < this.samples.length) {
+                this.sampleCount++;
+            }
+            this.pendingSamples++;
+        }
+
+        /**
+         * 获取耗时分位数, 样本不足时返回-1
+         */
+        private synchronized long percentile(HedgePolicy policy) {
+            if (this.sampleCount < Math.max(1, policy.getMinSamples())) {
+                return -1;
+            }
+            if (this.percentile < 0 || this.pendingSamples >= recomputeInterval) {
+                long[] sorted = Arrays.copyOf(this.samples, this.sampleCount);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(policy.getPercentile() * sorted.length) - 1;
+                this.percentile = sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+                this.pendingSamples = 0;
+            }
+            return this.percentile;
+        }
+    }
+}
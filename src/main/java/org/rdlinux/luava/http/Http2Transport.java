@@ -0,0 +1,218 @@
+package org.rdlinux.luava.http;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.async.methods.SimpleResponseConsumer;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.H2AsyncClientBuilder;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.execchain.RequestAbortedException;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * HTTP/2传输, 基于HttpClient 5的HTTP/2客户端, https通过ALPN协商h2, http使用h2c(prior knowledge),
+ * 同一路由的请求在一个连接上并发传输;<br/>
+ * 请求及响应与HttpClient 4.x的类型相互转换, 请求体及响应体均读取到内存中, 不支持响应缓存
+ */
+final class Http2Transport implements Closeable {
+    private static final ProtocolVersion http2 = new ProtocolVersion("HTTP", 2, 0);
+    /**
+     * HTTP/2不允许的连接相关请求头, 以及由客户端生成的请求头
+     */
+    private static final Set<String> excludedHeaders = new HashSet<>(Arrays.asList("connection", "keep-alive",
+            "proxy-connection", "transfer-encoding", "upgrade", "te", "host", "content-length"));
+    private final ConnectPool connectPool;
+    private final CloseableHttpAsyncClient httpClient;
+
+    Http2Transport(ConnectPool connectPool) {
+        this.connectPool = connectPool;
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setSoTimeout(Timeout.ofMilliseconds(connectPool.getSocketTimeout()))
+                .setSoKeepAlive(true)
+                .build();
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectPool.getConnectTimeout()))
+                .setSocketTimeout(Timeout.ofMilliseconds(connectPool.getSocketTimeout()))
+                .build();
+        SslConfig sslConfig = BaseBuilder.sslConfig(connectPool);
+        this.httpClient = H2AsyncClientBuilder.create()
+                .setIOReactorConfig(ioReactorConfig)
+                .setDefaultConnectionConfig(connectionConfig)
+                .setTlsStrategy(ClientTlsStrategyBuilder.create()
+                        .setSslContext(sslConfig.getSSLContext())
+                        .setHostnameVerifier(sslConfig.getHostnameVerifier())
+                        .build())
+                // 重试由调用方按重试策略处理
+                .disableAutomaticRetries()
+                .evictIdleConnections(TimeValue.ofMilliseconds(connectPool.getMaxIdleTime()))
+                .setThreadFactory(new NamedThreadFactory("http2-client"))
+                .build();
+        this.httpClient.start();
+    }
+
+    /**
+     * 异步执行请求, 请求的{@link HttpRequestBase#abort()}可中止执行
+     *
+     * @return 用于取消请求
+     */
+    Future<?> execute(HttpRequestBase request, org.apache.http.concurrent.FutureCallback<HttpResponse> callback) {
+        SimpleHttpRequest target;
+        try {
+            target = this.toRequest(request);
+        } catch (IOException e) {
+            callback.failed(e);
+            return CompletableFuture.completedFuture(null);
+        }
+        Future<SimpleHttpResponse> future = this.httpClient.execute(SimpleRequestProducer.create(target),
+                SimpleResponseConsumer.create(), new FutureCallback<SimpleHttpResponse>() {
+                    @Override
+                    public void completed(SimpleHttpResponse response) {
+                        callback.completed(toResponse(response));
+                    }
+
+                    @Override
+                    public void failed(Exception ex) {
+                        callback.failed(ex);
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        callback.cancelled();
+                    }
+                });
+        request.setCancellable(() -> future.cancel(true));
+        return future;
+    }
+
+    /**
+     * 同步执行请求
+     */
+    CloseableHttpResponse execute(HttpRequestBase request) throws IOException {
+        CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+        this.execute(request, new org.apache.http.concurrent.FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                result.complete(response);
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                result.completeExceptionally(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                result.completeExceptionally(new RequestAbortedException("Request aborted"));
+            }
+        });
+        try {
+            return (CloseableHttpResponse) result.get();
+        } catch (InterruptedException e) {
+            request.abort();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("request interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private SimpleHttpRequest toRequest(HttpRequestBase request) throws IOException {
+        SimpleHttpRequest target = new SimpleHttpRequest(request.getMethod(), request.getURI());
+        for (Header header : request.getAllHeaders()) {
+            if (!excludedHeaders.contains(header.getName().toLowerCase(Locale.ROOT))) {
+                target.addHeader(header.getName(), header.getValue());
+            }
+        }
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null) {
+                long length = entity.getContentLength();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(length > 0 && length < Integer.MAX_VALUE
+                        ? (int) length : 1024);
+                entity.writeTo(out);
+                Header contentType = entity.getContentType();
+                target.setBody(out.toByteArray(), contentType == null ? null
+                        : ContentType.parse(contentType.getValue()));
+                Header contentEncoding = entity.getContentEncoding();
+                if (contentEncoding != null) {
+                    target.setHeader(HttpHeaders.CONTENT_ENCODING, contentEncoding.getValue());
+                }
+            }
+        }
+        RequestConfig config = request.getConfig();
+        int socketTimeout = config != null && config.getSocketTimeout() >= 0 ? config.getSocketTimeout()
+                : this.connectPool.getSocketTimeout();
+        target.setConfig(org.apache.hc.client5.http.config.RequestConfig.custom()
+                .setResponseTimeout(Timeout.ofMilliseconds(socketTimeout))
+                .build());
+        return target;
+    }
+
+    private static HttpResponse toResponse(SimpleHttpResponse response) {
+        Response target = new Response(new BasicStatusLine(http2, response.getCode(), response.getReasonPhrase()));
+        for (org.apache.hc.core5.http.Header header : response.getHeaders()) {
+            target.addHeader(header.getName(), header.getValue());
+        }
+        byte[] body = response.getBodyBytes();
+        if (body != null) {
+            ByteArrayEntity entity = new ByteArrayEntity(body);
+            entity.setContentType(target.getFirstHeader(HttpHeaders.CONTENT_TYPE));
+            entity.setContentEncoding(target.getFirstHeader(HttpHeaders.CONTENT_ENCODING));
+            target.setEntity(entity);
+        }
+        return target;
+    }
+
+    @Override
+    public void close() {
+        this.httpClient.close(CloseMode.GRACEFUL);
+    }
+
+    private static class Response extends BasicHttpResponse implements CloseableHttpResponse {
+        private Response(BasicStatusLine statusLine) {
+            super(statusLine);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.rdlinux.luava.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * http内容压缩编码, 用于请求体压缩及响应体解压, 内置实现见{@link HttpCodecs}
+ */
+public interface HttpCodec {
+    /**
+     * 编码名称, 对应Content-Encoding及Accept-Encoding中的值, 如gzip
+     */
+    String getEncoding();
+
+    /**
+     * 创建压缩输出流, 关闭返回的流时需写出剩余数据并关闭out
+     */
+    OutputStream compress(OutputStream out) throws IOException;
+
+    /**
+     * 创建解压输入流
+     */
+    InputStream decompress(InputStream in) throws IOException;
+}
@@ -0,0 +1,78 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.client.entity.DeflateInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 内置压缩编码
+ */
+public final class HttpCodecs {
+    private static final int bufferSize = 8192;
+    /**
+     * gzip压缩
+     */
+    public static final HttpCodec gzip = new HttpCodec() {
+        @Override
+        public String getEncoding() {
+            return "gzip";
+        }
+
+        @Override
+        public OutputStream compress(OutputStream out) throws IOException {
+            return new GZIPOutputStream(out, bufferSize);
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) throws IOException {
+            return new GZIPInputStream(in, bufferSize);
+        }
+
+        @Override
+        public String toString() {
+            return this.getEncoding();
+        }
+    };
+    /**
+     * deflate压缩, 发送zlib格式, 解压同时兼容zlib格式及不带zlib头的原始deflate格式
+     */
+    public static final HttpCodec deflate = new HttpCodec() {
+        @Override
+        public String getEncoding() {
+            return "deflate";
+        }
+
+        @Override
+        public OutputStream compress(OutputStream out) {
+            return new DeflaterOutputStream(out, new Deflater(), bufferSize, false) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        this.def.end();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) throws IOException {
+            return new DeflateInputStream(in);
+        }
+
+        @Override
+        public String toString() {
+            return this.getEncoding();
+        }
+    };
+
+    private HttpCodecs() {
+    }
+}
@@ -0,0 +1,61 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+
+/**
+ * http客户端指标采集接口, 通过{@link ConnectPool#setMetrics(HttpMetrics)}配置,
+ * 可对接micrometer等监控系统, 不依赖第三方库的默认实现见{@link SimpleHttpMetrics};<br/>
+ * 路由格式为scheme://host:port, 所有方法可能被并发调用, 实现需保证线程安全且不能阻塞
+ */
+public interface HttpMetrics {
+    /**
+     * 客户端创建连接池时调用, 可用于注册连接池状态采集
+     *
+     * @param name 连接池名称
+     * @param pool 连接池, 可通过getRoutes及getStats获取各路由的租用、等待、可用及最大连接数
+     */
+    default void bindConnectionPool(String name, ConnPoolControl<HttpRoute> pool) {
+    }
+
+    /**
+     * 从连接池获取连接的等待时间, 异步客户端新建连接时包含建立连接的时间
+     *
+     * @param route     路由
+     * @param waitNanos 等待时间, 单位纳秒
+     * @param success   是否成功获取连接
+     */
+    default void recordLeaseWait(String route, long waitNanos, boolean success) {
+    }
+
+    /**
+     * 请求完成, 同步请求耗时截止到收到响应头, 异步请求截止到收到完整响应, 包含重试
+     *
+     * @param method        请求方法
+     * @param host          请求主机
+     * @param status        响应码, 请求异常时为-1
+     * @param durationNanos 耗时, 单位纳秒
+     */
+    default void recordRequest(String method, String host, int status, long durationNanos) {
+    }
+
+    /**
+     * 请求体发送的字节数
+     */
+    default void recordBytesSent(String host, long bytes) {
+    }
+
+    /**
+     * 响应体读取的字节数
+     */
+    default void recordBytesReceived(String host, long bytes) {
+    }
+
+    /**
+     * 请求重试
+     *
+     * @param route 路由
+     */
+    default void recordRetry(String route) {
+    }
+}
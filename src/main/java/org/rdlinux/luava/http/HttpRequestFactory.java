@@ -0,0 +1,230 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpOptions;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.pool.ConnPoolControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * 请求构建工具, 同步和异步请求共用同一套url参数、请求头及body处理逻辑
+ */
+final class HttpRequestFactory {
+    private static final Logger log = LoggerFactory.getLogger(HttpRequestFactory.class);
+    /**
+     * 负载均衡地址的协议, 格式为lb://服务名/路径
+     */
+    static final String lbScheme = "lb";
+
+    private HttpRequestFactory() {
+    }
+
+    /**
+     * 拼接url参数
+     *
+     * @param qsOptions 参数转换选项, 可为null
+     */
+    static String buildUrl(String url, Object urlParams, QsOptions qsOptions) {
+        if (urlParams != null) {
+            String urlParam = Qs.stringify(urlParams, qsOptions);
+            if (url.contains("?")) {
+                url += "&" + urlParam;
+            } else {
+                url += "?" + urlParam;
+            }
+        }
+        return url;
+    }
+
+    /**
+     * 创建请求
+     *
+     * @param method      请求方法
+     * @param url         请求地址
+     * @param urlParams   url参数
+     * @param bodyParam   body参数,如果不是HttpEntity类型,将根据useFormData使用json或formData传递body参数
+     * @param useFormData 使用formData传递参数
+     * @param connectPool 连接池配置, 用于参数转换选项及请求体压缩, 可为null
+     * @param headers     请求头
+     */
+    static HttpEntityEnclosingRequestBase createRequest(String method, String url, Object urlParams,
+                                                        Object bodyParam, boolean useFormData, ConnectPool connectPool,
+                                                        Header... headers) {
+        url = buildUrl(url, urlParams, connectPool == null ? null : connectPool.getQsOptions());
+        if (log.isTraceEnabled()) {
+            log.trace("本次请求地址:" + url);
+        }
+        HttpEntityEnclosingRequestBase request = new HttpEntityEnclosingRequestBase() {
+            @Override
+            public String getMethod() {
+                return method;
+            }
+        };
+        request.setURI(URI.create(url));
+        if (headers != null && headers.length != 0) {
+            for (Header header : headers) {
+                if (header != null) {
+                    request.addHeader(header);
+                }
+            }
+        }
+        //添加调用链追踪请求头
+        if (request.getFirstHeader(SleuthConst.traceIdHeader) != null) {
+            String traceId = MDC.get(SleuthConst.traceIdLogName);
+            if (traceId != null) {
+                request.addHeader(SleuthConst.traceIdHeader, traceId);
+            }
+        }
+        if (request.getFirstHeader(SleuthConst.spanIdHeader) != null) {
+            String spanId = MDC.get(SleuthConst.spanIdLogName);
+            if (spanId != null) {
+                request.addHeader(SleuthConst.spanIdHeader, spanId);
+            }
+        }
+        if (request.getFirstHeader(SleuthConst.parentSpanIdHeader) != null) {
+            String parentSpanId = MDC.get(SleuthConst.parentSpanIdLogName);
+            if (parentSpanId != null) {
+                request.addHeader(SleuthConst.parentSpanIdHeader, parentSpanId);
+            }
+        }
+        // 处理body参数
+        if (bodyParam != null) {
+            request.setEntity(createEntity(bodyParam, useFormData, connectPool));
+        }
+        return request;
+    }
+
+    /**
+     * 按请求的目标路由应用路由级超时配置
+     */
+    static void applyRouteConfig(HttpRequestBase request, ConnectPool connectPool) {
+        if (connectPool == null) {
+            return;
+        }
+        URI uri = request.getURI();
+        RouteConfig routeConfig = connectPool.getRouteConfig(uri.getScheme(), uri.getHost(), uri.getPort());
+        RequestConfig requestConfig = BaseBuilder.createRouteRequestConfig(connectPool, routeConfig);
+        if (requestConfig != null) {
+            request.setConfig(requestConfig);
+        }
+    }
+
+    /**
+     * 请求地址为lb://服务名/路径时, 选择服务实例并替换请求地址, 同时应用实例的路由配置;
+     * 优先选择路由未熔断且等待连接的请求数未超限的实例
+     *
+     * @param pool 客户端的连接池, 为null时不检查等待连接的请求数
+     * @return 选择的服务实例, 不是负载均衡地址时返回null
+     */
+    static ServiceEndpoint resolveEndpoint(HttpRequestBase request, ConnectPool connectPool,
+                                           ConnPoolControl<HttpRoute> pool) {
+        URI uri = request.getURI();
+        if (uri == null || !lbScheme.equalsIgnoreCase(uri.getScheme())) {
+            return null;
+        }
+        ServiceConfig serviceConfig = connectPool == null ? null : connectPool.getServiceConfig(uri.getAuthority());
+        if (serviceConfig == null) {
+            throw new IllegalArgumentException("unknown service: " + uri.getAuthority());
+        }
+        RouteGuard routeGuard = connectPool.getRouteGuard();
+        ServiceEndpoint endpoint = serviceConfig.choose(routeGuard.isGuarded()
+                ? item -> routeGuard.isAvailable(item.resolve(uri), pool) : null);
+        request.setURI(endpoint.resolve(uri));
+        applyRouteConfig(request, connectPool);
+        return endpoint;
+    }
+
+    /**
+     * 是否为无请求体的GET、HEAD、OPTIONS请求, 此类请求可安全地合并或重复发送
+     */
+    static boolean isSafeRequest(HttpRequestBase request) {
+        String method = request.getMethod();
+        if (!HttpGet.METHOD_NAME.equals(method) && !HttpHead.METHOD_NAME.equals(method)
+                && !HttpOptions.METHOD_NAME.equals(method)) {
+            return false;
+        }
+        return !(request instanceof HttpEntityEnclosingRequest)
+                || ((HttpEntityEnclosingRequest) request).getEntity() == null;
+    }
+
+    /**
+     * 复制请求, 用于再次发送; 不使用clone, clone的请求与原请求共享中止状态, 中止其中一个会中止另一个的连接
+     */
+    static HttpRequestBase copyRequest(HttpRequestBase request) {
+        return (HttpRequestBase) RequestBuilder.copy(request).build();
+    }
+
+    /**
+     * 请求体可重复发送时才能重试
+     */
+    static boolean isRepeatable(HttpRequest request) {
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            return entity == null || entity.isRepeatable();
+        }
+        return true;
+    }
+
+    /**
+     * 创建body实体
+     *
+     * @param connectPool 连接池配置, 用于formData参数转换选项及请求体压缩, 可为null
+     */
+    static HttpEntity createEntity(Object bodyParam, boolean useFormData, ConnectPool connectPool) {
+        if (bodyParam instanceof HttpEntity) {
+            if (log.isTraceEnabled()) {
+                log.trace("本次请求body参数:" + bodyParam);
+            }
+            return (HttpEntity) bodyParam;
+        }
+        AbstractHttpEntity bodyEntity;
+        if (useFormData) {
+            String stringify = Qs.stringify(bodyParam, connectPool == null ? null : connectPool.getQsOptions());
+            if (log.isTraceEnabled()) {
+                log.trace("本次请求body参数:" + stringify);
+            }
+            bodyEntity = new StringEntity(stringify, "UTF-8");
+            bodyEntity.setContentType("application/x-www-form-urlencoded");
+            bodyEntity.setContentEncoding("UTF-8");
+        } else {
+            if (bodyParam instanceof String || bodyParam instanceof StringBuilder
+                    || bodyParam instanceof StringBuffer) {
+                String bodyStr = bodyParam.toString();
+                if (log.isTraceEnabled()) {
+                    log.trace("本次请求body参数:" + bodyStr);
+                }
+                bodyEntity = new StringEntity(bodyStr, ContentType.APPLICATION_JSON);
+            } else {
+                // 小请求体缓冲后带长度发送, 大请求体发送时直接序列化到连接输出流
+                JsonEntity jsonEntity = new JsonEntity(bodyParam, JacksonSupport.camelCaseMapper,
+                        connectPool == null ? JsonEntity.defaultBufferSize : connectPool.getJsonBufferSize());
+                if (log.isTraceEnabled()) {
+                    try {
+                        log.trace("本次请求body参数:" + jsonEntity.toJsonString());
+                    } catch (IOException e) {
+                        log.trace("本次请求body参数序列化失败", e);
+                    }
+                }
+                bodyEntity = jsonEntity;
+            }
+        }
+        return CompressionSupport.compress(bodyEntity, connectPool);
+    }
+}
@@ -2,29 +2,83 @@ package org.rdlinux.luava.http;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.http.Header;
+import org.apache.http.HeaderElement;
 import org.apache.http.HttpEntity;
-import org.apache.http.ParseException;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.cache.CacheResponseStatus;
+import org.apache.http.client.cache.HttpCacheContext;
 import org.apache.http.client.methods.*;
-import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.execchain.RequestAbortedException;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
-import org.rdlinux.luava.json.JacksonUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.MDC;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.lang.reflect.Type;
 import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 
 public class HttpRequestUtils {
     private static final Logger log = LoggerFactory.getLogger(HttpRequestUtils.class);
+    /**
+     * 调用链追踪请求头, 每次调用都不同, 默认不参与请求合并的比较
+     */
+    private static final Set<String> traceHeaders = new HashSet<>(Arrays.asList(SleuthConst.traceIdHeader,
+            SleuthConst.spanIdHeader, SleuthConst.parentSpanIdHeader, SleuthConst.sampledHeader));
+    /**
+     * 不使用连接池配置时, 进程内共享的默认客户端
+     */
+    private static volatile CloseableHttpClient defaultHttpClient;
+    private static boolean defaultHttpClientHookAdded = false;
+    /**
+     * 未使用连接池时返回给调用方的共享客户端, 关闭无效
+     */
+    private static final CloseableHttpClient sharedHttpClient = new SharedHttpClient(
+            HttpRequestUtils::getDefaultHttpClient);
     private volatile CloseableHttpClient httpClient;
+    private volatile ConnPoolControl<HttpRoute> poolControl;
+    private volatile TaskExecutor taskExecutor;
+    private volatile TaskExecutor hedgeExecutor;
+    private volatile TaskExecutor batchExecutor;
+    private volatile Http2Transport http2Transport;
+    private volatile DecodedObjectCache decodedObjectCache;
+    private final SingleFlight<BufferedResponse> singleFlight = new SingleFlight<>();
     private ConnectPool connectPool;
 
     /**
@@ -40,87 +94,144 @@ public class HttpRequestUtils {
     }
 
     /**
-     * 构造一个不使用连接池的http请求工具
+     * 构造一个不使用连接池配置的http请求工具, 所有实例共享一个进程内懒加载的默认客户端,
+     * 该客户端使用默认大小的连接池复用连接, 并在jvm退出时关闭
      */
     public HttpRequestUtils() {
     }
 
-    private static String responseToString(CloseableHttpResponse response) {
+    /**
+     * 直接从响应流中解析json为指定对象, 解析完成后释放连接
+     */
+    static <T> T responseToObject(HttpResponse response, ObjectMapper objectMapper, JavaType type) {
         HttpEntity entity = response.getEntity();
-        String entityString;
         try {
-            entityString = EntityUtils.toString(entity);
-        } catch (ParseException | IOException e1) {
-            throw new RuntimeException(e1);
+            return JacksonSupport.readValue(objectMapper, entity, type);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         } finally {
             try {
                 EntityUtils.consume(entity);
-                response.close();
+                if (response instanceof Closeable) {
+                    ((Closeable) response).close();
+                }
             } catch (IOException e) {
                 log.error("httpClient释放连接失败", e);
             }
         }
-        return entityString;
     }
 
     /**
      * 把返回数据转换为指定对象
      */
     public static <T> T responseDataConversion(CloseableHttpResponse response, Class<T> type) {
-        return JacksonUtils.conversion(responseToString(response), type);
+        ObjectMapper objectMapper = JacksonSupport.camelCaseMapper;
+        return responseToObject(response, objectMapper, objectMapper.constructType(type));
     }
 
     /**
      * 把返回数据转换为指定对象
      */
     public static <T> T responseDataSnakeConversion(CloseableHttpResponse response, Class<T> type) {
-        return JacksonUtils.snakeCaseConversion(responseToString(response), type);
+        ObjectMapper objectMapper = JacksonSupport.snakeCaseMapper;
+        return responseToObject(response, objectMapper, objectMapper.constructType(type));
     }
 
     /**
      * 把返回数据转换为指定对象
      */
     public static <T> T responseDataConversion(CloseableHttpResponse response, Type type) {
-        return JacksonUtils.conversion(responseToString(response), type);
+        ObjectMapper objectMapper = JacksonSupport.camelCaseMapper;
+        return responseToObject(response, objectMapper, objectMapper.constructType(type));
     }
 
     /**
      * 把返回数据转换为指定对象
      */
     public static <T> T responseDataSnakeConversion(CloseableHttpResponse response, Type type) {
-        return JacksonUtils.snakeCaseConversion(responseToString(response), type);
+        ObjectMapper objectMapper = JacksonSupport.snakeCaseMapper;
+        return responseToObject(response, objectMapper, objectMapper.constructType(type));
     }
 
     /**
      * 把返回数据转换为指定对象
      */
     public static <T> T responseDataConversion(CloseableHttpResponse response, JavaType type) {
-        return JacksonUtils.conversion(responseToString(response), type);
+        return responseToObject(response, JacksonSupport.camelCaseMapper, type);
     }
 
     /**
      * 把返回数据转换为指定对象
      */
     public static <T> T responseDataSnakeConversion(CloseableHttpResponse response, JavaType type) {
-        return JacksonUtils.snakeCaseConversion(responseToString(response), type);
+        return responseToObject(response, JacksonSupport.snakeCaseMapper, type);
     }
 
     /**
      * 把返回数据转换为指定对象
      */
     public static <T> T responseDataConversion(CloseableHttpResponse response, TypeReference<T> type) {
-        return JacksonUtils.conversion(responseToString(response), type);
+        ObjectMapper objectMapper = JacksonSupport.camelCaseMapper;
+        return responseToObject(response, objectMapper, objectMapper.getTypeFactory().constructType(type));
     }
 
     /**
      * 把返回数据转换为指定对象
      */
     public static <T> T responseDataSnakeConversion(CloseableHttpResponse response, TypeReference<T> type) {
-        return JacksonUtils.snakeCaseConversion(responseToString(response), type);
+        ObjectMapper objectMapper = JacksonSupport.snakeCaseMapper;
+        return responseToObject(response, objectMapper, objectMapper.getTypeFactory().constructType(type));
     }
 
     /**
-     * http请求
+     * 逐个解析返回的json数组元素或NDJSON值, 遍历结束或关闭迭代器时释放连接
+     */
+    public static <T> JsonIterator<T> responseDataIterator(CloseableHttpResponse response, Class<T> type) {
+        ObjectMapper objectMapper = JacksonSupport.camelCaseMapper;
+        return new JsonIterator<>(response, objectMapper, objectMapper.constructType(type));
+    }
+
+    /**
+     * 逐个解析返回的json数组元素或NDJSON值, 遍历结束或关闭迭代器时释放连接
+     */
+    public static <T> JsonIterator<T> responseDataSnakeIterator(CloseableHttpResponse response, Class<T> type) {
+        ObjectMapper objectMapper = JacksonSupport.snakeCaseMapper;
+        return new JsonIterator<>(response, objectMapper, objectMapper.constructType(type));
+    }
+
+    /**
+     * 逐个解析返回的json数组元素或NDJSON值, 遍历结束或关闭迭代器时释放连接
+     */
+    public static <T> JsonIterator<T> responseDataIterator(CloseableHttpResponse response, JavaType type) {
+        return new JsonIterator<>(response, JacksonSupport.camelCaseMapper, type);
+    }
+
+    /**
+     * 逐个解析返回的json数组元素或NDJSON值, 遍历结束或关闭迭代器时释放连接
+     */
+    public static <T> JsonIterator<T> responseDataSnakeIterator(CloseableHttpResponse response, JavaType type) {
+        return new JsonIterator<>(response, JacksonSupport.snakeCaseMapper, type);
+    }
+
+    /**
+     * 逐个解析返回的json数组元素或NDJSON值, 遍历结束或关闭迭代器时释放连接
+     */
+    public static <T> JsonIterator<T> responseDataIterator(CloseableHttpResponse response, TypeReference<T> type) {
+        ObjectMapper objectMapper = JacksonSupport.camelCaseMapper;
+        return new JsonIterator<>(response, objectMapper, objectMapper.getTypeFactory().constructType(type));
+    }
+
+    /**
+     * 逐个解析返回的json数组元素或NDJSON值, 遍历结束或关闭迭代器时释放连接
+     */
+    public static <T> JsonIterator<T> responseDataSnakeIterator(CloseableHttpResponse response,
+                                                                TypeReference<T> type) {
+        ObjectMapper objectMapper = JacksonSupport.snakeCaseMapper;
+        return new JsonIterator<>(response, objectMapper, objectMapper.getTypeFactory().constructType(type));
+    }
+
+    /**
+     * http请求, 连接池配置开启了请求合并时, 相同的并发GET、HEAD、OPTIONS请求只发送一次, 各自获得独立的响应副本
      *
      * @param method      请求方法
      * @param url         请求地址
@@ -131,95 +242,267 @@ public class HttpRequestUtils {
      */
     public CloseableHttpResponse httpRequest(String method, String url, Object urlParams, Object bodyParam,
                                              boolean useFormData, Header... headers) {
-        if (urlParams != null) {
-            String urlParam = Qs.stringify(urlParams);
-            if (url.contains("?")) {
-                url += "&" + urlParam;
-            } else {
-                url += "?" + urlParam;
+        HttpEntityEnclosingRequestBase request = HttpRequestFactory.createRequest(method, url, urlParams, bodyParam,
+                useFormData, this.connectPool, headers);
+        HttpRequestFactory.applyRouteConfig(request, this.connectPool);
+        return this.execute(request);
+    }
+
+    private CloseableHttpResponse execute(HttpRequestBase request) {
+        return this.execute(request, null);
+    }
+
+    /**
+     * 执行请求, 开启了请求合并时, 相同的并发请求共享一次网络请求
+     */
+    private CloseableHttpResponse execute(HttpRequestBase request, HttpContext context) {
+        String key = this.singleFlightKey(request);
+        if (key == null) {
+            return this.hedgedExecute(request, context);
+        }
+        BufferedResponse response = this.singleFlight.execute(key, () -> BufferedResponse.read(
+                this.hedgedExecute(request, context),
+                context == null ? null : context.getAttribute(HttpCacheContext.CACHE_RESPONSE_STATUS)),
+                this.connectPool.getSingleFlightTimeout());
+        if (context != null && response.getCacheResponseStatus() != null) {
+            context.setAttribute(HttpCacheContext.CACHE_RESPONSE_STATUS, response.getCacheResponseStatus());
+        }
+        return response.newResponse();
+    }
+
+    /**
+     * 请求合并的key, 由请求方法、最终url及请求头组成, 不可合并时返回null
+     */
+    private String singleFlightKey(HttpRequestBase request) {
+        if (this.connectPool == null || !this.connectPool.isSingleFlight()) {
+            return null;
+        }
+        if (!HttpRequestFactory.isSafeRequest(request)) {
+            return null;
+        }
+        List<String> keyHeaders = this.connectPool.getSingleFlightHeaders();
+        StringBuilder key = new StringBuilder(request.getMethod()).append(' ').append(request.getURI());
+        for (Header header : request.getAllHeaders()) {
+            String name = header.getName().toLowerCase(Locale.ROOT);
+            boolean included = keyHeaders == null ? !traceHeaders.contains(name)
+                    : keyHeaders.stream().anyMatch(name::equalsIgnoreCase);
+            if (included) {
+                key.append('\n').append(name).append(':').append(header.getValue());
             }
         }
-        if (log.isTraceEnabled()) {
-            log.trace("本次请求地址:" + url);
+        return key.toString();
+    }
+
+    /**
+     * 执行请求, 配置了对冲策略时, 无请求体的GET、HEAD、OPTIONS请求在对冲延时内未收到响应则再发送一次,
+     * 使用先收到的响应并中止另一个请求
+     */
+    private CloseableHttpResponse hedgedExecute(HttpRequestBase request, HttpContext context) {
+        HedgeSupport hedgeSupport = this.connectPool == null ? null : this.connectPool.getHedgeSupport();
+        if (hedgeSupport == null || !hedgeSupport.isEnabled() || context != null
+                || !HttpRequestFactory.isSafeRequest(request)) {
+            return this.doExecute(request, context);
+        }
+        String route = RouteGuard.routeKey(request.getURI());
+        hedgeSupport.onRequest(route);
+        long delay = hedgeSupport.hedgeDelay(route);
+        if (delay < 0) {
+            return this.timedExecute(request, route, hedgeSupport);
         }
-        CloseableHttpClient httpclient = this.getHttpClient();
-        HttpEntityEnclosingRequestBase request = new HttpEntityEnclosingRequestBase() {
-            @Override
-            public String getMethod() {
-                return method;
+        // 发送前复制, 负载均衡地址在发送时才替换为实例地址, 对冲请求可重新选择实例
+        HttpRequestBase hedged = HttpRequestFactory.copyRequest(request);
+        CompletableFuture<CloseableHttpResponse> first = new CompletableFuture<>();
+        AtomicInteger attempts = new AtomicInteger(1);
+        AtomicInteger failures = new AtomicInteger();
+        // 对冲延时从主请求开始执行时计算, 主请求在调用线程执行, 只有对冲请求提交到执行器
+        RetrySupport.schedule(() -> {
+            if (first.isDone() || !hedgeSupport.tryAcquire(route)) {
+                return;
             }
-        };
-        request.setURI(URI.create(url));
-        if (headers != null && headers.length != 0) {
-            for (Header header : headers) {
-                if (header != null) {
-                    request.addHeader(header);
-                }
+            attempts.incrementAndGet();
+            if (first.isDone()) {
+                return;
             }
+            this.getHedgeExecutor().submit(() -> this.timedExecute(hedged, route, hedgeSupport))
+                    .whenComplete((response, throwable) -> offerHedged(first, attempts, failures, response,
+                            throwable, request));
+        }, delay);
+        CloseableHttpResponse response = null;
+        RuntimeException failure = null;
+        try {
+            response = this.timedExecute(request, route, hedgeSupport);
+        } catch (RuntimeException e) {
+            failure = e;
         }
-        //添加调用链追踪请求头
-        if (request.getFirstHeader(SleuthConst.traceIdHeader) != null) {
-            String traceId = MDC.get(SleuthConst.traceIdLogName);
-            if (traceId != null) {
-                request.addHeader(SleuthConst.traceIdHeader, traceId);
+        offerHedged(first, attempts, failures, response, failure, hedged);
+        return await(first, request, hedged);
+    }
+
+    /**
+     * 先成功的响应作为结果并中止另一个请求, 后收到的响应直接释放, 已发送的请求全部失败时使用最后一个异常
+     */
+    private static void offerHedged(CompletableFuture<CloseableHttpResponse> first, AtomicInteger attempts,
+                                    AtomicInteger failures, CloseableHttpResponse response, Throwable throwable,
+                                    HttpRequestBase other) {
+        if (throwable == null) {
+            if (first.complete(response)) {
+                other.abort();
+            } else {
+                closeResponse(response);
             }
+        } else if (failures.incrementAndGet() >= attempts.get()) {
+            first.completeExceptionally(throwable);
         }
-        if (request.getFirstHeader(SleuthConst.spanIdHeader) != null) {
-            String spanId = MDC.get(SleuthConst.spanIdLogName);
-            if (spanId != null) {
-                request.addHeader(SleuthConst.spanIdHeader, spanId);
+    }
+
+    /**
+     * 等待请求结果, 被中断时中止请求
+     */
+    private static CloseableHttpResponse await(CompletableFuture<CloseableHttpResponse> future,
+                                               HttpRequestBase... requests) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            for (HttpRequestBase request : requests) {
+                request.abort();
             }
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
         }
-        if (request.getFirstHeader(SleuthConst.parentSpanIdHeader) != null) {
-            String parentSpanId = MDC.get(SleuthConst.parentSpanIdLogName);
-            if (parentSpanId != null) {
-                request.addHeader(SleuthConst.parentSpanIdHeader, parentSpanId);
-            }
+    }
+
+    private static RuntimeException unwrap(Throwable throwable) {
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
         }
-        // 处理body参数
-        if (bodyParam != null) {
-            AbstractHttpEntity bodyEntity = null;
-            if (bodyParam instanceof HttpEntity) {
-                if (log.isTraceEnabled()) {
-                    log.trace("本次请求body参数:" + bodyParam);
-                }
-                request.setEntity((HttpEntity) bodyParam);
-            } else {
-                if (useFormData) {
-                    String stringify = Qs.stringify(bodyParam);
-                    if (log.isTraceEnabled()) {
-                        log.trace("本次请求body参数:" + stringify);
-                    }
-                    bodyEntity = new StringEntity(stringify, "UTF-8");
-                    bodyEntity.setContentType("application/x-www-form-urlencoded");
-                    bodyEntity.setContentEncoding("UTF-8");
-                } else {
-                    String bodyStr;
-                    if (bodyParam instanceof String) {
-                        bodyStr = (String) bodyParam;
-                    } else if (bodyParam instanceof StringBuilder || bodyParam instanceof StringBuffer) {
-                        bodyStr = bodyParam.toString();
-                    } else {
-                        bodyStr = JacksonUtils.toJsonString(bodyParam);
-                    }
-                    if (log.isTraceEnabled()) {
-                        log.trace("本次请求body参数:" + bodyStr);
-                    }
-                    bodyEntity = new StringEntity(bodyStr, ContentType.APPLICATION_JSON);
-                }
-                request.setEntity(bodyEntity);
-            }
+        return throwable instanceof RuntimeException ? (RuntimeException) throwable : new RuntimeException(throwable);
+    }
+
+    /**
+     * 执行请求并记录收到响应的耗时, 用于计算对冲延时
+     */
+    private CloseableHttpResponse timedExecute(HttpRequestBase request, String route, HedgeSupport hedgeSupport) {
+        long start = System.nanoTime();
+        CloseableHttpResponse response = this.doExecute(request, null);
+        hedgeSupport.record(route, System.nanoTime() - start);
+        return response;
+    }
+
+    /**
+     * 执行请求, 路由熔断或等待连接的请求过多时直接失败, 配置了指标采集时记录耗时及传输字节数
+     */
+    private CloseableHttpResponse doExecute(HttpRequestBase request, HttpContext context) {
+        return this.doExecute(request, context, false);
+    }
 
+    /**
+     * 执行请求, 见{@link #doExecute(HttpRequestBase, HttpContext)}
+     *
+     * @param streaming 请求体或响应体是否流式传输, 是时开启HTTP/2传输也使用HTTP/1.1连接, HTTP/2传输会把请求体及响应体完整读入内存
+     */
+    private CloseableHttpResponse doExecute(HttpRequestBase request, HttpContext context, boolean streaming) {
+        boolean http2 = !streaming && this.connectPool != null && this.connectPool.isHttp2();
+        CloseableHttpClient httpclient = http2 ? null : this.getHttpClient();
+        HttpMetrics metrics = this.connectPool == null ? null : this.connectPool.getMetrics();
+        RouteGuard routeGuard = this.connectPool == null ? null : this.connectPool.getRouteGuard();
+        ServiceEndpoint endpoint = HttpRequestFactory.resolveEndpoint(request, this.connectPool, this.poolControl);
+        String route = RouteGuard.routeKey(request.getURI());
+        if (routeGuard != null) {
+            try {
+                routeGuard.acquire(route, request.getURI(), this.poolControl);
+            } catch (RequestRejectedException e) {
+                throw new RuntimeException(e);
+            }
         }
+        if (metrics != null) {
+            MetricsSupport.beforeRequest(request, metrics);
+        }
+        if (endpoint != null) {
+            endpoint.onStart();
+        }
+        long start = System.nanoTime();
         CloseableHttpResponse response = null;
         try {
-            response = httpclient.execute(request);
+            response = http2 ? this.http2Execute(request, route) : httpclient.execute(request, context);
         } catch (IOException e) {
+            // 对冲请求中被中止的请求不是失败, 不计入指标、熔断及实例统计
+            if (e instanceof RequestAbortedException || request.isAborted()) {
+                if (routeGuard != null) {
+                    routeGuard.onCancel(route);
+                }
+                if (endpoint != null) {
+                    endpoint.onCancel();
+                }
+                throw new RuntimeException(e);
+            }
+            if (metrics != null) {
+                MetricsSupport.afterFailure(request, metrics, start);
+            }
+            if (routeGuard != null) {
+                routeGuard.onComplete(route, -1, System.nanoTime() - start);
+            }
+            if (endpoint != null) {
+                endpoint.onComplete(-1, System.nanoTime() - start);
+            }
             throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            if (routeGuard != null) {
+                routeGuard.onCancel(route);
+            }
+            if (endpoint != null) {
+                endpoint.onCancel();
+            }
+            throw e;
+        }
+        int status = response.getStatusLine().getStatusCode();
+        if (metrics != null) {
+            MetricsSupport.afterResponse(request, response, metrics, start);
+        }
+        if (routeGuard != null) {
+            routeGuard.onComplete(route, status, System.nanoTime() - start);
+        }
+        if (endpoint != null) {
+            endpoint.onComplete(status, System.nanoTime() - start);
         }
         return response;
     }
 
+    /**
+     * 使用HTTP/2传输执行请求, 按重试策略重试, 并按响应压缩编码解压
+     */
+    private CloseableHttpResponse http2Execute(HttpRequestBase request, String route) throws IOException {
+        Http2Transport transport = this.getHttp2Transport();
+        RetrySupport retrySupport = this.connectPool.getRetrySupport();
+        List<HttpCodec> responseCodecs = this.connectPool.getResponseCodecs();
+        CompressionSupport.addAcceptEncoding(request, CompressionSupport.acceptEncoding(responseCodecs));
+        retrySupport.onRequest(route);
+        boolean repeatable = HttpRequestFactory.isRepeatable(request);
+        for (int executionCount = 1; ; executionCount++) {
+            long delay;
+            try {
+                CloseableHttpResponse response = transport.execute(request);
+                delay = repeatable ? retrySupport.retryDelay(request, response, executionCount, route) : -1;
+                if (delay < 0) {
+                    CompressionSupport.decompress(response, responseCodecs);
+                    return response;
+                }
+            } catch (IOException e) {
+                delay = repeatable ? retrySupport.retryDelay(request, e, executionCount, route) : -1;
+                if (delay < 0) {
+                    throw e;
+                }
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("retry interrupted");
+            }
+        }
+    }
+
     /**
      * http请求
      *
@@ -429,14 +712,592 @@ public class HttpRequestUtils {
         return this.patchRequest(url, null, bodyParam, headers);
     }
 
+    /**
+     * get请求并解析响应, 说明见{@link #getObject(String, Object, JavaType, Header...)}
+     */
+    public <T> T getObject(String url, Object urlParams, Class<T> type, Header... headers) {
+        return this.getObject(url, urlParams, JacksonSupport.camelCaseMapper.constructType(type), headers);
+    }
+
+    /**
+     * get请求并解析响应, 说明见{@link #getObject(String, Object, JavaType, Header...)}
+     */
+    public <T> T getObject(String url, Object urlParams, TypeReference<T> type, Header... headers) {
+        return this.getObject(url, urlParams, JacksonSupport.camelCaseMapper.getTypeFactory().constructType(type),
+                headers);
+    }
+
+    /**
+     * get请求并使用驼峰命名解析响应为指定对象;<br/>
+     * 配置了响应缓存时, 响应来自缓存或重新验证通过, 且ETag、Last-Modified未变时直接返回上次解析的对象, 不再重复解析,
+     * 响应没有ETag及Last-Modified时不复用; 按响应Vary声明的请求头区分变体,
+     * 该对象会被多次调用共享, 不可修改
+     *
+     * @param url       请求地址
+     * @param urlParams url参数
+     * @param type      目标类型
+     * @param headers   请求头
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getObject(String url, Object urlParams, JavaType type, Header... headers) {
+        HttpEntityEnclosingRequestBase request = HttpRequestFactory.createRequest(HttpGet.METHOD_NAME, url, urlParams,
+                null, false, this.connectPool, headers);
+        HttpRequestFactory.applyRouteConfig(request, this.connectPool);
+        ObjectMapper objectMapper = JacksonSupport.camelCaseMapper;
+        DecodedObjectCache decodedObjectCache = this.getDecodedObjectCache();
+        if (decodedObjectCache == null) {
+            return responseToObject(this.execute(request), objectMapper, type);
+        }
+        HttpCacheContext context = HttpCacheContext.create();
+        CloseableHttpResponse response = this.execute(request, context);
+        String key = decodedObjectKey(request, response, type);
+        String validator = cacheValidator(response);
+        if (key == null || validator == null || response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+            if (key != null) {
+                decodedObjectCache.remove(key);
+            }
+            return responseToObject(response, objectMapper, type);
+        }
+        CacheResponseStatus status = context.getCacheResponseStatus();
+        if (status == CacheResponseStatus.CACHE_HIT || status == CacheResponseStatus.VALIDATED) {
+            Object value = decodedObjectCache.get(key, validator);
+            if (value != null) {
+                closeResponse(response);
+                return (T) value;
+            }
+        }
+        T value = responseToObject(response, objectMapper, type);
+        if (value != null) {
+            decodedObjectCache.put(key, validator, value);
+        }
+        return value;
+    }
+
+    /**
+     * get请求并使用驼峰命名逐个解析响应中的json数组元素或NDJSON值, 响应体不会整体读入内存;<br/>
+     * 请求不经过请求合并、对冲及响应缓存的对象复用, 开启HTTP/2传输时也使用HTTP/1.1连接, 返回的流需关闭以释放连接, 如使用try-with-resources
+     *
+     * @param url       请求地址
+     * @param urlParams url参数
+     * @param type      元素类型
+     * @param headers   请求头
+     */
+    public <T> Stream<T> getStream(String url, Object urlParams, Class<T> type, Header... headers) {
+        return this.getStream(url, urlParams, JacksonSupport.camelCaseMapper.constructType(type), headers);
+    }
+
+    /**
+     * get请求并使用驼峰命名逐个解析响应中的json数组元素或NDJSON值, 见{@link #getStream(String, Object, Class, Header...)}
+     */
+    public <T> Stream<T> getStream(String url, Object urlParams, TypeReference<T> type, Header... headers) {
+        return this.getStream(url, urlParams, JacksonSupport.camelCaseMapper.getTypeFactory().constructType(type),
+                headers);
+    }
+
+    /**
+     * get请求并使用驼峰命名逐个解析响应中的json数组元素或NDJSON值, 见{@link #getStream(String, Object, Class, Header...)}
+     */
+    public <T> Stream<T> getStream(String url, Object urlParams, JavaType type, Header... headers) {
+        HttpEntityEnclosingRequestBase request = HttpRequestFactory.createRequest(HttpGet.METHOD_NAME, url, urlParams,
+                null, false, this.connectPool, headers);
+        HttpRequestFactory.applyRouteConfig(request, this.connectPool);
+        CloseableHttpResponse response = this.doExecute(request, null, true);
+        JsonIterator<T> iterator = new JsonIterator<>(response, JacksonSupport.camelCaseMapper, type);
+        return iterator.stream();
+    }
+
+    /**
+     * 解析后对象的缓存key, 包含url、目标类型及响应Vary声明的请求头, 不同变体使用不同的key; Vary为*时返回null, 不复用
+     */
+    private static String decodedObjectKey(HttpRequestBase request, HttpResponse response, JavaType type) {
+        StringBuilder key = new StringBuilder().append(request.getURI()).append(' ')
+                .append(type.toCanonical());
+        Set<String> names = new TreeSet<>();
+        for (Header vary : response.getHeaders(HttpHeaders.VARY)) {
+            for (HeaderElement element : vary.getElements()) {
+                String name = element.getName().trim().toLowerCase(Locale.ROOT);
+                if ("*".equals(name)) {
+                    return null;
+                }
+                if (!name.isEmpty()) {
+                    names.add(name);
+                }
+            }
+        }
+        for (String name : names) {
+            key.append(' ').append(name).append('=');
+            for (Header header : request.getHeaders(name)) {
+                key.append(header.getValue()).append(',');
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * 响应的校验值, 由ETag及Last-Modified组成, 都不存在时返回null, 不复用解析结果
+     */
+    private static String cacheValidator(HttpResponse response) {
+        Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+        Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+        if (etag == null && lastModified == null) {
+            return null;
+        }
+        return (etag == null ? "" : etag.getValue()) + "|" + (lastModified == null ? "" : lastModified.getValue());
+    }
+
+    private static void closeResponse(CloseableHttpResponse response) {
+        try {
+            EntityUtils.consume(response.getEntity());
+            response.close();
+        } catch (IOException e) {
+            log.error("httpClient释放连接失败", e);
+        }
+    }
+
+    private DecodedObjectCache getDecodedObjectCache() {
+        ResponseCache responseCache = this.connectPool == null ? null : this.connectPool.getResponseCache();
+        if (responseCache == null || responseCache.getMaxDecodedEntries() <= 0) {
+            return null;
+        }
+        if (this.decodedObjectCache == null) {
+            synchronized (this) {
+                if (this.decodedObjectCache == null) {
+                    this.decodedObjectCache = new DecodedObjectCache(responseCache.getMaxDecodedEntries());
+                }
+            }
+        }
+        return this.decodedObjectCache;
+    }
+
+    /**
+     * 下载文件, 响应体流式写入文件, 不读入内存, 覆盖已存在的文件
+     *
+     * @param url     请求地址
+     * @param target  目标文件
+     * @param headers 请求头
+     */
+    public DownloadResult download(String url, Path target, Header... headers) {
+        return this.download(url, null, target, null, headers);
+    }
+
+    /**
+     * 下载文件, 响应体流式写入文件, 不读入内存;<br/>
+     * 读取响应体中断时使用Range请求从中断处续传, 设置期望的校验和且校验不一致时删除文件并抛出异常
+     *
+     * @param url       请求地址
+     * @param urlParams url参数
+     * @param target    目标文件
+     * @param options   下载选项, 可为null
+     * @param headers   请求头
+     */
+    public DownloadResult download(String url, Object urlParams, Path target, DownloadOptions options,
+                                   Header... headers) {
+        DownloadOptions downloadOptions = options == null ? new DownloadOptions() : options;
+        DownloadResult result;
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            result = this.newDownloader(url, urlParams, downloadOptions, headers).download(channel);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        try {
+            FileDownloader.verify(result, downloadOptions);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(target);
+            } catch (IOException ex) {
+                log.warn("删除校验失败的文件失败: {}", target, ex);
+            }
+            throw new RuntimeException(e);
+        }
+        return result;
+    }
+
+    /**
+     * 下载到文件通道, 从通道当前内容之后续写需开启resumeExisting, 否则清空通道后写入, 通道需可读写, 由调用方关闭
+     *
+     * @param url       请求地址
+     * @param urlParams url参数
+     * @param channel   目标文件通道
+     * @param options   下载选项, 可为null
+     * @param headers   请求头
+     */
+    public DownloadResult download(String url, Object urlParams, FileChannel channel, DownloadOptions options,
+                                   Header... headers) {
+        DownloadOptions downloadOptions = options == null ? new DownloadOptions() : options;
+        try {
+            DownloadResult result = this.newDownloader(url, urlParams, downloadOptions, headers).download(channel);
+            FileDownloader.verify(result, downloadOptions);
+            return result;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 使用multipart上传单个文件, 文件流式发送, 可重试
+     *
+     * @param url     请求地址
+     * @param name    文件参数名
+     * @param file    文件
+     * @param headers 请求头
+     */
+    public CloseableHttpResponse upload(String url, String name, Path file, Header... headers) {
+        MultipartEntityBuilder builder = MultipartEntityBuilder.create().addPart(name, new FileRegionBody(file));
+        return this.upload(url, null, builder, null, headers);
+    }
+
+    /**
+     * 使用multipart上传, 文件部分使用{@link FileRegionBody}时流式发送且可重复发送, 请求失败可按重试策略重试;<br/>
+     * 开启HTTP/2传输时也使用HTTP/1.1连接, 避免请求体读入内存
+     *
+     * @param url       请求地址
+     * @param urlParams url参数
+     * @param builder   multipart请求体
+     * @param options   上传选项, 用于进度回调及限速, 可为null
+     * @param headers   请求头
+     */
+    public CloseableHttpResponse upload(String url, Object urlParams, MultipartEntityBuilder builder,
+                                        UploadOptions options, Header... headers) {
+        HttpEntity entity = builder.build();
+        UploadOptions uploadOptions = options == null ? new UploadOptions() : options;
+        return this.uploadRequest(HttpPost.METHOD_NAME, url, urlParams,
+                new UploadEntity(entity, uploadOptions, 0, entity.getContentLength()), headers);
+    }
+
+    /**
+     * 分片上传文件, 每个分片使用一个PUT请求发送, 请求体为文件片段, 请求头Content-Range为该分片的范围,
+     * 如bytes 0-8388607/20000000, 每个分片按重试策略单独重试, 开启HTTP/2传输时也使用HTTP/1.1连接;<br/>
+     * 中间分片的响应需为2xx或308, 否则抛出异常, 异常信息包含失败分片的起始位置,
+     * 可查询服务端已接收的长度后设置{@link UploadOptions#setStartOffset}续传
+     *
+     * @param url       请求地址
+     * @param urlParams url参数
+     * @param file      文件
+     * @param options   上传选项, 可为null
+     * @param headers   请求头
+     * @return 最后一个分片的响应
+     */
+    public CloseableHttpResponse uploadChunks(String url, Object urlParams, Path file, UploadOptions options,
+                                              Header... headers) {
+        UploadOptions uploadOptions = options == null ? new UploadOptions() : options;
+        long total = FileRegionEntity.regionLength(file, 0);
+        long offset = uploadOptions.getStartOffset();
+        if (offset > total) {
+            throw new IllegalArgumentException("startOffset exceeds file length: " + total);
+        }
+        List<Header> chunkHeaders = new ArrayList<>();
+        if (headers != null) {
+            chunkHeaders.addAll(Arrays.asList(headers));
+        }
+        chunkHeaders.add(null);
+        Header[] requestHeaders = chunkHeaders.toArray(new Header[0]);
+        while (true) {
+            long length = Math.min(uploadOptions.getChunkSize(), total - offset);
+            requestHeaders[requestHeaders.length - 1] = new BasicHeader(HttpHeaders.CONTENT_RANGE, length == 0
+                    ? "bytes */" + total : "bytes " + offset + "-" + (offset + length - 1) + "/" + total);
+            HttpEntity entity = new UploadEntity(new FileRegionEntity(file, offset, length,
+                    ContentType.APPLICATION_OCTET_STREAM), uploadOptions, offset, total);
+            CloseableHttpResponse response;
+            try {
+                response = this.uploadRequest(HttpPut.METHOD_NAME, url, urlParams, entity, requestHeaders);
+            } catch (RuntimeException e) {
+                throw new RuntimeException("upload chunk failed at offset " + offset, e);
+            }
+            offset += length;
+            if (offset >= total) {
+                return response;
+            }
+            int status = response.getStatusLine().getStatusCode();
+            closeResponse(response);
+            // 308为可恢复上传协议中的Resume Incomplete
+            if (status / 100 != 2 && status != 308) {
+                throw new RuntimeException("upload chunk failed at offset " + (offset - length) + ", status:" + status);
+            }
+        }
+    }
+
+    /**
+     * 发送上传请求, 上传请求体不可合并也不可对冲, 直接执行; 开启HTTP/2传输时也使用HTTP/1.1连接, 避免请求体读入内存
+     */
+    private CloseableHttpResponse uploadRequest(String method, String url, Object urlParams, HttpEntity entity,
+                                                Header... headers) {
+        HttpEntityEnclosingRequestBase request = HttpRequestFactory.createRequest(method, url, urlParams, entity,
+                false, this.connectPool, headers);
+        HttpRequestFactory.applyRouteConfig(request, this.connectPool);
+        return this.doExecute(request, null, true);
+    }
+
+    /**
+     * 下载不经过请求合并及对冲, 两者都需要缓冲响应体; 开启HTTP/2传输时也使用HTTP/1.1连接, 避免响应体读入内存
+     */
+    private FileDownloader newDownloader(String url, Object urlParams, DownloadOptions options, Header... headers) {
+        return new FileDownloader(() -> {
+            HttpEntityEnclosingRequestBase request = HttpRequestFactory.createRequest(HttpGet.METHOD_NAME, url,
+                    urlParams, null, false, this.connectPool, headers);
+            HttpRequestFactory.applyRouteConfig(request, this.connectPool);
+            return request;
+        }, request -> this.doExecute(request, null, true), options);
+    }
+
+    /**
+     * 在执行器中异步执行阻塞请求任务, 任务内可直接调用本工具的同步请求方法, 并需自行处理和关闭响应;<br/>
+     * 最大并发数为allMaxActive, 超出的任务排队等待, 连接池配置开启虚拟线程且运行环境支持时使用虚拟线程执行;<br/>
+     * 使用连接池配置时, 任务中的同步请求先按路由获取许可再获取连接, 每个路由的许可数与该路由的最大连接数(路由配置的maxActive或singleMaxActive)一致,
+     * 等待许可不受connectionRequestTimeout限制; 因此同一路由实际并发不超过该路由的最大连接数,
+     * 任务内不应同时持有同一路由的多个未关闭响应, 否则许可耗尽时会互相等待, 直到取消任务
+     *
+     * @param task 请求任务
+     * @return 任务结果, 取消时中断执行中的任务
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        if (task == null) {
+            throw new IllegalArgumentException("task can not be null");
+        }
+        return this.getTaskExecutor().submit(task);
+    }
+
+    /**
+     * 批量异步执行阻塞请求任务, 返回的future与任务顺序一致, 说明见{@link #submit(Callable)}
+     *
+     * @param tasks 请求任务
+     */
+    public <T> List<CompletableFuture<T>> executeAll(Collection<? extends Callable<T>> tasks) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            futures.add(this.submit(task));
+        }
+        return futures;
+    }
+
+    /**
+     * 批量请求, 解析见{@link #batch(List, int, Function)}
+     */
+    public <T> List<BatchResult<T>> batch(List<BatchRequest> requests, Class<T> type) {
+        return this.batch(requests, 0, response -> responseDataConversion(response, type));
+    }
+
+    /**
+     * 批量请求, 解析见{@link #batch(List, int, Function)}
+     */
+    public <T> List<BatchResult<T>> batch(List<BatchRequest> requests, TypeReference<T> type) {
+        return this.batch(requests, 0, response -> responseDataConversion(response, type));
+    }
+
+    /**
+     * 批量请求, 解析见{@link #batch(List, int, Function)}
+     */
+    public <T> List<BatchResult<T>> batch(List<BatchRequest> requests, Function<CloseableHttpResponse, T> decoder) {
+        return this.batch(requests, 0, decoder);
+    }
+
+    /**
+     * 批量请求, 按路由分组并发执行, 阻塞直到全部完成;<br/>
+     * 每个路由的并发数不超过该路由的最大连接数(路由配置的maxActive或singleMaxActive);
+     * 使用独立的执行器, 可在{@link #submit(Callable)}的任务中调用, 最大并发数为allMaxActive, 等待时可被中断
+     *
+     * @param requests               请求描述列表
+     * @param maxConcurrencyPerRoute 每个路由的最大并发数, 小于等于0时使用该路由的最大连接数
+     * @param decoder                响应解析, 如responseDataConversion, 解析后响应会被关闭
+     * @return 与请求顺序一致的结果, 单个请求失败不影响其他请求
+     */
+    public <T> List<BatchResult<T>> batch(List<BatchRequest> requests, int maxConcurrencyPerRoute,
+                                          Function<CloseableHttpResponse, T> decoder) {
+        if (decoder == null) {
+            throw new IllegalArgumentException("decoder can not be null");
+        }
+        int size = requests.size();
+        @SuppressWarnings("unchecked")
+        BatchResult<T>[] results = (BatchResult<T>[]) new BatchResult<?>[size];
+        HttpRequestBase[] httpRequests = new HttpRequestBase[size];
+        Map<String, List<Integer>> routes = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            BatchRequest request = requests.get(i);
+            try {
+                HttpRequestBase httpRequest = HttpRequestFactory.createRequest(request.getMethod(), request.getUrl(),
+                        request.getUrlParams(), request.getBodyParam(), request.isUseFormData(), this.connectPool,
+                        request.getHeaders());
+                HttpRequestFactory.applyRouteConfig(httpRequest, this.connectPool);
+                URI uri = httpRequest.getURI();
+                String routeKey = RouteConfig.routeKey(uri.getScheme(), uri.getHost(), uri.getPort());
+                httpRequests[i] = httpRequest;
+                routes.computeIfAbsent(routeKey, k -> new ArrayList<>()).add(i);
+            } catch (RuntimeException e) {
+                results[i] = BatchResult.failure(i, request, e);
+            }
+        }
+        List<CompletableFuture<Void>> lanes = new ArrayList<>();
+        for (List<Integer> indexes : routes.values()) {
+            URI uri = httpRequests[indexes.get(0)].getURI();
+            int concurrency = this.getRouteMaxActive(uri);
+            if (maxConcurrencyPerRoute > 0) {
+                concurrency = Math.min(concurrency, maxConcurrencyPerRoute);
+            }
+            concurrency = Math.max(1, Math.min(concurrency, indexes.size()));
+            // 同一路由的请求由固定数量的任务依次领取执行
+            AtomicInteger cursor = new AtomicInteger();
+            for (int i = 0; i < concurrency; i++) {
+                lanes.add(this.getBatchExecutor().submit(() -> {
+                    int next;
+                    while ((next = cursor.getAndIncrement()) < indexes.size()) {
+                        int index = indexes.get(next);
+                        results[index] = this.executeBatchItem(index, requests.get(index), httpRequests[index],
+                                decoder);
+                    }
+                    return null;
+                }));
+            }
+        }
+        try {
+            CompletableFuture.allOf(lanes.toArray(new CompletableFuture<?>[0])).get();
+        } catch (InterruptedException e) {
+            for (CompletableFuture<Void> lane : lanes) {
+                lane.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+        return Arrays.asList(results);
+    }
+
+    private <T> BatchResult<T> executeBatchItem(int index, BatchRequest request, HttpRequestBase httpRequest,
+                                                Function<CloseableHttpResponse, T> decoder) {
+        try (CloseableHttpResponse response = this.execute(httpRequest)) {
+            return BatchResult.success(index, request, decoder.apply(response));
+        } catch (Exception e) {
+            return BatchResult.failure(index, request, e);
+        }
+    }
+
+    /**
+     * 获取路由的最大连接数
+     */
+    private int getRouteMaxActive(URI uri) {
+        ConnectPool connectPool = this.connectPool == null ? new ConnectPool() : this.connectPool;
+        RouteConfig routeConfig = connectPool.getRouteConfig(uri.getScheme(), uri.getHost(), uri.getPort());
+        if (routeConfig != null && routeConfig.getMaxActive() != null) {
+            return routeConfig.getMaxActive();
+        }
+        return connectPool.getSingleMaxActive();
+    }
+
+    private TaskExecutor getTaskExecutor() {
+        if (this.taskExecutor == null) {
+            synchronized (this) {
+                if (this.taskExecutor == null) {
+                    ConnectPool connectPool = this.connectPool == null ? new ConnectPool() : this.connectPool;
+                    this.taskExecutor = new TaskExecutor("http-request", connectPool.isVirtualThreads(),
+                            connectPool.getAllMaxActive(), true);
+                }
+            }
+        }
+        return this.taskExecutor;
+    }
+
+    /**
+     * 批量请求使用独立的执行器, 避免在{@link #submit}的任务中调用{@link #batch}时, 调用方占满执行器而分组任务无法执行
+     */
+    private TaskExecutor getBatchExecutor() {
+        if (this.batchExecutor == null) {
+            synchronized (this) {
+                if (this.batchExecutor == null) {
+                    ConnectPool connectPool = this.connectPool == null ? new ConnectPool() : this.connectPool;
+                    this.batchExecutor = new TaskExecutor("http-batch", connectPool.isVirtualThreads(),
+                            connectPool.getAllMaxActive(), true);
+                }
+            }
+        }
+        return this.batchExecutor;
+    }
+
+    /**
+     * 获取HTTP/2传输, 首次使用时创建
+     */
+    private Http2Transport getHttp2Transport() {
+        if (this.http2Transport == null) {
+            synchronized (this) {
+                if (this.http2Transport == null) {
+                    this.http2Transport = new Http2Transport(this.connectPool);
+                }
+            }
+        }
+        return this.http2Transport;
+    }
+
+    /**
+     * 对冲请求使用独立的执行器, 避免在{@link #submit}的任务中发起请求时等待同一执行器而阻塞,
+     * 主请求在调用线程执行, 每次调用最多占用一个线程
+     */
+    private TaskExecutor getHedgeExecutor() {
+        if (this.hedgeExecutor == null) {
+            synchronized (this) {
+                if (this.hedgeExecutor == null) {
+                    this.hedgeExecutor = new TaskExecutor("http-hedge", this.connectPool.isVirtualThreads(),
+                            this.connectPool.getAllMaxActive(), false);
+                }
+            }
+        }
+        return this.hedgeExecutor;
+    }
+
+    /**
+     * 获取共享的默认客户端, 保持默认的ssl校验, 仅限制连接池大小并回收空闲连接
+     */
+    private static CloseableHttpClient getDefaultHttpClient() {
+        if (defaultHttpClient == null) {
+            synchronized (HttpRequestUtils.class) {
+                if (defaultHttpClient == null) {
+                    ConnectPool connectPool = new ConnectPool();
+                    defaultHttpClient = HttpClients.custom()
+                            .setMaxConnTotal(connectPool.getAllMaxActive())
+                            .setMaxConnPerRoute(connectPool.getSingleMaxActive())
+                            .evictExpiredConnections()
+                            .evictIdleConnections(connectPool.getMaxIdleTime(), TimeUnit.MILLISECONDS)
+                            .build();
+                    if (!defaultHttpClientHookAdded) {
+                        Runtime.getRuntime().addShutdownHook(new Thread(HttpRequestUtils::closeDefaultHttpClient,
+                                "http-default-client-shutdown"));
+                        defaultHttpClientHookAdded = true;
+                    }
+                }
+            }
+        }
+        return defaultHttpClient;
+    }
+
+    /**
+     * 关闭共享的默认客户端, 再次使用时会重新创建, 适用于容器卸载应用等场景
+     */
+    public static void closeDefaultHttpClient() {
+        synchronized (HttpRequestUtils.class) {
+            try {
+                if (defaultHttpClient != null) {
+                    defaultHttpClient.close();
+                    defaultHttpClient = null;
+                }
+            } catch (IOException e) {
+                log.error("", e);
+            }
+        }
+    }
+
+    /**
+     * 获取客户端, 未使用连接池时返回进程内共享的默认客户端, 其close方法不会关闭共享客户端
+     */
     public CloseableHttpClient getHttpClient() {
         if (this.connectPool == null) {
-            return HttpClients.createDefault();
+            return sharedHttpClient;
         } else {
             if (this.httpClient == null) {
                 synchronized (this) {
                     if (this.httpClient == null) {
-                        this.httpClient = new CloseableHttpClientBuilder().setConnectPool(this.connectPool).build();
+                        CloseableHttpClientBuilder builder = new CloseableHttpClientBuilder()
+                                .setConnectPool(this.connectPool);
+                        CloseableHttpClient client = builder.build();
+                        this.poolControl = builder.getPoolControl();
+                        this.httpClient = client;
                     }
                 }
             }
@@ -445,9 +1306,25 @@ public class HttpRequestUtils {
     }
 
     /**
-     * 关闭连接池
+     * 关闭连接池及任务执行器, 不会关闭共享的默认客户端
      */
     public void close() {
+        if (this.taskExecutor != null) {
+            this.taskExecutor.shutdown();
+            this.taskExecutor = null;
+        }
+        if (this.hedgeExecutor != null) {
+            this.hedgeExecutor.shutdown();
+            this.hedgeExecutor = null;
+        }
+        if (this.batchExecutor != null) {
+            this.batchExecutor.shutdown();
+            this.batchExecutor = null;
+        }
+        if (this.http2Transport != null) {
+            this.http2Transport.close();
+            this.http2Transport = null;
+        }
         try {
             if (this.httpClient != null) {
                 this.httpClient.close();
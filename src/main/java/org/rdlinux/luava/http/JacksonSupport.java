@@ -0,0 +1,95 @@
+package org.rdlinux.luava.http;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.http.HttpEntity;
+import org.apache.http.ParseException;
+import org.apache.http.entity.ContentType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+
+/**
+ * jackson流式读写支持, 直接在实体流上解析json, 避免中间字符串
+ */
+final class JacksonSupport {
+    /**
+     * 驼峰命名映射, 与JacksonUtils的配置一致
+     */
+    static final ObjectMapper camelCaseMapper = createObjectMapper(false);
+    /**
+     * 下划线命名映射, 与JacksonUtils的配置一致
+     */
+    static final ObjectMapper snakeCaseMapper = createObjectMapper(true);
+
+    private JacksonSupport() {
+    }
+
+    /**
+     * 按JacksonUtils的默认配置创建ObjectMapper: 忽略未知属性, 允许序列化空对象, 下划线映射使用SNAKE_CASE命名策略;
+     * 不读取JacksonUtils的内部字段, JacksonUtils调整配置时需同步修改此处
+     */
+    private static ObjectMapper createObjectMapper(boolean snakeCase) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        if (snakeCase) {
+            objectMapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        }
+        // 流由调用方管理, 不允许jackson关闭
+        objectMapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        objectMapper.configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false);
+        return objectMapper;
+    }
+
+    /**
+     * 根据实体的字符集创建json解析器, 未声明字符集或为unicode字符集时由jackson直接解析字节流
+     */
+    static JsonParser createParser(ObjectMapper objectMapper, HttpEntity entity, InputStream content)
+            throws IOException {
+        JsonFactory factory = objectMapper.getFactory();
+        Charset charset = getCharset(entity);
+        if (charset == null || charset.equals(StandardCharsets.UTF_8) || charset.name().startsWith("UTF-")) {
+            return factory.createParser(content);
+        }
+        return factory.createParser(new InputStreamReader(content, charset));
+    }
+
+    /**
+     * 从实体流中解析对象, 实体为空时返回null, 不负责关闭实体
+     */
+    static <T> T readValue(ObjectMapper objectMapper, HttpEntity entity, JavaType type) throws IOException {
+        if (entity == null) {
+            return null;
+        }
+        InputStream content = entity.getContent();
+        if (content == null) {
+            return null;
+        }
+        try (JsonParser parser = createParser(objectMapper, entity, content)) {
+            if (parser.nextToken() == null) {
+                return null;
+            }
+            return objectMapper.readValue(parser, type);
+        }
+    }
+
+    private static Charset getCharset(HttpEntity entity) {
+        try {
+            ContentType contentType = ContentType.get(entity);
+            return contentType == null ? null : contentType.getCharset();
+        } catch (ParseException | UnsupportedCharsetException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.rdlinux.luava.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * json请求体, 序列化后不超过缓冲阈值时缓冲到内存, 带Content-Length发送; 超过阈值时发送时由jackson直接把对象序列化到连接输出流,
+ * 不生成中间字符串及字节数组, 使用chunked传输; 可重复发送;<br/>
+ * 异步客户端不能阻塞io线程, 首次发送时先将对象序列化为分段缓冲区, 再按连接可写情况分段发送
+ */
+public class JsonEntity extends AbstractHttpEntity implements HttpAsyncContentProducer {
+    /**
+     * 默认缓冲阈值, 单位字节
+     */
+    static final int defaultBufferSize = 65536;
+    private final Object value;
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final ChunkedContentProducer producer;
+    /**
+     * 缓冲的序列化内容, 超过阈值时为null
+     */
+    private byte[] content;
+    private boolean buffered;
+
+    /**
+     * @param value 请求对象, 使用驼峰命名序列化, 序列化后不超过64K时带长度发送
+     */
+    public JsonEntity(Object value) {
+        this(value, JacksonSupport.camelCaseMapper, defaultBufferSize);
+    }
+
+    /**
+     * @param value        请求对象
+     * @param objectMapper 序列化使用的ObjectMapper, 需关闭JsonGenerator.Feature.AUTO_CLOSE_TARGET
+     */
+    public JsonEntity(Object value, ObjectMapper objectMapper) {
+        this(value, objectMapper, defaultBufferSize);
+    }
+
+    /**
+     * @param value        请求对象
+     * @param objectMapper 序列化使用的ObjectMapper, 需关闭JsonGenerator.Feature.AUTO_CLOSE_TARGET
+     * @param bufferSize   缓冲阈值, 单位字节, 序列化后不超过该长度时带Content-Length发送, 否则使用chunked传输, 为0时总是chunked
+     */
+    public JsonEntity(Object value, ObjectMapper objectMapper, int bufferSize) {
+        if (objectMapper == null) {
+            throw new IllegalArgumentException("objectMapper can not be null");
+        }
+        this.value = value;
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.producer = new ChunkedContentProducer(this::writeContent);
+        this.setContentType(ContentType.APPLICATION_JSON.toString());
+    }
+
+    public Object getValue() {
+        return this.value;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        byte[] content = this.buffer();
+        return content == null ? -1 : content.length;
+    }
+
+    @Override
+    public boolean isChunked() {
+        return this.getContentLength() < 0;
+    }
+
+    /**
+     * 获取序列化后的内容, 超过缓冲阈值时会完整序列化到内存, 发送请求时不会调用
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        byte[] content = this.buffer();
+        return new ByteArrayInputStream(content == null ? this.objectMapper.writeValueAsBytes(this.value) : content);
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        if (outStream == null) {
+            throw new IllegalArgumentException("Output stream may not be null");
+        }
+        this.writeContent(outStream);
+        outStream.flush();
+    }
+
+    private void writeContent(OutputStream outStream) throws IOException {
+        byte[] content = this.buffer();
+        if (content == null) {
+            this.objectMapper.writeValue(outStream, this.value);
+        } else {
+            outStream.write(content);
+        }
+    }
+
+    /**
+     * 实际发送的json字符串, 用于日志
+     */
+    String toJsonString() throws IOException {
+        byte[] content = this.buffer();
+        if (content == null) {
+            return this.objectMapper.writeValueAsString(this.value);
+        }
+        return new String(content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 首次调用时尝试把对象序列化到缓冲区, 超过阈值时放弃
+     *
+     * @return 序列化内容, 超过阈值时返回null
+     */
+    private synchronized byte[] buffer() {
+        if (this.buffered) {
+            return this.content;
+        }
+        this.buffered = true;
+        if (this.bufferSize <= 0) {
+            return null;
+        }
+        LimitedOutputStream outputStream = new LimitedOutputStream(this.bufferSize);
+        try {
+            this.objectMapper.writeValue(outputStream, this.value);
+        } catch (IOException | RuntimeException e) {
+            // 超过阈值或序列化失败时使用chunked发送, 序列化异常在发送时抛出
+            return null;
+        }
+        this.content = outputStream.toByteArray();
+        return this.content;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public void produceContent(ContentEncoder encoder, IOControl ioControl) throws IOException {
+        this.producer.produceContent(encoder, ioControl);
+    }
+
+    /**
+     * 重置异步发送状态, 重试时重新发送
+     */
+    @Override
+    public void close() {
+        this.producer.reset();
+    }
+
+    /**
+     * 超过长度限制时抛出异常的缓冲输出流
+     */
+    private static class LimitedOutputStream extends ByteArrayOutputStream {
+        private final int limit;
+
+        private LimitedOutputStream(int limit) {
+            super(Math.min(limit, 512));
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) {
+            this.ensureCapacity(1);
+            super.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            this.ensureCapacity(len);
+            super.write(b, off, len);
+        }
+
+        private void ensureCapacity(int len) {
+            if (this.count + len > this.limit) {
+                throw new BufferOverflow();
+            }
+        }
+    }
+
+    private static class BufferOverflow extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private BufferOverflow() {
+            super("json content exceeds buffer size", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.rdlinux.luava.http;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 逐个解析响应中的json元素, 响应体为json数组时遍历数组元素, 否则遍历以空白或换行分隔的多个json值(NDJSON);<br/>
+ * 每次只在内存中保留一个元素, 遍历结束时自动释放连接, 提前结束遍历时需调用{@link #close()},
+ * 此时未读完的连接会被关闭而不是读完剩余内容
+ */
+public class JsonIterator<T> implements Iterator<T>, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(JsonIterator.class);
+    private final HttpResponse response;
+    private final JsonParser parser;
+    private final MappingIterator<T> iterator;
+    private boolean exhausted;
+    private boolean closed;
+
+    JsonIterator(HttpResponse response, ObjectMapper objectMapper, JavaType type) {
+        this.response = response;
+        HttpEntity entity = response.getEntity();
+        try {
+            InputStream content = entity == null ? null : entity.getContent();
+            if (content == null) {
+                this.parser = null;
+                this.iterator = MappingIterator.emptyIterator();
+                this.close();
+                return;
+            }
+            this.parser = JacksonSupport.createParser(objectMapper, entity, content);
+            if (this.parser.nextToken() == JsonToken.START_ARRAY) {
+                // 跳过外层数组, 由MappingIterator读取到数组结束
+                this.parser.clearCurrentToken();
+            }
+            this.iterator = objectMapper.readerFor(type).readValues(this.parser);
+        } catch (IOException e) {
+            this.close();
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.closed) {
+            return false;
+        }
+        boolean hasNext;
+        try {
+            hasNext = this.iterator.hasNextValue();
+        } catch (IOException | RuntimeException e) {
+            this.close();
+            throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+        }
+        if (!hasNext) {
+            this.exhausted = true;
+            this.close();
+        }
+        return hasNext;
+    }
+
+    @Override
+    public T next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return this.iterator.nextValue();
+        } catch (IOException | RuntimeException e) {
+            this.close();
+            throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 转换为顺序流, 流关闭时关闭本迭代器
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+                .onClose(this::close);
+    }
+
+    /**
+     * 释放连接, 已遍历结束时读完剩余的空白使连接可复用, 否则直接关闭连接
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            if (this.parser != null) {
+                this.parser.close();
+                if (this.exhausted) {
+                    EntityUtils.consume(this.response.getEntity());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("json iterator finish failed", e);
+        } finally {
+            try {
+                if (this.response instanceof Closeable) {
+                    ((Closeable) this.response).close();
+                }
+            } catch (IOException e) {
+                log.error("httpClient释放连接失败", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package org.rdlinux.luava.http;
+
+import java.util.List;
+
+/**
+ * 服务实例选择策略, 内置实现见{@link LoadBalancers}, 同一服务的请求会并发调用
+ */
+public interface LoadBalancer {
+    /**
+     * 选择本次请求的服务实例
+     *
+     * @param endpoints 可用的服务实例, 不为空, 已剔除异常实例
+     */
+    ServiceEndpoint choose(List<ServiceEndpoint> endpoints);
+}
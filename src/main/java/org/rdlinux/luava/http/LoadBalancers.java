@@ -0,0 +1,63 @@
+package org.rdlinux.luava.http;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内置服务实例选择策略, 策略可能带有状态, 每个服务应使用单独的实例
+ */
+public final class LoadBalancers {
+    private LoadBalancers() {
+    }
+
+    /**
+     * 轮询
+     */
+    public static LoadBalancer roundRobin() {
+        AtomicInteger index = new AtomicInteger(ThreadLocalRandom.current().nextInt(1024));
+        return endpoints -> endpoints.get(Math.floorMod(index.getAndIncrement(), endpoints.size()));
+    }
+
+    /**
+     * 选择进行中请求最少的实例, 数量相同时从随机位置开始选择第一个
+     */
+    public static LoadBalancer leastInFlight() {
+        return endpoints -> {
+            int size = endpoints.size();
+            int start = ThreadLocalRandom.current().nextInt(size);
+            ServiceEndpoint chosen = null;
+            for (int i = 0; i < size; i++) {
+                ServiceEndpoint endpoint = endpoints.get((start + i) % size);
+                if (chosen == null || endpoint.getInFlight() < chosen.getInFlight()) {
+                    chosen = endpoint;
+                }
+            }
+            return chosen;
+        };
+    }
+
+    /**
+     * 随机选择两个实例, 取平均耗时乘以(进行中请求数+1)较小的一个, 尚无耗时统计的实例优先
+     */
+    public static LoadBalancer powerOfTwoChoices() {
+        return endpoints -> {
+            int size = endpoints.size();
+            if (size == 1) {
+                return endpoints.get(0);
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(size);
+            int second = random.nextInt(size - 1);
+            if (second >= first) {
+                second++;
+            }
+            ServiceEndpoint a = endpoints.get(first);
+            ServiceEndpoint b = endpoints.get(second);
+            return cost(a) <= cost(b) ? a : b;
+        };
+    }
+
+    private static double cost(ServiceEndpoint endpoint) {
+        return endpoint.getLatency() * (endpoint.getInFlight() + 1);
+    }
+}
@@ -0,0 +1,115 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.Header;
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.client.cache.HttpCacheStorage;
+import org.apache.http.client.cache.HttpCacheUpdateCallback;
+import org.apache.http.client.cache.Resource;
+import org.apache.http.impl.client.cache.FileResource;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 内存缓存存储, 按占用字节数淘汰最久未使用的条目, 被淘汰或替换的条目释放其响应体资源
+ */
+final class MemoryCacheStorage implements HttpCacheStorage {
+    /**
+     * 单个条目除响应体及响应头外的估算开销
+     */
+    private static final int entryOverhead = 256;
+    private final long maxBytes;
+    private final LinkedHashMap<String, WeightedEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+
+    MemoryCacheStorage(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public synchronized void putEntry(String key, HttpCacheEntry entry) {
+        WeightedEntry weightedEntry = new WeightedEntry(entry, weigh(key, entry));
+        this.release(this.entries.put(key, weightedEntry), entry);
+        this.usedBytes += weightedEntry.weight;
+        this.evict();
+    }
+
+    @Override
+    public synchronized HttpCacheEntry getEntry(String key) {
+        WeightedEntry weightedEntry = this.entries.get(key);
+        return weightedEntry == null ? null : weightedEntry.entry;
+    }
+
+    @Override
+    public synchronized void removeEntry(String key) {
+        this.release(this.entries.remove(key), null);
+    }
+
+    @Override
+    public synchronized void updateEntry(String key, HttpCacheUpdateCallback callback) throws IOException {
+        WeightedEntry existing = this.entries.get(key);
+        HttpCacheEntry updated = callback.update(existing == null ? null : existing.entry);
+        if (updated != null) {
+            this.putEntry(key, updated);
+        }
+    }
+
+    synchronized long getUsedBytes() {
+        return this.usedBytes;
+    }
+
+    synchronized int size() {
+        return this.entries.size();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, WeightedEntry>> iterator = this.entries.entrySet().iterator();
+        while (this.usedBytes > this.maxBytes && iterator.hasNext()) {
+            WeightedEntry eldest = iterator.next().getValue();
+            iterator.remove();
+            this.release(eldest, null);
+        }
+    }
+
+    /**
+     * 扣减被移除条目的占用, 新条目复用同一资源时不释放
+     */
+    private void release(WeightedEntry removed, HttpCacheEntry replacement) {
+        if (removed == null) {
+            return;
+        }
+        this.usedBytes -= removed.weight;
+        Resource resource = removed.entry.getResource();
+        if (resource != null && (replacement == null || replacement.getResource() != resource)) {
+            resource.dispose();
+        }
+    }
+
+    /**
+     * 估算条目占用的内存, 磁盘上的响应体不计入
+     */
+    private static long weigh(String key, HttpCacheEntry entry) {
+        long weight = entryOverhead + key.length() * 2L;
+        for (Header header : entry.getAllHeaders()) {
+            String value = header.getValue();
+            weight += (header.getName().length() + (value == null ? 0 : value.length())) * 2L;
+        }
+        Resource resource = entry.getResource();
+        if (resource != null && !(resource instanceof FileResource)) {
+            weight += resource.length();
+        }
+        return weight;
+    }
+
+    private static class WeightedEntry {
+        private final HttpCacheEntry entry;
+        private final long weight;
+
+        private WeightedEntry(HttpCacheEntry entry, long weight) {
+            this.entry = entry;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.EntityAsyncContentProducer;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * 统计实体传输字节数, 读取时多次获取的流共用计数, 在读取到流末尾或关闭流时回调一次; 每次写出完成时回调;<br/>
+ * 异步发送时优先使用被包装实体自身的异步生产方式
+ */
+class MeteredEntity extends HttpEntityWrapper implements HttpAsyncContentProducer {
+    private final LongConsumer bytesConsumer;
+    private final AtomicLong readCount = new AtomicLong();
+    private final AtomicBoolean readReported = new AtomicBoolean(false);
+    private HttpAsyncContentProducer producer;
+    private long producedCount;
+
+    MeteredEntity(HttpEntity wrappedEntity, LongConsumer bytesConsumer) {
+        super(wrappedEntity);
+        this.bytesConsumer = bytesConsumer;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        InputStream content = super.getContent();
+        return content == null ? null : new CountingInputStream(content);
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        CountingOutputStream countingOutputStream = new CountingOutputStream(outStream);
+        super.writeTo(countingOutputStream);
+        this.bytesConsumer.accept(countingOutputStream.count);
+    }
+
+    @Override
+    public void produceContent(ContentEncoder encoder, IOControl ioControl) throws IOException {
+        if (this.producer == null) {
+            this.producer = this.wrappedEntity instanceof HttpAsyncContentProducer
+                    ? (HttpAsyncContentProducer) this.wrappedEntity : new EntityAsyncContentProducer(this.wrappedEntity);
+            this.producedCount = 0;
+        }
+        this.producer.produceContent(new CountingEncoder(encoder), ioControl);
+        if (encoder.isCompleted()) {
+            this.bytesConsumer.accept(this.producedCount);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        HttpAsyncContentProducer producer = this.producer;
+        this.producer = null;
+        if (producer != null) {
+            producer.close();
+        }
+    }
+
+    private void reportRead() {
+        if (this.readReported.compareAndSet(false, true)) {
+            this.bytesConsumer.accept(this.readCount.get());
+        }
+    }
+
+    private class CountingInputStream extends FilterInputStream {
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                MeteredEntity.this.reportRead();
+            } else {
+                MeteredEntity.this.readCount.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                MeteredEntity.this.reportRead();
+            } else {
+                MeteredEntity.this.readCount.addAndGet(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            MeteredEntity.this.readCount.addAndGet(skipped);
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                MeteredEntity.this.reportRead();
+            }
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+            this.count += len;
+        }
+    }
+
+    private class CountingEncoder implements ContentEncoder {
+        private final ContentEncoder encoder;
+
+        private CountingEncoder(ContentEncoder encoder) {
+            this.encoder = encoder;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int n = this.encoder.write(src);
+            MeteredEntity.this.producedCount += n;
+            return n;
+        }
+
+        @Override
+        public void complete() throws IOException {
+            this.encoder.complete();
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return this.encoder.isCompleted();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URIUtils;
+
+/**
+ * 请求级指标采集, 同步和异步请求共用
+ */
+final class MetricsSupport {
+    private MetricsSupport() {
+    }
+
+    /**
+     * 获取指标中使用的主机, 有端口时包含端口
+     */
+    static String metricsHost(HttpRequestBase request) {
+        HttpHost host = URIUtils.extractHost(request.getURI());
+        return host == null ? String.valueOf(request.getURI().getHost()) : host.toHostString();
+    }
+
+    /**
+     * 请求发送前统计请求体字节数
+     */
+    static void beforeRequest(HttpRequestBase request, HttpMetrics metrics) {
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntityEnclosingRequest entityRequest = (HttpEntityEnclosingRequest) request;
+            HttpEntity entity = entityRequest.getEntity();
+            if (entity != null) {
+                String host = metricsHost(request);
+                entityRequest.setEntity(new MeteredEntity(entity, bytes -> metrics.recordBytesSent(host, bytes)));
+            }
+        }
+    }
+
+    /**
+     * 收到响应后记录耗时, 并统计响应体字节数
+     */
+    static void afterResponse(HttpRequestBase request, HttpResponse response, HttpMetrics metrics, long startNanos) {
+        String host = metricsHost(request);
+        metrics.recordRequest(request.getMethod(), host, response.getStatusLine().getStatusCode(),
+                System.nanoTime() - startNanos);
+        HttpEntity entity = response.getEntity();
+        if (entity != null) {
+            response.setEntity(new MeteredEntity(entity, bytes -> metrics.recordBytesReceived(host, bytes)));
+        }
+    }
+
+    /**
+     * 请求异常时记录耗时
+     */
+    static void afterFailure(HttpRequestBase request, HttpMetrics metrics, long startNanos) {
+        metrics.recordRequest(request.getMethod(), metricsHost(request), -1, System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,12 @@
+package org.rdlinux.luava.http;
+
+/**
+ * 传输进度监听, 在传输线程中调用, 不应执行耗时操作
+ */
+public interface ProgressListener {
+    /**
+     * @param transferred 已传输的字节数
+     * @param total       总字节数, 未知时为-1
+     */
+    void onProgress(long transferred, long total);
+}
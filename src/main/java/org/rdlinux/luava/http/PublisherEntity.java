@@ -0,0 +1,263 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Reactive Streams请求体, 发送时订阅Publisher, 每写出一个缓冲区再请求下一个, 最多预取4个缓冲区;<br/>
+ * 异步发送时缓冲区为空则暂停连接输出, 收到数据后恢复, 不阻塞io线程; 同步发送时在发送线程中等待数据;
+ * Publisher通常只能订阅一次, 因此不可重复发送, 请求不会重试
+ */
+public class PublisherEntity extends AbstractHttpEntity implements HttpAsyncContentProducer {
+    private static final int prefetch = 4;
+    /**
+     * 结束标记
+     */
+    private static final ByteBuffer end = ByteBuffer.allocate(0);
+    private final Publisher<ByteBuffer> publisher;
+    private final long contentLength;
+    private volatile BodySubscriber subscriber;
+
+    /**
+     * @param publisher 请求体数据, 使用chunked传输
+     */
+    public PublisherEntity(Publisher<ByteBuffer> publisher) {
+        this(publisher, -1, ContentType.APPLICATION_OCTET_STREAM);
+    }
+
+    /**
+     * @param publisher     请求体数据
+     * @param contentLength 内容长度, 未知时为-1, 使用chunked传输
+     * @param contentType   内容类型, 可为null
+     */
+    public PublisherEntity(Publisher<ByteBuffer> publisher, long contentLength, ContentType contentType) {
+        if (publisher == null) {
+            throw new IllegalArgumentException("publisher can not be null");
+        }
+        this.publisher = publisher;
+        this.contentLength = contentLength;
+        this.setChunked(contentLength < 0);
+        if (contentType != null) {
+            this.setContentType(contentType.toString());
+        }
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return false;
+    }
+
+    @Override
+    public long getContentLength() {
+        return this.contentLength;
+    }
+
+    @Override
+    public InputStream getContent() {
+        throw new UnsupportedOperationException("publisher entity can only be written");
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return true;
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        if (outStream == null) {
+            throw new IllegalArgumentException("Output stream may not be null");
+        }
+        BodySubscriber subscriber = this.subscribe(null);
+        byte[] bytes = null;
+        try {
+            while (true) {
+                ByteBuffer buffer = subscriber.take();
+                if (buffer == null) {
+                    break;
+                }
+                if (buffer.hasArray()) {
+                    outStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                } else {
+                    if (bytes == null || bytes.length < buffer.remaining()) {
+                        bytes = new byte[buffer.remaining()];
+                    }
+                    int length = buffer.remaining();
+                    buffer.get(bytes, 0, length);
+                    outStream.write(bytes, 0, length);
+                }
+                subscriber.consumed();
+            }
+        } catch (IOException | RuntimeException e) {
+            subscriber.cancel();
+            throw e;
+        }
+        outStream.flush();
+    }
+
+    @Override
+    public void produceContent(ContentEncoder encoder, IOControl ioControl) throws IOException {
+        BodySubscriber subscriber = this.subscriber;
+        if (subscriber == null) {
+            subscriber = this.subscribe(ioControl);
+        }
+        subscriber.produce(encoder, ioControl);
+    }
+
+    /**
+     * 取消订阅
+     */
+    @Override
+    public void close() {
+        BodySubscriber subscriber = this.subscriber;
+        if (subscriber != null) {
+            subscriber.cancel();
+        }
+    }
+
+    private synchronized BodySubscriber subscribe(IOControl ioControl) throws IOException {
+        if (this.subscriber != null) {
+            throw new IOException("publisher entity has already been sent");
+        }
+        BodySubscriber subscriber = new BodySubscriber(ioControl);
+        this.subscriber = subscriber;
+        this.publisher.subscribe(subscriber);
+        return subscriber;
+    }
+
+    private static class BodySubscriber implements Subscriber<ByteBuffer> {
+        private final BlockingQueue<ByteBuffer> queue = new LinkedBlockingQueue<>();
+        /**
+         * 异步发送时的连接控制, 同步发送时为null
+         */
+        private final IOControl ioControl;
+        private volatile Subscription subscription;
+        private volatile Throwable error;
+        private volatile boolean cancelled;
+
+        private BodySubscriber(IOControl ioControl) {
+            this.ioControl = ioControl;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            if (this.subscription != null || this.cancelled) {
+                subscription.cancel();
+                return;
+            }
+            this.subscription = subscription;
+            subscription.request(prefetch);
+        }
+
+        @Override
+        public void onNext(ByteBuffer buffer) {
+            this.queue.offer(buffer);
+            this.signal();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.error = throwable;
+            this.queue.offer(end);
+            this.signal();
+        }
+
+        @Override
+        public void onComplete() {
+            this.queue.offer(end);
+            this.signal();
+        }
+
+        private void signal() {
+            if (this.ioControl != null) {
+                this.ioControl.requestOutput();
+            }
+        }
+
+        /**
+         * 同步发送时等待下一个缓冲区
+         *
+         * @return 结束时返回null
+         */
+        private ByteBuffer take() throws IOException {
+            ByteBuffer buffer;
+            try {
+                buffer = this.queue.take();
+            } catch (InterruptedException e) {
+                this.cancel();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("request body interrupted");
+            }
+            if (buffer == end) {
+                this.checkError();
+                return null;
+            }
+            return buffer;
+        }
+
+        /**
+         * 一个缓冲区写出完成后请求下一个
+         */
+        private void consumed() {
+            Subscription subscription = this.subscription;
+            if (subscription != null && !this.cancelled) {
+                subscription.request(1);
+            }
+        }
+
+        private void produce(ContentEncoder encoder, IOControl ioControl) throws IOException {
+            while (true) {
+                ByteBuffer buffer = this.queue.peek();
+                if (buffer == null) {
+                    ioControl.suspendOutput();
+                    // 暂停前可能已收到数据
+                    if (this.queue.peek() == null) {
+                        return;
+                    }
+                    ioControl.requestOutput();
+                    continue;
+                }
+                if (buffer == end) {
+                    this.checkError();
+                    encoder.complete();
+                    return;
+                }
+                encoder.write(buffer);
+                if (buffer.hasRemaining()) {
+                    // 连接暂不可写, 等待下次回调
+                    return;
+                }
+                this.queue.poll();
+                this.consumed();
+            }
+        }
+
+        private void checkError() throws IOException {
+            Throwable error = this.error;
+            if (error != null) {
+                throw error instanceof IOException ? (IOException) error : new IOException(error);
+            }
+        }
+
+        private void cancel() {
+            this.cancelled = true;
+            Subscription subscription = this.subscription;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+}
@@ -1,61 +1,76 @@
 package org.rdlinux.luava.http;
 
 
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializer;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
 import org.rdlinux.luava.json.JacksonUtils;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
-import java.util.Arrays;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * http请求参数工具
  */
 public class Qs {
-    private static StringBuilder stringify(String prefix, Map<?, ?> mapParam) {
-        StringBuilder resultBuilder = new StringBuilder();
-        Set<?> keys = mapParam.keySet();
-        for (Object key : keys) {
-            Object value = mapParam.get(key);
-            if (value == null) {
-                continue;
-            }
-            if (value instanceof Collection || value.getClass().isArray()) {
-                Collection<?> sonParams = null;
-                if (value instanceof Collection) {
-                    sonParams = (Collection<?>) value;
-                } else {
-                    Object[] array = (Object[]) value;
-                    sonParams = Arrays.asList(array);
-                }
-                for (Object sonParam : sonParams) {
-                    if (sonParam instanceof Map) {
-                        resultBuilder.append(stringify(prefix + key.toString() + ".", (Map<?, ?>) sonParam));
-                    } else {
-                        resultBuilder.append(prefix).append(key.toString()).append("=").append(sonParam).append("&");
-                    }
-                }
-            } else if (value instanceof Map) {
-                resultBuilder.append(stringify(prefix + key.toString() + ".", (Map<?, ?>) value));
-            } else {
-                String strvalue = null;
-                try {
-                    strvalue = URLEncoder.encode(value.toString(), "UTF-8");
-                } catch (UnsupportedEncodingException e) {
-                    throw new IllegalArgumentException(e);
-                }
-                resultBuilder.append(prefix).append(key.toString()).append("=").append(strvalue).append("&");
-            }
+    private static final char[] hexDigits = "0123456789ABCDEF".toCharArray();
+    /**
+     * url编码时保持原样的字符, 与URLEncoder一致
+     */
+    private static final boolean[] unreserved = new boolean[128];
+    /**
+     * 对象编码器缓存, 每个类型只内省一次
+     */
+    private static final ConcurrentMap<Class<?>, BeanEncoder> beanEncoders = new ConcurrentHashMap<>();
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            unreserved[c] = true;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            unreserved[c] = true;
         }
-        return resultBuilder;
+        for (char c = '0'; c <= '9'; c++) {
+            unreserved[c] = true;
+        }
+        unreserved['.'] = true;
+        unreserved['-'] = true;
+        unreserved['*'] = true;
+        unreserved['_'] = true;
     }
 
     /**
      * 把对象转换为http请求参数,注意不支持传入容器和数组,传入string时将直接返回
      */
     public static String stringify(Object object) {
+        return stringify(object, null);
+    }
+
+    /**
+     * 按选项把对象转换为http请求参数,注意不支持传入容器和数组,传入string时将直接返回
+     *
+     * @param options 转换选项, 为null时与{@link #stringify(Object)}一致, 即容器元素及参数名不做url编码
+     */
+    public static String stringify(Object object, QsOptions options) {
         if (object instanceof Iterable) {
             throw new IllegalArgumentException("不支持容器数据");
         } else if (object.getClass().isArray()) {
@@ -73,18 +88,566 @@ public class Qs {
             if (object instanceof String) {
                 return (String) object;
             } else {
-                Map<?, ?> mapParam = null;
-                if (object instanceof Map) {
-                    mapParam = (Map<?, ?>) object;
+                Writer writer = new Writer(options);
+                if (options != null) {
+                    writer.writeFields(object);
+                } else if (object instanceof Map) {
+                    writer.writeMap((Map<?, ?>) object, false);
+                } else {
+                    writer.writeBean(object);
+                }
+                return writer.toString();
+            }
+        }
+    }
+
+    /**
+     * url编码, 结果与URLEncoder.encode(value, "UTF-8")一致
+     */
+    static void encode(StringBuilder builder, String value) {
+        int length = value.length();
+        int i = 0;
+        while (i < length) {
+            char c = value.charAt(i);
+            if (c >= 128 || !unreserved[c]) {
+                break;
+            }
+            i++;
+        }
+        if (i == length) {
+            builder.append(value);
+            return;
+        }
+        builder.append(value, 0, i);
+        while (i < length) {
+            char c = value.charAt(i);
+            if (c < 128) {
+                if (unreserved[c]) {
+                    builder.append(c);
+                } else if (c == ' ') {
+                    builder.append('+');
                 } else {
-                    mapParam = JacksonUtils.conversion(object, Map.class);
+                    appendEscaped(builder, c);
+                }
+            } else if (c < 0x800) {
+                appendEscaped(builder, 0xC0 | (c >> 6));
+                appendEscaped(builder, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                appendEscaped(builder, 0xF0 | (codePoint >> 18));
+                appendEscaped(builder, 0x80 | ((codePoint >> 12) & 0x3F));
+                appendEscaped(builder, 0x80 | ((codePoint >> 6) & 0x3F));
+                appendEscaped(builder, 0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // 与URLEncoder一致, 不成对的代理字符编码为?
+                appendEscaped(builder, '?');
+            } else {
+                appendEscaped(builder, 0xE0 | (c >> 12));
+                appendEscaped(builder, 0x80 | ((c >> 6) & 0x3F));
+                appendEscaped(builder, 0x80 | (c & 0x3F));
+            }
+            i++;
+        }
+    }
+
+    private static void appendEscaped(StringBuilder builder, int b) {
+        builder.append('%').append(hexDigits[(b >> 4) & 0xF]).append(hexDigits[b & 0xF]);
+    }
+
+    /**
+     * 是否为jackson原样输出的简单类型
+     */
+    private static boolean isSimpleValue(Object value) {
+        return value instanceof String || value instanceof Boolean || value instanceof Integer
+                || value instanceof Long || value instanceof Double || value instanceof Float
+                || value instanceof Short || value instanceof Byte || value instanceof BigDecimal
+                || value instanceof BigInteger || value instanceof Character;
+    }
+
+    private static BeanEncoder getBeanEncoder(Class<?> type) {
+        BeanEncoder encoder = beanEncoders.get(type);
+        if (encoder == null) {
+            encoder = BeanEncoder.compile(type);
+            BeanEncoder exists = beanEncoders.putIfAbsent(type, encoder);
+            if (exists != null) {
+                encoder = exists;
+            }
+        }
+        return encoder;
+    }
+
+    /**
+     * 对象编码器, 使用jackson序列化时的属性名称、顺序及取值方式, 不能按普通bean处理的类型交由jackson转换
+     */
+    private static class BeanEncoder {
+        private static final BeanEncoder unsupported = new BeanEncoder(null, null);
+        private final String[] names;
+        private final AnnotatedMember[] accessors;
+
+        private BeanEncoder(String[] names, AnnotatedMember[] accessors) {
+            this.names = names;
+            this.accessors = accessors;
+        }
+
+        private static BeanEncoder compile(Class<?> type) {
+            if (type.isArray() || type.isEnum() || Map.class.isAssignableFrom(type)
+                    || Collection.class.isAssignableFrom(type) || type.getName().startsWith("java.")) {
+                return unsupported;
+            }
+            ObjectMapper objectMapper = JacksonSupport.camelCaseMapper;
+            SerializationConfig config = objectMapper.getSerializationConfig();
+            JavaType javaType = objectMapper.constructType(type);
+            JsonSerializer<Object> serializer;
+            try {
+                serializer = objectMapper.getSerializerProviderInstance().findValueSerializer(javaType);
+            } catch (JsonMappingException e) {
+                return unsupported;
+            }
+            // 自定义序列化、@JsonValue、类型信息等均不是普通bean
+            if (serializer.getClass() != BeanSerializer.class) {
+                return unsupported;
+            }
+            BeanDescription description = config.introspect(javaType);
+            if (description.findAnyGetter() != null || config.getAnnotationIntrospector()
+                    .findTypeResolver(config, description.getClassInfo(), javaType) != null) {
+                return unsupported;
+            }
+            // 会过滤空值、默认值的属性输出结果与jackson不同
+            JsonInclude.Value inclusion = description.findPropertyInclusion(config.getDefaultPropertyInclusion(type));
+            if (!isNullsOnly(inclusion)) {
+                return unsupported;
+            }
+            for (BeanPropertyDefinition definition : description.findProperties()) {
+                if (!isNullsOnly(inclusion.withOverrides(definition.findInclusion()))) {
+                    return unsupported;
                 }
-                StringBuilder resultBuilder = stringify("", mapParam);
-                if (resultBuilder.length() > 0) {
-                    resultBuilder.delete(resultBuilder.length() - 1, resultBuilder.length());
+            }
+            List<String> names = new ArrayList<>();
+            List<AnnotatedMember> accessors = new ArrayList<>();
+            Iterator<PropertyWriter> properties = serializer.properties();
+            while (properties.hasNext()) {
+                PropertyWriter property = properties.next();
+                // 视图过滤、展开属性及属性级自定义序列化无法等价处理
+                if (property.getClass() != BeanPropertyWriter.class || ((BeanPropertyWriter) property).hasSerializer()) {
+                    return unsupported;
+                }
+                AnnotatedMember accessor = property.getMember();
+                if (hasCustomSerialization(config, accessor)) {
+                    return unsupported;
+                }
+                accessor.fixAccess(true);
+                names.add(property.getName());
+                accessors.add(accessor);
+            }
+            return new BeanEncoder(names.toArray(new String[0]), accessors.toArray(new AnnotatedMember[0]));
+        }
+
+        /**
+         * 属性上是否声明了格式、序列化器、转换器等影响取值输出的注解
+         */
+        private static boolean hasCustomSerialization(SerializationConfig config, AnnotatedMember accessor) {
+            AnnotationIntrospector introspector = config.getAnnotationIntrospector();
+            JsonFormat.Value format = introspector.findFormat(accessor);
+            return (format != null && !format.equals(JsonFormat.Value.empty()))
+                    || introspector.findSerializer(accessor) != null
+                    || introspector.findContentSerializer(accessor) != null
+                    || introspector.findKeySerializer(accessor) != null
+                    || introspector.findSerializationConverter(accessor) != null
+                    || introspector.findSerializationContentConverter(accessor) != null
+                    || introspector.findPropertyTypeResolver(config, accessor, accessor.getType()) != null
+                    || (accessor.getType().isContainerType() && introspector
+                    .findPropertyContentTypeResolver(config, accessor, accessor.getType()) != null);
+        }
+
+        private static boolean isNullsOnly(JsonInclude.Value inclusion) {
+            return isNullsOnly(inclusion.getValueInclusion()) && isNullsOnly(inclusion.getContentInclusion());
+        }
+
+        private static boolean isNullsOnly(JsonInclude.Include include) {
+            return include == JsonInclude.Include.ALWAYS || include == JsonInclude.Include.NON_NULL
+                    || include == JsonInclude.Include.USE_DEFAULTS;
+        }
+
+        private boolean isSupported() {
+            return this != unsupported;
+        }
+    }
+
+    /**
+     * 参数写入器, 所有层级写入同一个缓冲区, 层级前缀使用可回退的路径缓冲区
+     */
+    private static class Writer {
+        private final StringBuilder builder = new StringBuilder(64);
+        /**
+         * 当前参数名前缀, 使用选项时为编码后的完整参数名
+         */
+        private final StringBuilder path = new StringBuilder(16);
+        private final QsOptions.ArrayFormat arrayFormat;
+        /**
+         * 逗号分隔列表的起始位置, 不在列表中时为-1
+         */
+        private int commaMark = -1;
+
+        private Writer(QsOptions options) {
+            this.arrayFormat = options == null ? QsOptions.ArrayFormat.REPEAT : options.getArrayFormat();
+        }
+
+        /**
+         * 写入map
+         *
+         * @param fromJackson 值是否来自jackson转换, jackson转换时简单类型以外的值统一交由jackson处理
+         */
+        private void writeMap(Map<?, ?> map, boolean fromJackson) {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                this.writeValue(entry.getKey().toString(), entry.getValue(), fromJackson);
+            }
+        }
+
+        private void writeBean(Object bean) {
+            BeanEncoder encoder = getBeanEncoder(bean.getClass());
+            if (!encoder.isSupported()) {
+                this.writeMap(JacksonUtils.conversion(bean, Map.class), true);
+                return;
+            }
+            for (int i = 0; i < encoder.names.length; i++) {
+                this.writeValue(encoder.names[i], encoder.accessors[i].getValue(bean), true);
+            }
+        }
+
+        private void writeValue(String key, Object value, boolean fromJackson) {
+            if (value == null) {
+                return;
+            }
+            if (fromJackson && !isSimpleValue(value) && !(value instanceof Map) && !(value instanceof Collection)) {
+                if (value.getClass().isArray() && value.getClass() != byte[].class && value.getClass() != char[].class) {
+                    this.writeCollection(key, value, true);
+                } else if (getBeanEncoder(value.getClass()).isSupported()) {
+                    this.writeNested(key, value, true);
+                } else {
+                    // jackson转换后只包含map、list及简单类型
+                    this.writeValue(key, JacksonUtils.conversion(value, Object.class), false);
                 }
-                return resultBuilder.toString();
+            } else if (value instanceof Collection || value.getClass().isArray()) {
+                this.writeCollection(key, value, fromJackson);
+            } else if (value instanceof Map) {
+                this.writeNested(key, value, fromJackson);
+            } else {
+                this.builder.append(this.path).append(key).append('=');
+                encode(this.builder, value.toString());
+                this.builder.append('&');
+            }
+        }
+
+        private void writeNested(String key, Object value, boolean fromJackson) {
+            int pathLength = this.path.length();
+            this.path.append(key).append('.');
+            if (value instanceof Map) {
+                this.writeMap((Map<?, ?>) value, fromJackson);
+            } else {
+                this.writeBean(value);
+            }
+            this.path.setLength(pathLength);
+        }
+
+        private void writeCollection(String key, Object value, boolean fromJackson) {
+            if (value instanceof Collection) {
+                for (Object element : (Collection<?>) value) {
+                    this.writeElement(key, element, fromJackson);
+                }
+            } else if (value instanceof Object[]) {
+                for (Object element : (Object[]) value) {
+                    this.writeElement(key, element, fromJackson);
+                }
+            } else {
+                int pathLength = this.path.length();
+                this.path.append(key);
+                this.writePrimitives(value);
+                this.path.setLength(pathLength);
+            }
+        }
+
+        /**
+         * 写入容器元素, map及对象元素按层级展开, 其余元素不做url编码
+         */
+        private void writeElement(String key, Object element, boolean fromJackson) {
+            if (element instanceof Map) {
+                this.writeNested(key, element, fromJackson);
+                return;
+            }
+            if (fromJackson && element != null && !isSimpleValue(element)) {
+                if (!(element instanceof Collection) && !element.getClass().isArray()
+                        && getBeanEncoder(element.getClass()).isSupported()) {
+                    this.writeNested(key, element, true);
+                    return;
+                }
+                Object converted = JacksonUtils.conversion(element, Object.class);
+                if (converted instanceof Map) {
+                    this.writeNested(key, converted, false);
+                    return;
+                }
+                element = converted;
+            }
+            this.builder.append(this.path).append(key).append('=').append(element).append('&');
+        }
+
+        /**
+         * 按选项写入对象或map的所有属性
+         */
+        private void writeFields(Object value) {
+            if (value instanceof Map) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    this.writeField(entry.getKey().toString(), entry.getValue());
+                }
+                return;
+            }
+            BeanEncoder encoder = getBeanEncoder(value.getClass());
+            if (encoder.isSupported()) {
+                for (int i = 0; i < encoder.names.length; i++) {
+                    this.writeField(encoder.names[i], encoder.accessors[i].getValue(value));
+                }
+            } else {
+                this.writeFields(JacksonUtils.conversion(value, Map.class));
+            }
+        }
+
+        private void writeField(String key, Object value) {
+            if (value == null) {
+                return;
+            }
+            int pathLength = this.path.length();
+            encode(this.path, key);
+            this.writeNode(value);
+            this.path.setLength(pathLength);
+        }
+
+        /**
+         * 按选项写入值, 参数名为当前路径
+         */
+        private void writeNode(Object value) {
+            if (isSimpleValue(value)) {
+                this.writeScalar(value.toString());
+            } else if (value instanceof char[]) {
+                this.writeScalar(new String((char[]) value));
+            } else if (value instanceof Collection || value.getClass().isArray()) {
+                if (this.arrayFormat == QsOptions.ArrayFormat.COMMA) {
+                    this.writeCommaList(value);
+                } else {
+                    this.writeArray(value);
+                }
+            } else if (value instanceof Map || getBeanEncoder(value.getClass()).isSupported()) {
+                this.path.append('.');
+                this.writeFields(value);
+            } else {
+                Object converted = JacksonUtils.conversion(value, Object.class);
+                if (converted == null) {
+                    return;
+                }
+                if (converted.getClass() == value.getClass()) {
+                    this.writeScalar(converted.toString());
+                } else {
+                    this.writeNode(converted);
+                }
+            }
+        }
+
+        private void writeScalar(String value) {
+            this.builder.append(this.path).append('=');
+            encode(this.builder, value);
+            this.builder.append('&');
+        }
+
+        private void writeArray(Object value) {
+            if (value instanceof Collection) {
+                int index = 0;
+                for (Object element : (Collection<?>) value) {
+                    this.writeArrayElement(index++, element);
+                }
+            } else if (value instanceof Object[]) {
+                Object[] elements = (Object[]) value;
+                for (int i = 0; i < elements.length; i++) {
+                    this.writeArrayElement(i, elements[i]);
+                }
+            } else {
+                this.writePrimitives(value);
+            }
+        }
+
+        private void writeArrayElement(int index, Object element) {
+            if (element == null) {
+                return;
+            }
+            int pathLength = this.path.length();
+            this.appendIndex(this.path, index);
+            this.writeNode(element);
+            this.path.setLength(pathLength);
+        }
+
+        private void appendIndex(StringBuilder target, int index) {
+            if (this.arrayFormat == QsOptions.ArrayFormat.BRACKETS) {
+                target.append("%5B%5D");
+            } else if (this.arrayFormat == QsOptions.ArrayFormat.INDICES) {
+                target.append("%5B").append(index).append("%5D");
+            }
+        }
+
+        /**
+         * 写入逗号分隔列表, 嵌套的数组展开到同一列表, map及对象元素在列表之后按层级展开
+         */
+        private void writeCommaList(Object value) {
+            int start = this.builder.length();
+            this.builder.append(this.path).append('=');
+            this.commaMark = this.builder.length();
+            List<Object> nested = this.appendCommaElements(value, null);
+            if (this.builder.length() == this.commaMark) {
+                this.builder.setLength(start);
+            } else {
+                this.builder.append('&');
+            }
+            this.commaMark = -1;
+            if (nested != null) {
+                int pathLength = this.path.length();
+                for (Object element : nested) {
+                    this.writeNode(element);
+                    this.path.setLength(pathLength);
+                }
+            }
+        }
+
+        private List<Object> appendCommaElements(Object value, List<Object> nested) {
+            if (value instanceof Collection) {
+                for (Object element : (Collection<?>) value) {
+                    nested = this.appendCommaElement(element, nested);
+                }
+            } else if (value instanceof Object[]) {
+                for (Object element : (Object[]) value) {
+                    nested = this.appendCommaElement(element, nested);
+                }
+            } else {
+                this.writePrimitives(value);
+            }
+            return nested;
+        }
+
+        private List<Object> appendCommaElement(Object element, List<Object> nested) {
+            if (element == null) {
+                return nested;
+            }
+            if (isSimpleValue(element)) {
+                this.appendCommaValue(element.toString());
+            } else if (element instanceof char[]) {
+                this.appendCommaValue(new String((char[]) element));
+            } else if (element instanceof Collection || element.getClass().isArray()) {
+                nested = this.appendCommaElements(element, nested);
+            } else if (element instanceof Map || getBeanEncoder(element.getClass()).isSupported()) {
+                if (nested == null) {
+                    nested = new ArrayList<>();
+                }
+                nested.add(element);
+            } else {
+                Object converted = JacksonUtils.conversion(element, Object.class);
+                if (converted != null && converted.getClass() != element.getClass()) {
+                    nested = this.appendCommaElement(converted, nested);
+                } else if (converted != null) {
+                    this.appendCommaValue(converted.toString());
+                }
+            }
+            return nested;
+        }
+
+        private void appendCommaValue(String value) {
+            if (this.builder.length() > this.commaMark) {
+                this.builder.append(',');
+            }
+            encode(this.builder, value);
+        }
+
+        /**
+         * 写入基本类型数组, 不装箱
+         */
+        private void writePrimitives(Object array) {
+            if (array instanceof long[]) {
+                long[] values = (long[]) array;
+                for (int i = 0; i < values.length; i++) {
+                    this.beginPrimitive(i);
+                    this.builder.append(values[i]);
+                    this.endPrimitive();
+                }
+            } else if (array instanceof int[]) {
+                int[] values = (int[]) array;
+                for (int i = 0; i < values.length; i++) {
+                    this.beginPrimitive(i);
+                    this.builder.append(values[i]);
+                    this.endPrimitive();
+                }
+            } else if (array instanceof short[]) {
+                short[] values = (short[]) array;
+                for (int i = 0; i < values.length; i++) {
+                    this.beginPrimitive(i);
+                    this.builder.append(values[i]);
+                    this.endPrimitive();
+                }
+            } else if (array instanceof byte[]) {
+                byte[] values = (byte[]) array;
+                for (int i = 0; i < values.length; i++) {
+                    this.beginPrimitive(i);
+                    this.builder.append(values[i]);
+                    this.endPrimitive();
+                }
+            } else if (array instanceof double[]) {
+                double[] values = (double[]) array;
+                for (int i = 0; i < values.length; i++) {
+                    this.beginPrimitive(i);
+                    this.builder.append(values[i]);
+                    this.endPrimitive();
+                }
+            } else if (array instanceof float[]) {
+                float[] values = (float[]) array;
+                for (int i = 0; i < values.length; i++) {
+                    this.beginPrimitive(i);
+                    this.builder.append(values[i]);
+                    this.endPrimitive();
+                }
+            } else if (array instanceof boolean[]) {
+                boolean[] values = (boolean[]) array;
+                for (int i = 0; i < values.length; i++) {
+                    this.beginPrimitive(i);
+                    this.builder.append(values[i]);
+                    this.endPrimitive();
+                }
+            } else if (array instanceof char[]) {
+                char[] values = (char[]) array;
+                for (int i = 0; i < values.length; i++) {
+                    this.beginPrimitive(i);
+                    encode(this.builder, String.valueOf(values[i]));
+                    this.endPrimitive();
+                }
+            }
+        }
+
+        private void beginPrimitive(int index) {
+            if (this.commaMark >= 0) {
+                if (this.builder.length() > this.commaMark) {
+                    this.builder.append(',');
+                }
+            } else {
+                this.builder.append(this.path);
+                this.appendIndex(this.builder, index);
+                this.builder.append('=');
+            }
+        }
+
+        private void endPrimitive() {
+            if (this.commaMark < 0) {
+                this.builder.append('&');
+            }
+        }
+
+        @Override
+        public String toString() {
+            if (this.builder.length() > 0) {
+                this.builder.setLength(this.builder.length() - 1);
             }
+            return this.builder.toString();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,46 @@
+package org.rdlinux.luava.http;
+
+/**
+ * http请求参数转换选项, 使用该选项时参数名和参数值统一url编码, 基本类型数组不装箱直接输出, null值及null元素被忽略,
+ * 对象属性使用.连接, 如a.b=1
+ */
+public class QsOptions {
+    /**
+     * 数组格式, 默认{@link ArrayFormat#REPEAT}
+     */
+    private ArrayFormat arrayFormat = ArrayFormat.REPEAT;
+
+    public ArrayFormat getArrayFormat() {
+        return this.arrayFormat;
+    }
+
+    public QsOptions setArrayFormat(ArrayFormat arrayFormat) {
+        if (arrayFormat == null) {
+            throw new IllegalArgumentException("arrayFormat can not be null");
+        }
+        this.arrayFormat = arrayFormat;
+        return this;
+    }
+
+    /**
+     * 数组及容器参数格式, 嵌套的数组按层级依次应用
+     */
+    public enum ArrayFormat {
+        /**
+         * 重复参数名: ids=1&amp;ids=2
+         */
+        REPEAT,
+        /**
+         * 参数名加中括号: ids%5B%5D=1&amp;ids%5B%5D=2, 即ids[]=1&amp;ids[]=2
+         */
+        BRACKETS,
+        /**
+         * 参数名加下标: ids%5B0%5D=1&amp;ids%5B1%5D=2, 即ids[0]=1&amp;ids[1]=2
+         */
+        INDICES,
+        /**
+         * 逗号分隔: ids=1,2, 元素中的逗号会被编码, 嵌套数组展开到同一列表, 对象元素按REPEAT格式输出
+         */
+        COMMA
+    }
+}
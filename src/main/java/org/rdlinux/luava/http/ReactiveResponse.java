@@ -0,0 +1,38 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.HttpResponse;
+import org.reactivestreams.Publisher;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 响应体以Reactive Streams发布的响应, 见{@link AsyncHttpRequestUtils#streamRequest}
+ */
+public class ReactiveResponse {
+    private final HttpResponse response;
+    private final Publisher<ByteBuffer> body;
+
+    ReactiveResponse(HttpResponse response, Publisher<ByteBuffer> body) {
+        this.response = response;
+        this.body = body;
+    }
+
+    /**
+     * 响应状态及响应头, 不包含响应体
+     */
+    public HttpResponse getResponse() {
+        return this.response;
+    }
+
+    public int getStatusCode() {
+        return this.response.getStatusLine().getStatusCode();
+    }
+
+    /**
+     * 响应体, 只能订阅一次, 必须订阅并读完或取消订阅, 否则连接不会释放;<br/>
+     * 按订阅者请求的数量从连接读取数据, 没有请求时暂停读取连接, 不会在客户端中无限缓冲
+     */
+    public Publisher<ByteBuffer> getBody() {
+        return this.body;
+    }
+}
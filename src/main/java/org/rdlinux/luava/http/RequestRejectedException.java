@@ -0,0 +1,23 @@
+package org.rdlinux.luava.http;
+
+import java.io.IOException;
+
+/**
+ * 请求未发出即被拒绝, 如路由已熔断或等待连接的请求过多, 不会重试
+ */
+public class RequestRejectedException extends IOException {
+    private static final long serialVersionUID = 1L;
+    private final String route;
+
+    public RequestRejectedException(String route, String message) {
+        super(message + ", route:" + route);
+        this.route = route;
+    }
+
+    /**
+     * 被拒绝请求的路由, 格式为scheme://host:port
+     */
+    public String getRoute() {
+        return this.route;
+    }
+}
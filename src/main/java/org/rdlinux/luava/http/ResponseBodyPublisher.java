@@ -0,0 +1,260 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 把异步响应体发布为Reactive Streams, 在io线程中按订阅者的请求数读取连接, 没有请求时暂停读取,
+ * 客户端最多缓冲一个未交付的缓冲区
+ */
+final class ResponseBodyPublisher extends AbstractAsyncResponseConsumer<Void> implements Publisher<ByteBuffer> {
+    private static final Logger log = LoggerFactory.getLogger(ResponseBodyPublisher.class);
+    private static final int bufferSize = 8192;
+    private final CompletableFuture<ReactiveResponse> result;
+    private final Queue<ByteBuffer> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicBoolean subscribed = new AtomicBoolean(false);
+    private final Subscription subscription = new BodySubscription();
+    private volatile Subscriber<? super ByteBuffer> subscriber;
+    private volatile Future<Void> future;
+    private volatile IOControl ioControl;
+    private volatile boolean suspended;
+    private volatile boolean done;
+    private volatile Throwable error;
+    /**
+     * 已取消订阅或已发送结束信号
+     */
+    private volatile boolean terminated;
+
+    private ResponseBodyPublisher(CompletableFuture<ReactiveResponse> result) {
+        this.result = result;
+    }
+
+    /**
+     * 执行请求, 收到响应头时完成
+     */
+    static CompletableFuture<ReactiveResponse> execute(CloseableHttpAsyncClient client, HttpRequestBase request) {
+        CompletableFuture<ReactiveResponse> result = new CompletableFuture<>();
+        ResponseBodyPublisher publisher = new ResponseBodyPublisher(result);
+        Future<Void> future;
+        try {
+            future = client.execute(HttpAsyncMethods.create(request), publisher, new FutureCallback<Void>() {
+                @Override
+                public void completed(Void value) {
+                    publisher.done = true;
+                    publisher.drain();
+                }
+
+                @Override
+                public void failed(Exception ex) {
+                    publisher.finish(ex);
+                }
+
+                @Override
+                public void cancelled() {
+                    publisher.finish(new CancellationException("request cancelled"));
+                }
+            });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        publisher.future = future;
+        if (publisher.terminated && !publisher.done) {
+            future.cancel(true);
+        }
+        result.whenComplete((response, throwable) -> {
+            if (result.isCancelled()) {
+                future.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber can not be null");
+        }
+        if (!this.subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("response body can only be subscribed once"));
+            return;
+        }
+        this.subscriber = subscriber;
+        subscriber.onSubscribe(this.subscription);
+        this.drain();
+    }
+
+    private void cancelExchange() {
+        Future<Void> future = this.future;
+        if (future != null && !this.done) {
+            future.cancel(true);
+        }
+    }
+
+    @Override
+    protected void onResponseReceived(HttpResponse response) {
+        this.result.complete(new ReactiveResponse(response, this));
+    }
+
+    @Override
+    protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) {
+    }
+
+    @Override
+    protected void onContentReceived(ContentDecoder decoder, IOControl ioControl) throws IOException {
+        this.ioControl = ioControl;
+        while (!this.terminated && this.demand.get() > 0 && this.queue.isEmpty()) {
+            ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+            int read = decoder.read(buffer);
+            if (read <= 0) {
+                break;
+            }
+            ((Buffer) buffer).flip();
+            this.queue.offer(buffer);
+            this.drain();
+        }
+        if (!decoder.isCompleted() && (this.demand.get() == 0 || !this.queue.isEmpty())) {
+            ioControl.suspendInput();
+            this.suspended = true;
+            // 暂停前后订阅者可能已请求数据
+            this.drain();
+        }
+    }
+
+    @Override
+    protected Void buildResult(HttpContext context) {
+        return null;
+    }
+
+    @Override
+    protected void releaseResources() {
+    }
+
+    /**
+     * 请求失败或被取消, 未收到响应头时以异常完成, 否则通知订阅者
+     */
+    private void finish(Exception ex) {
+        if (!this.result.completeExceptionally(ex)) {
+            this.error = ex;
+            this.done = true;
+            this.drain();
+        }
+    }
+
+    /**
+     * 交付缓冲区及结束信号, 同一时刻只有一个线程交付, 有请求且没有未交付的数据时恢复读取连接
+     */
+    private void drain() {
+        if (this.wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Subscriber<? super ByteBuffer> subscriber = this.subscriber;
+            if (subscriber != null && !this.terminated) {
+                while (this.demand.get() > 0 && !this.terminated) {
+                    ByteBuffer buffer = this.queue.poll();
+                    if (buffer == null) {
+                        break;
+                    }
+                    if (this.demand.get() != Long.MAX_VALUE) {
+                        this.demand.decrementAndGet();
+                    }
+                    try {
+                        subscriber.onNext(buffer);
+                    } catch (RuntimeException e) {
+                        log.error("response body subscriber failed", e);
+                        this.subscription.cancel();
+                    }
+                }
+                if (!this.terminated && this.done && this.queue.isEmpty()) {
+                    this.terminated = true;
+                    Throwable error = this.error;
+                    if (error == null) {
+                        subscriber.onComplete();
+                    } else {
+                        subscriber.onError(error);
+                    }
+                }
+                if (this.suspended && !this.terminated && this.demand.get() > 0 && this.queue.isEmpty()) {
+                    this.suspended = false;
+                    IOControl ioControl = this.ioControl;
+                    if (ioControl != null) {
+                        ioControl.requestInput();
+                    }
+                }
+            }
+            missed = this.wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private class BodySubscription implements Subscription {
+        @Override
+        public void request(long n) {
+            ResponseBodyPublisher publisher = ResponseBodyPublisher.this;
+            if (n <= 0) {
+                publisher.cancelExchange();
+                publisher.error = new IllegalArgumentException("request must be greater than 0, but was " + n);
+                publisher.done = true;
+                publisher.drain();
+                return;
+            }
+            while (true) {
+                long current = publisher.demand.get();
+                if (current == Long.MAX_VALUE) {
+                    break;
+                }
+                long next = current + n;
+                if (publisher.demand.compareAndSet(current, next < 0 ? Long.MAX_VALUE : next)) {
+                    break;
+                }
+            }
+            publisher.drain();
+        }
+
+        @Override
+        public void cancel() {
+            ResponseBodyPublisher publisher = ResponseBodyPublisher.this;
+            publisher.terminated = true;
+            publisher.queue.clear();
+            publisher.cancelExchange();
+        }
+    }
+}
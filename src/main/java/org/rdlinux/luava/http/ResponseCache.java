@@ -0,0 +1,111 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.client.cache.HttpCacheStorage;
+
+import java.io.File;
+
+/**
+ * http响应缓存配置, 遵循Cache-Control、Expires, 过期后使用ETag(If-None-Match)及Last-Modified(If-Modified-Since)重新验证;<br/>
+ * 默认缓存在内存中, 按占用字节数淘汰最久未使用的响应, 配置磁盘目录后较大的响应体写入磁盘
+ */
+public class ResponseCache {
+    private static final long defaultMaxMemoryBytes = 32 * 1024 * 1024;
+    private static final long defaultMaxObjectSize = 1024 * 1024;
+    private static final long defaultDiskThreshold = 64 * 1024;
+    private static final int defaultMaxDecodedEntries = 1024;
+    /**
+     * 内存缓存最大占用字节数, 默认32M, 包含响应体及响应头的估算大小
+     */
+    private long maxMemoryBytes = defaultMaxMemoryBytes;
+    /**
+     * 可缓存的最大响应体, 默认1M, 单位字节, 超出的响应不缓存
+     */
+    private long maxObjectSize = defaultMaxObjectSize;
+    /**
+     * 磁盘缓存目录, 默认为null, 即只使用内存缓存
+     */
+    private File diskDirectory;
+    /**
+     * 响应体超过该大小时写入磁盘, 默认64K, 单位字节, 配置了磁盘缓存目录时生效
+     */
+    private long diskThreshold = defaultDiskThreshold;
+    /**
+     * 是否作为共享缓存, 默认true, 不缓存Cache-Control: private的响应, 携带Authorization的请求只在响应明确允许共享时缓存;<br/>
+     * 客户端通常被多个调用方共用, 设为false时会缓存携带Authorization的响应并可能返回给其他调用方, 仅在客户端只服务单个用户时使用
+     */
+    private boolean sharedCache = true;
+    /**
+     * 解析后对象的最大缓存数量, 默认1024, 为0时不缓存解析后的对象, 见{@link HttpRequestUtils#getObject}
+     */
+    private int maxDecodedEntries = defaultMaxDecodedEntries;
+    /**
+     * 自定义缓存存储, 默认为null, 即使用按字节数淘汰的内存存储, 设置后maxMemoryBytes不生效
+     */
+    private HttpCacheStorage storage;
+
+    public long getMaxMemoryBytes() {
+        return this.maxMemoryBytes;
+    }
+
+    public ResponseCache setMaxMemoryBytes(long maxMemoryBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        return this;
+    }
+
+    public long getMaxObjectSize() {
+        return this.maxObjectSize;
+    }
+
+    public ResponseCache setMaxObjectSize(long maxObjectSize) {
+        this.maxObjectSize = maxObjectSize;
+        return this;
+    }
+
+    public File getDiskDirectory() {
+        return this.diskDirectory;
+    }
+
+    /**
+     * 设置磁盘缓存目录, 目录需已存在, 进程重启后目录中的文件不会被复用, 需自行清理
+     */
+    public ResponseCache setDiskDirectory(File diskDirectory) {
+        this.diskDirectory = diskDirectory;
+        return this;
+    }
+
+    public long getDiskThreshold() {
+        return this.diskThreshold;
+    }
+
+    public ResponseCache setDiskThreshold(long diskThreshold) {
+        this.diskThreshold = diskThreshold;
+        return this;
+    }
+
+    public boolean isSharedCache() {
+        return this.sharedCache;
+    }
+
+    public ResponseCache setSharedCache(boolean sharedCache) {
+        this.sharedCache = sharedCache;
+        return this;
+    }
+
+    public int getMaxDecodedEntries() {
+        return this.maxDecodedEntries;
+    }
+
+    public ResponseCache setMaxDecodedEntries(int maxDecodedEntries) {
+        this.maxDecodedEntries = maxDecodedEntries;
+        return this;
+    }
+
+    public HttpCacheStorage getStorage() {
+        return this.storage;
+    }
+
+    public ResponseCache setStorage(HttpCacheStorage storage) {
+        this.storage = storage;
+        return this;
+    }
+}
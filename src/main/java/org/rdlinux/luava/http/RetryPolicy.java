@@ -0,0 +1,166 @@
+package org.rdlinux.luava.http;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 重试策略, 同步和异步客户端共用, 最大执行次数为{@link ConnectPool#getRetryCount()};<br/>
+ * 重试间隔按指数退避并加入随机抖动, 响应包含Retry-After时使用其指定的间隔;
+ * 每个路由有独立的重试预算, 重试次数不超过正常请求数的一定比例, 避免故障时重试放大流量
+ */
+public class RetryPolicy {
+    private static final long defaultInitialBackoff = 100;
+    private static final long defaultMaxBackoff = 10000;
+    private static final double defaultMultiplier = 2;
+    private static final long defaultMaxRetryAfter = 30000;
+    private static final double defaultBudgetRatio = 0.1;
+    private static final int defaultBudgetMinPerSecond = 5;
+    private static final Set<Integer> defaultRetryStatusCodes = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList(429, 503)));
+    private static final Set<String> defaultIdempotentMethods = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("GET", "HEAD", "OPTIONS", "PUT", "DELETE", "TRACE")));
+    /**
+     * 首次重试的退避时间上限, 默认100, 单位毫秒
+     */
+    private long initialBackoff = defaultInitialBackoff;
+    /**
+     * 退避时间上限, 默认10000, 单位毫秒
+     */
+    private long maxBackoff = defaultMaxBackoff;
+    /**
+     * 退避时间增长倍数, 默认2
+     */
+    private double multiplier = defaultMultiplier;
+    /**
+     * 需要重试的响应码, 默认429、503
+     */
+    private Set<Integer> retryStatusCodes = defaultRetryStatusCodes;
+    /**
+     * Retry-After的最大等待时间, 默认30000, 单位毫秒, 超出时不重试
+     */
+    private long maxRetryAfter = defaultMaxRetryAfter;
+    /**
+     * 幂等的请求方法, 默认GET、HEAD、OPTIONS、PUT、DELETE、TRACE, 非幂等请求只在连接未建立(ConnectException、
+     * ConnectTimeoutException)时重试, 服务端未返回响应(NoHttpResponseException)时可能已处理请求, 不重试
+     */
+    private Set<String> idempotentMethods = defaultIdempotentMethods;
+    /**
+     * 是否启用重试预算, 默认true
+     */
+    private boolean budgetEnabled = true;
+    /**
+     * 每个路由的重试数占请求数的最大比例, 默认0.1
+     */
+    private double budgetRatio = defaultBudgetRatio;
+    /**
+     * 每个路由每秒至少允许的重试数, 默认5, 保证请求量较小时也能重试
+     */
+    private int budgetMinPerSecond = defaultBudgetMinPerSecond;
+
+    public long getInitialBackoff() {
+        return this.initialBackoff;
+    }
+
+    public RetryPolicy setInitialBackoff(long initialBackoff) {
+        this.initialBackoff = initialBackoff;
+        return this;
+    }
+
+    public long getMaxBackoff() {
+        return this.maxBackoff;
+    }
+
+    public RetryPolicy setMaxBackoff(long maxBackoff) {
+        this.maxBackoff = maxBackoff;
+        return this;
+    }
+
+    public double getMultiplier() {
+        return this.multiplier;
+    }
+
+    public RetryPolicy setMultiplier(double multiplier) {
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("multiplier can not be less than 1");
+        }
+        this.multiplier = multiplier;
+        return this;
+    }
+
+    public Set<Integer> getRetryStatusCodes() {
+        return this.retryStatusCodes;
+    }
+
+    public RetryPolicy setRetryStatusCodes(Collection<Integer> retryStatusCodes) {
+        this.retryStatusCodes = retryStatusCodes == null ? Collections.emptySet()
+                : Collections.unmodifiableSet(new HashSet<>(retryStatusCodes));
+        return this;
+    }
+
+    public long getMaxRetryAfter() {
+        return this.maxRetryAfter;
+    }
+
+    public RetryPolicy setMaxRetryAfter(long maxRetryAfter) {
+        this.maxRetryAfter = maxRetryAfter;
+        return this;
+    }
+
+    public Set<String> getIdempotentMethods() {
+        return this.idempotentMethods;
+    }
+
+    public RetryPolicy setIdempotentMethods(Collection<String> idempotentMethods) {
+        Set<String> methods = new HashSet<>();
+        if (idempotentMethods != null) {
+            for (String method : idempotentMethods) {
+                methods.add(method.toUpperCase(Locale.ROOT));
+            }
+        }
+        this.idempotentMethods = Collections.unmodifiableSet(methods);
+        return this;
+    }
+
+    public boolean isBudgetEnabled() {
+        return this.budgetEnabled;
+    }
+
+    public RetryPolicy setBudgetEnabled(boolean budgetEnabled) {
+        this.budgetEnabled = budgetEnabled;
+        return this;
+    }
+
+    public double getBudgetRatio() {
+        return this.budgetRatio;
+    }
+
+    public RetryPolicy setBudgetRatio(double budgetRatio) {
+        this.budgetRatio = budgetRatio;
+        return this;
+    }
+
+    public int getBudgetMinPerSecond() {
+        return this.budgetMinPerSecond;
+    }
+
+    public RetryPolicy setBudgetMinPerSecond(int budgetMinPerSecond) {
+        this.budgetMinPerSecond = budgetMinPerSecond;
+        return this;
+    }
+
+    boolean isIdempotent(String method) {
+        return this.idempotentMethods.contains(method.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * 计算第executionCount次执行失败后的退避时间, 在[0, min(maxBackoff, initialBackoff * multiplier^(n-1))]内随机
+     */
+    long backoff(int executionCount, double random) {
+        double ceiling = this.initialBackoff * Math.pow(this.multiplier, Math.max(0, executionCount - 1));
+        return (long) (Math.min(ceiling, this.maxBackoff) * random);
+    }
+}
@@ -0,0 +1,169 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 重试判断及重试预算, 同一连接池配置创建的同步和异步客户端共用
+ */
+final class RetrySupport {
+    private static final Logger log = LoggerFactory.getLogger(RetrySupport.class);
+    /**
+     * 未设置重试策略时使用, 只重试请求异常, 不重试响应码
+     */
+    private static final RetryPolicy exceptionOnlyPolicy = new RetryPolicy().setRetryStatusCodes(null);
+    /**
+     * 异步重试及对冲请求的延时调度器, 只负责提交请求
+     */
+    private static volatile ScheduledExecutorService scheduler;
+    private final ConnectPool connectPool;
+    private final ConcurrentMap<String, TokenBudget> budgets = new ConcurrentHashMap<>();
+
+    RetrySupport(ConnectPool connectPool) {
+        this.connectPool = connectPool;
+    }
+
+    /**
+     * 延时执行异步请求
+     */
+    static void schedule(Runnable task, long delayMillis) {
+        if (scheduler == null) {
+            synchronized (RetrySupport.class) {
+                if (scheduler == null) {
+                    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                            new NamedThreadFactory("http-scheduler"));
+                    executor.setRemoveOnCancelPolicy(true);
+                    scheduler = executor;
+                }
+            }
+        }
+        scheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private RetryPolicy getPolicy() {
+        RetryPolicy policy = this.connectPool.getRetryPolicy();
+        return policy == null ? exceptionOnlyPolicy : policy;
+    }
+
+    /**
+     * 记录一次请求, 为该路由的重试预算累积额度, 重试不调用
+     */
+    void onRequest(String route) {
+        RetryPolicy policy = this.getPolicy();
+        if (policy.isBudgetEnabled()) {
+            this.getBudget(route, policy).deposit(policy.getBudgetRatio());
+        }
+    }
+
+    /**
+     * 请求异常后的重试间隔
+     *
+     * @param executionCount 已执行次数
+     * @return 重试间隔, 单位毫秒, 不重试时返回-1
+     */
+    long retryDelay(HttpRequest request, IOException exception, int executionCount, String route) {
+        if (executionCount >= this.connectPool.getRetryCount() || !HttpRequestFactory.isRepeatable(request)) {
+            return -1;
+        }
+        RetryPolicy policy = this.getPolicy();
+        if (!isRetryable(policy, request, exception)) {
+            return -1;
+        }
+        return this.acquire(policy, route, policy.backoff(executionCount, ThreadLocalRandom.current().nextDouble()));
+    }
+
+    /**
+     * 收到响应后的重试间隔, 响应码需在重试响应码中且请求幂等
+     *
+     * @param executionCount 已执行次数
+     * @return 重试间隔, 单位毫秒, 不重试时返回-1
+     */
+    long retryDelay(HttpRequest request, HttpResponse response, int executionCount, String route) {
+        if (executionCount >= this.connectPool.getRetryCount() || !HttpRequestFactory.isRepeatable(request)) {
+            return -1;
+        }
+        RetryPolicy policy = this.getPolicy();
+        if (!policy.getRetryStatusCodes().contains(response.getStatusLine().getStatusCode())
+                || !policy.isIdempotent(request.getRequestLine().getMethod())) {
+            return -1;
+        }
+        long delay = policy.backoff(executionCount, ThreadLocalRandom.current().nextDouble());
+        long retryAfter = parseRetryAfter(response.getFirstHeader(HttpHeaders.RETRY_AFTER));
+        if (retryAfter > policy.getMaxRetryAfter()) {
+            return -1;
+        }
+        if (retryAfter >= 0) {
+            delay = retryAfter;
+        }
+        return this.acquire(policy, route, delay);
+    }
+
+    /**
+     * 连接未建立时请求一定未发出, 任何方法都可重试; 其他异常时服务端可能已处理请求, 只重试幂等方法
+     */
+    static boolean isRetryable(RetryPolicy policy, HttpRequest request, IOException exception) {
+        if (exception instanceof ConnectException || exception instanceof ConnectTimeoutException) {
+            return true;
+        }
+        // 超时及中断、目标主机不存在、ssl异常不重试
+        if (exception instanceof InterruptedIOException || exception instanceof UnknownHostException
+                || exception instanceof SSLException) {
+            return false;
+        }
+        // 包括NoHttpResponseException, 通常是复用了已被服务端关闭的连接, 但服务端也可能已处理请求后断开
+        return policy.isIdempotent(request.getRequestLine().getMethod());
+    }
+
+    private long acquire(RetryPolicy policy, String route, long delay) {
+        if (policy.isBudgetEnabled() && !this.getBudget(route, policy).tryAcquire()) {
+            if (log.isDebugEnabled()) {
+                log.debug("retry budget exhausted, route:{}", route);
+            }
+            return -1;
+        }
+        HttpMetrics metrics = this.connectPool.getMetrics();
+        if (metrics != null) {
+            metrics.recordRetry(route);
+        }
+        return delay;
+    }
+
+    private TokenBudget getBudget(String route, RetryPolicy policy) {
+        return this.budgets.computeIfAbsent(route, k -> new TokenBudget(policy.getBudgetMinPerSecond()));
+    }
+
+    /**
+     * 解析Retry-After, 支持秒数及http日期, 无法解析时返回-1
+     */
+    static long parseRetryAfter(Header header) {
+        if (header == null || header.getValue() == null) {
+            return -1;
+        }
+        String value = header.getValue().trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value);
+            return date == null ? -1 : Math.max(0, date.getTime() - System.currentTimeMillis());
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.routing.RouteInfo;
+
+import java.util.Locale;
+
+/**
+ * 路由级连接池配置, 路由由scheme、host、port确定, 未配置的属性使用{@link ConnectPool}中的全局配置
+ */
+public class RouteConfig {
+    private final String scheme;
+    private final String host;
+    private final int port;
+    /**
+     * 该路由最大活跃连接数, 为null时使用singleMaxActive
+     */
+    private Integer maxActive;
+    /**
+     * 该路由连接超时时间, 单位毫秒, 为null时使用connectTimeout
+     */
+    private Integer connectTimeout;
+    /**
+     * 该路由读取超时时间, 单位毫秒, 为null时使用socketTimeout
+     */
+    private Integer socketTimeout;
+
+    /**
+     * @param scheme 协议, http或https
+     * @param host   主机
+     * @param port   端口, 小于等于0时使用协议默认端口
+     */
+    public RouteConfig(String scheme, String host, int port) {
+        if (scheme == null || scheme.isEmpty()) {
+            throw new IllegalArgumentException("scheme can not be empty");
+        }
+        if (host == null || host.isEmpty()) {
+            throw new IllegalArgumentException("host can not be empty");
+        }
+        this.scheme = scheme.toLowerCase(Locale.ROOT);
+        this.host = host.toLowerCase(Locale.ROOT);
+        this.port = resolvePort(this.scheme, port);
+    }
+
+    static int resolvePort(String scheme, int port) {
+        if (port > 0) {
+            return port;
+        }
+        return "https".equalsIgnoreCase(scheme) ? 443 : 80;
+    }
+
+    static String routeKey(String scheme, String host, int port) {
+        return scheme.toLowerCase(Locale.ROOT) + "://" + host.toLowerCase(Locale.ROOT) + ":" + resolvePort(scheme, port);
+    }
+
+    static String routeKey(RouteInfo route) {
+        HttpHost target = route.getTargetHost();
+        return routeKey(target.getSchemeName(), target.getHostName(), target.getPort());
+    }
+
+    String getRouteKey() {
+        return routeKey(this.scheme, this.host, this.port);
+    }
+
+    /**
+     * 转换为连接池使用的路由, 与默认路由规划器生成的直连路由一致
+     */
+    HttpRoute toHttpRoute() {
+        return new HttpRoute(this.toHttpHost(), null, "https".equals(this.scheme));
+    }
+
+    HttpHost toHttpHost() {
+        return new HttpHost(this.host, this.port, this.scheme);
+    }
+
+    public String getScheme() {
+        return this.scheme;
+    }
+
+    public String getHost() {
+        return this.host;
+    }
+
+    public int getPort() {
+        return this.port;
+    }
+
+    public Integer getMaxActive() {
+        return this.maxActive;
+    }
+
+    public RouteConfig setMaxActive(Integer maxActive) {
+        this.maxActive = maxActive;
+        return this;
+    }
+
+    public Integer getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    public RouteConfig setConnectTimeout(Integer connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    public Integer getSocketTimeout() {
+        return this.socketTimeout;
+    }
+
+    public RouteConfig setSocketTimeout(Integer socketTimeout) {
+        this.socketTimeout = socketTimeout;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "RouteConfig{" + this.getRouteKey() + ", maxActive=" + this.maxActive + ", connectTimeout="
+                + this.connectTimeout + ", socketTimeout=" + this.socketTimeout + "}";
+    }
+}
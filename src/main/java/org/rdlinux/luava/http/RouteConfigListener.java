@@ -0,0 +1,15 @@
+package org.rdlinux.luava.http;
+
+/**
+ * 路由配置变更监听, 用于把运行时的路由配置变更应用到已创建的连接池
+ */
+interface RouteConfigListener {
+    /**
+     * 路由配置变更
+     *
+     * @param routeConfig 变更的路由配置
+     * @param removed     是否为移除配置
+     * @return 监听是否仍然有效, 返回false时将被移除
+     */
+    boolean onChange(RouteConfig routeConfig, boolean removed);
+}
@@ -0,0 +1,113 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路由级熔断及过载保护, 请求前检查等待连接的请求数及熔断状态, 被拒绝的请求直接失败;
+ * 同一连接池配置创建的同步和异步客户端共用熔断状态
+ */
+final class RouteGuard {
+    private final ConnectPool connectPool;
+    private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    RouteGuard(ConnectPool connectPool) {
+        this.connectPool = connectPool;
+    }
+
+    /**
+     * 请求前检查
+     *
+     * @param route 路由, 格式为scheme://host:port
+     * @param uri   请求地址
+     * @param pool  客户端的连接池, 为null时不检查等待连接的请求数
+     * @throws RequestRejectedException 等待连接的请求数超过阈值或路由已熔断
+     */
+    void acquire(String route, URI uri, ConnPoolControl<HttpRoute> pool) throws RequestRejectedException {
+        int maxPending = this.connectPool.getMaxPendingPerRoute();
+        if (maxPending > 0 && pool != null && pool.getStats(httpRoute(uri)).getPending() >= maxPending) {
+            throw new RequestRejectedException(route, "too many requests waiting for connection");
+        }
+        CircuitBreaker breaker = this.getBreaker(route);
+        if (breaker != null && !breaker.tryAcquire()) {
+            throw new RequestRejectedException(route, "circuit breaker is open");
+        }
+    }
+
+    /**
+     * 是否配置了熔断策略或等待连接的请求数限制
+     */
+    boolean isGuarded() {
+        return this.connectPool.getCircuitBreakerPolicy() != null || this.connectPool.getMaxPendingPerRoute() > 0;
+    }
+
+    /**
+     * 请求是否可能被放行, 不占用熔断器许可, 用于选择服务实例
+     *
+     * @param uri  请求地址
+     * @param pool 客户端的连接池, 为null时不检查等待连接的请求数
+     */
+    boolean isAvailable(URI uri, ConnPoolControl<HttpRoute> pool) {
+        int maxPending = this.connectPool.getMaxPendingPerRoute();
+        if (maxPending > 0 && pool != null && pool.getStats(httpRoute(uri)).getPending() >= maxPending) {
+            return false;
+        }
+        CircuitBreaker breaker = this.getBreaker(routeKey(uri));
+        return breaker == null || breaker.isCallPermitted();
+    }
+
+    /**
+     * 记录请求结果
+     *
+     * @param status        响应码, 请求异常时为-1
+     * @param durationNanos 耗时, 单位纳秒
+     */
+    void onComplete(String route, int status, long durationNanos) {
+        CircuitBreaker breaker = this.getBreaker(route);
+        if (breaker != null) {
+            breaker.record(status < 0 || status >= 500, TimeUnit.NANOSECONDS.toMillis(durationNanos));
+        }
+    }
+
+    /**
+     * 请求未完成即结束, 如被取消, 不记录结果, 只归还熔断器许可
+     */
+    void onCancel(String route) {
+        CircuitBreaker breaker = this.getBreaker(route);
+        if (breaker != null) {
+            breaker.release();
+        }
+    }
+
+    /**
+     * 获取路由的熔断器, 未配置熔断策略时返回null
+     */
+    CircuitBreaker getBreaker(String route) {
+        CircuitBreakerPolicy policy = this.connectPool.getCircuitBreakerPolicy();
+        if (policy == null) {
+            return null;
+        }
+        return this.breakers.computeIfAbsent(route, k -> new CircuitBreaker(policy));
+    }
+
+    static String routeKey(URI uri) {
+        // lb://服务名中的服务名可能不是合法的主机名
+        String host = uri.getHost() == null ? uri.getAuthority() : uri.getHost();
+        return RouteConfig.routeKey(uri.getScheme(), host, uri.getPort());
+    }
+
+    /**
+     * 转换为连接池使用的路由, 与默认路由规划器生成的直连路由一致
+     */
+    private static HttpRoute httpRoute(URI uri) {
+        String scheme = uri.getScheme();
+        HttpHost target = new HttpHost(uri.getHost(), RouteConfig.resolvePort(scheme, uri.getPort()), scheme);
+        return new HttpRoute(target, null, "https".equalsIgnoreCase(scheme));
+    }
+}
@@ -0,0 +1,87 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * {@link HttpRequestUtils#submit}任务的路由级并发许可, 许可数与连接池中该路由的最大连接数一致;<br/>
+ * 任务线程获取连接前先按路由排队获取许可, 等待不受connectionRequestTimeout限制, 可被中断, 连接释放时归还许可
+ */
+final class RoutePermits {
+    private static final long pollInterval = 100;
+    private final ConnPoolControl<HttpRoute> pool;
+    private final ConcurrentMap<HttpRoute, RoutePermit> permits = new ConcurrentHashMap<>();
+    private final ConcurrentMap<HttpClientConnection, Semaphore> leased = new ConcurrentHashMap<>();
+
+    RoutePermits(ConnPoolControl<HttpRoute> pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 任务线程获取路由许可, 其他线程不需要许可
+     *
+     * @param cancelled 获取连接是否已取消
+     * @return 获取到的许可, 非任务线程或已取消时返回null
+     */
+    Semaphore acquire(HttpRoute route, BooleanSupplier cancelled) throws InterruptedException {
+        if (!TaskExecutor.isRouteLimited()) {
+            return null;
+        }
+        Semaphore semaphore = this.getPermit(route);
+        while (!semaphore.tryAcquire(pollInterval, TimeUnit.MILLISECONDS)) {
+            if (cancelled.getAsBoolean()) {
+                return null;
+            }
+        }
+        return semaphore;
+    }
+
+    /**
+     * 记录连接占用的许可
+     */
+    void leased(HttpClientConnection connection, Semaphore semaphore) {
+        if (semaphore != null) {
+            this.leased.put(connection, semaphore);
+        }
+    }
+
+    /**
+     * 连接释放时归还许可
+     */
+    void release(HttpClientConnection connection) {
+        Semaphore semaphore = this.leased.remove(connection);
+        if (semaphore != null) {
+            semaphore.release();
+        }
+    }
+
+    /**
+     * 获取路由的许可, 路由最大连接数变更后重新创建, 已占用旧许可的连接释放时归还到旧许可
+     */
+    private Semaphore getPermit(HttpRoute route) {
+        int maxActive = Math.max(1, this.pool.getMaxPerRoute(route));
+        RoutePermit permit = this.permits.get(route);
+        if (permit == null || permit.maxActive != maxActive) {
+            permit = this.permits.compute(route, (k, v) -> v != null && v.maxActive == maxActive ? v
+                    : new RoutePermit(maxActive));
+        }
+        return permit.semaphore;
+    }
+
+    private static class RoutePermit {
+        private final int maxActive;
+        private final Semaphore semaphore;
+
+        private RoutePermit(int maxActive) {
+            this.maxActive = maxActive;
+            this.semaphore = new Semaphore(maxActive);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.rdlinux.luava.http;
+
+/**
+ * 服务端推送事件(Server-Sent Events)
+ */
+public final class ServerSentEvent {
+    private final String id;
+    private final String event;
+    private final String data;
+
+    ServerSentEvent(String id, String event, String data) {
+        this.id = id;
+        this.event = event;
+        this.data = data;
+    }
+
+    /**
+     * 事件id, 为该事件发送时的最后事件id, 未设置过时为空字符串
+     */
+    public String getId() {
+        return this.id;
+    }
+
+    /**
+     * 事件类型, 未指定时为message
+     */
+    public String getEvent() {
+        return this.event;
+    }
+
+    /**
+     * 事件数据, 多个data行以换行连接
+     */
+    public String getData() {
+        return this.data;
+    }
+
+    @Override
+    public String toString() {
+        return "ServerSentEvent{id=" + this.id + ", event=" + this.event + ", data=" + this.data + "}";
+    }
+}
@@ -0,0 +1,198 @@
+package org.rdlinux.luava.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 逻辑服务配置, 请求地址为lb://服务名/路径时, 按负载均衡策略选择服务实例并替换为实例地址;<br/>
+ * 每个实例使用各自路由的连接池及熔断状态, 可通过{@link RouteConfig}单独配置;
+ * 实例连续失败达到阈值时被剔除ejectionTime毫秒, 请求异常及5xx响应视为失败
+ */
+public class ServiceConfig {
+    private static final Logger log = LoggerFactory.getLogger(ServiceConfig.class);
+    private static final int defaultConsecutiveFailures = 5;
+    private static final long defaultEjectionTime = 30000;
+    private static final int defaultMaxEjectionPercent = 50;
+    private final String name;
+    private volatile List<ServiceEndpoint> endpoints = Collections.emptyList();
+    /**
+     * 负载均衡策略, 默认轮询
+     */
+    private LoadBalancer loadBalancer = LoadBalancers.roundRobin();
+    /**
+     * 剔除实例的连续失败次数, 默认5, 小于等于0时不剔除
+     */
+    private int consecutiveFailures = defaultConsecutiveFailures;
+    /**
+     * 剔除时间, 默认30000, 单位毫秒
+     */
+    private long ejectionTime = defaultEjectionTime;
+    /**
+     * 最多剔除的实例百分比, 默认50
+     */
+    private int maxEjectionPercent = defaultMaxEjectionPercent;
+
+    /**
+     * @param name      服务名, 对应lb://服务名/路径中的服务名
+     * @param endpoints 实例地址, 如http://10.0.0.1:8080, 可带路径前缀
+     */
+    public ServiceConfig(String name, Collection<String> endpoints) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("name can not be empty");
+        }
+        this.name = name;
+        this.setEndpoints(endpoints);
+    }
+
+    /**
+     * 选择服务实例, 所有实例均被剔除时从全部实例中选择
+     */
+    ServiceEndpoint choose() {
+        return this.choose(null);
+    }
+
+    /**
+     * 选择服务实例, 优先选择未剔除且可用的实例, 都不可用时从未剔除的实例中选择, 所有实例均被剔除时从全部实例中选择
+     *
+     * @param available 实例是否可用, 如路由未熔断, 可为null
+     */
+    ServiceEndpoint choose(Predicate<ServiceEndpoint> available) {
+        List<ServiceEndpoint> endpoints = this.endpoints;
+        if (endpoints.isEmpty()) {
+            throw new IllegalStateException("no endpoint for service: " + this.name);
+        }
+        long now = System.currentTimeMillis();
+        List<ServiceEndpoint> candidates = null;
+        List<ServiceEndpoint> unavailable = null;
+        for (int i = 0; i < endpoints.size(); i++) {
+            ServiceEndpoint endpoint = endpoints.get(i);
+            boolean ejected = endpoint.isEjected(now);
+            if (!ejected && available != null && !available.test(endpoint)) {
+                if (unavailable == null) {
+                    unavailable = new ArrayList<>();
+                }
+                unavailable.add(endpoint);
+                ejected = true;
+            }
+            if (ejected) {
+                if (candidates == null) {
+                    candidates = new ArrayList<>(endpoints.subList(0, i));
+                }
+            } else if (candidates != null) {
+                candidates.add(endpoint);
+            }
+        }
+        if (candidates == null) {
+            candidates = endpoints;
+        } else if (candidates.isEmpty()) {
+            candidates = unavailable == null ? endpoints : unavailable;
+        }
+        return this.loadBalancer.choose(candidates);
+    }
+
+    /**
+     * 记录请求结果, 连续失败达到阈值且剔除比例未超限时剔除该实例
+     *
+     * @param status 响应码, 请求异常时为-1
+     */
+    void onComplete(ServiceEndpoint endpoint, int status, long durationNanos) {
+        int failures = endpoint.record(status < 0 || status >= 500, durationNanos);
+        if (this.consecutiveFailures <= 0 || failures < this.consecutiveFailures) {
+            return;
+        }
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            List<ServiceEndpoint> endpoints = this.endpoints;
+            int ejected = 0;
+            for (ServiceEndpoint item : endpoints) {
+                if (item.isEjected(now)) {
+                    ejected++;
+                }
+            }
+            if (endpoint.isEjected(now) || (ejected + 1) * 100 > endpoints.size() * this.maxEjectionPercent) {
+                return;
+            }
+            endpoint.eject(now + this.ejectionTime);
+        }
+        log.warn("endpoint ejected, service:{}, endpoint:{}", this.name, endpoint.getKey());
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public List<ServiceEndpoint> getEndpoints() {
+        return this.endpoints;
+    }
+
+    /**
+     * 替换服务实例, 地址不变的实例保留统计数据, 可在运行时调用
+     */
+    public ServiceConfig setEndpoints(Collection<String> endpoints) {
+        Map<String, ServiceEndpoint> existing = new HashMap<>();
+        for (ServiceEndpoint endpoint : this.endpoints) {
+            existing.put(endpoint.getKey(), endpoint);
+        }
+        List<ServiceEndpoint> list = new ArrayList<>();
+        if (endpoints != null) {
+            for (String url : endpoints) {
+                ServiceEndpoint endpoint = new ServiceEndpoint(this, url);
+                list.add(existing.getOrDefault(endpoint.getKey(), endpoint));
+            }
+        }
+        this.endpoints = Collections.unmodifiableList(list);
+        return this;
+    }
+
+    public LoadBalancer getLoadBalancer() {
+        return this.loadBalancer;
+    }
+
+    public ServiceConfig setLoadBalancer(LoadBalancer loadBalancer) {
+        if (loadBalancer == null) {
+            throw new IllegalArgumentException("loadBalancer can not be null");
+        }
+        this.loadBalancer = loadBalancer;
+        return this;
+    }
+
+    public int getConsecutiveFailures() {
+        return this.consecutiveFailures;
+    }
+
+    public ServiceConfig setConsecutiveFailures(int consecutiveFailures) {
+        this.consecutiveFailures = consecutiveFailures;
+        return this;
+    }
+
+    public long getEjectionTime() {
+        return this.ejectionTime;
+    }
+
+    public ServiceConfig setEjectionTime(long ejectionTime) {
+        this.ejectionTime = ejectionTime;
+        return this;
+    }
+
+    public int getMaxEjectionPercent() {
+        return this.maxEjectionPercent;
+    }
+
+    public ServiceConfig setMaxEjectionPercent(int maxEjectionPercent) {
+        this.maxEjectionPercent = maxEjectionPercent;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceConfig{" + this.name + ", endpoints=" + this.endpoints + "}";
+    }
+}
@@ -0,0 +1,167 @@
+package org.rdlinux.luava.http;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 服务实例, 记录进行中的请求数、平均耗时及连续失败次数, 供{@link LoadBalancer}选择实例及剔除异常实例
+ */
+public final class ServiceEndpoint {
+    /**
+     * 平均耗时的衰减系数, 越大越偏向最近的请求
+     */
+    private static final double latencyWeight = 0.2;
+    private final ServiceConfig service;
+    private final String scheme;
+    /**
+     * 主机, ipv6地址带方括号
+     */
+    private final String host;
+    private final int port;
+    /**
+     * 路径前缀, 不以/结尾
+     */
+    private final String basePath;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile double latency;
+    private volatile long ejectedUntil;
+
+    /**
+     * @param url 实例地址, 如http://10.0.0.1:8080, 可带路径前缀
+     */
+    ServiceEndpoint(ServiceConfig service, String url) {
+        this.service = service;
+        URI uri = URI.create(url);
+        if (uri.getScheme() == null || uri.getHost() == null) {
+            throw new IllegalArgumentException("invalid endpoint: " + url);
+        }
+        this.scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        this.host = uri.getHost().toLowerCase(Locale.ROOT);
+        this.port = uri.getPort();
+        String path = uri.getRawPath();
+        while (path != null && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        this.basePath = path == null ? "" : path;
+    }
+
+    /**
+     * 把lb://服务名/路径形式的地址转换为该实例的地址
+     */
+    URI resolve(URI uri) {
+        StringBuilder builder = new StringBuilder(this.scheme).append("://").append(this.host);
+        if (this.port > 0) {
+            builder.append(':').append(this.port);
+        }
+        builder.append(this.basePath);
+        String path = uri.getRawPath();
+        if (path != null && !path.isEmpty()) {
+            builder.append(path);
+        } else if (this.basePath.isEmpty()) {
+            builder.append('/');
+        }
+        if (uri.getRawQuery() != null) {
+            builder.append('?').append(uri.getRawQuery());
+        }
+        if (uri.getRawFragment() != null) {
+            builder.append('#').append(uri.getRawFragment());
+        }
+        return URI.create(builder.toString());
+    }
+
+    void onStart() {
+        this.inFlight.incrementAndGet();
+    }
+
+    /**
+     * 请求被取消, 不计入统计
+     */
+    void onCancel() {
+        this.inFlight.decrementAndGet();
+    }
+
+    /**
+     * 请求完成, 由所属服务记录结果并判断是否剔除
+     *
+     * @param status 响应码, 请求异常时为-1
+     */
+    void onComplete(int status, long durationNanos) {
+        this.service.onComplete(this, status, durationNanos);
+    }
+
+    /**
+     * 记录请求结果
+     *
+     * @return 本次失败后的连续失败次数, 成功时返回0
+     */
+    int record(boolean failed, long durationNanos) {
+        this.inFlight.decrementAndGet();
+        if (failed) {
+            return this.consecutiveFailures.incrementAndGet();
+        }
+        this.consecutiveFailures.set(0);
+        double millis = (double) durationNanos / TimeUnit.MILLISECONDS.toNanos(1);
+        double current = this.latency;
+        this.latency = current == 0 ? millis : current + (millis - current) * latencyWeight;
+        return 0;
+    }
+
+    void eject(long untilMillis) {
+        this.consecutiveFailures.set(0);
+        this.ejectedUntil = untilMillis;
+    }
+
+    boolean isEjected(long nowMillis) {
+        return this.ejectedUntil > nowMillis;
+    }
+
+    String getKey() {
+        return this.scheme + "://" + this.host + ":" + RouteConfig.resolvePort(this.scheme, this.port)
+                + this.basePath;
+    }
+
+    public String getScheme() {
+        return this.scheme;
+    }
+
+    public String getHost() {
+        return this.host;
+    }
+
+    /**
+     * 端口, 未指定时为-1
+     */
+    public int getPort() {
+        return this.port;
+    }
+
+    /**
+     * 进行中的请求数
+     */
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * 成功请求的指数加权平均耗时, 单位毫秒, 尚无成功请求时为0
+     */
+    public double getLatency() {
+        return this.latency;
+    }
+
+    /**
+     * 是否已被剔除
+     */
+    public boolean isEjected() {
+        return this.isEjected(System.currentTimeMillis());
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceEndpoint{" + this.getKey() + ", inFlight=" + this.inFlight + ", latency=" + this.latency
+                + "}";
+    }
+}
@@ -0,0 +1,45 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * 共享客户端的视图, 每次执行时从supplier获取实际客户端; close不关闭实际客户端, 避免一个调用方关闭后影响其它使用者
+ */
+@SuppressWarnings("deprecation")
+final class SharedHttpClient extends CloseableHttpClient {
+    private final Supplier<CloseableHttpClient> supplier;
+
+    SharedHttpClient(Supplier<CloseableHttpClient> supplier) {
+        this.supplier = supplier;
+    }
+
+    @Override
+    protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context)
+            throws IOException {
+        return this.supplier.get().execute(target, request, context);
+    }
+
+    @Override
+    public org.apache.http.params.HttpParams getParams() {
+        return this.supplier.get().getParams();
+    }
+
+    @Override
+    public org.apache.http.conn.ClientConnectionManager getConnectionManager() {
+        return this.supplier.get().getConnectionManager();
+    }
+
+    /**
+     * 不关闭共享客户端, 需关闭时使用{@link HttpRequestUtils#closeDefaultHttpClient()}
+     */
+    @Override
+    public void close() {
+    }
+}
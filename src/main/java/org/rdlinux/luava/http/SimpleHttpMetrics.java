@@ -0,0 +1,276 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于内存的指标采集实现, 不依赖第三方库, 耗时使用固定桶直方图统计
+ */
+public class SimpleHttpMetrics implements HttpMetrics {
+    /**
+     * 连接池汇总状态的key
+     */
+    public static final String totalStatsKey = "total";
+    private final CopyOnWriteArrayList<BoundPool> pools = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<String, Histogram> leaseWait = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> leaseFailures = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Histogram> requestLatency = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> bytesSent = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> bytesReceived = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> retries = new ConcurrentHashMap<>();
+
+    private static Map<String, Long> sum(ConcurrentMap<String, LongAdder> adders) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        adders.forEach((key, adder) -> result.put(key, adder.sum()));
+        return result;
+    }
+
+    /**
+     * 列出连接池中的所有路由, 连接池管理对象提供getRoutes方法但未在ConnPoolControl接口中声明
+     */
+    private static Set<HttpRoute> getRoutes(ConnPoolControl<HttpRoute> pool) {
+        if (pool instanceof PoolingHttpClientConnectionManager) {
+            return ((PoolingHttpClientConnectionManager) pool).getRoutes();
+        } else if (pool instanceof PoolingNHttpClientConnectionManager) {
+            return ((PoolingNHttpClientConnectionManager) pool).getRoutes();
+        }
+        return Collections.emptySet();
+    }
+
+    @Override
+    public void bindConnectionPool(String name, ConnPoolControl<HttpRoute> pool) {
+        this.pools.add(new BoundPool(name, pool));
+    }
+
+    @Override
+    public void recordLeaseWait(String route, long waitNanos, boolean success) {
+        this.leaseWait.computeIfAbsent(route, k -> new Histogram()).record(waitNanos);
+        if (!success) {
+            this.leaseFailures.computeIfAbsent(route, k -> new LongAdder()).increment();
+        }
+    }
+
+    @Override
+    public void recordRequest(String method, String host, int status, long durationNanos) {
+        String key = method + " " + host + " " + status;
+        this.requestLatency.computeIfAbsent(key, k -> new Histogram()).record(durationNanos);
+    }
+
+    @Override
+    public void recordBytesSent(String host, long bytes) {
+        this.bytesSent.computeIfAbsent(host, k -> new LongAdder()).add(bytes);
+    }
+
+    @Override
+    public void recordBytesReceived(String host, long bytes) {
+        this.bytesReceived.computeIfAbsent(host, k -> new LongAdder()).add(bytes);
+    }
+
+    @Override
+    public void recordRetry(String route) {
+        this.retries.computeIfAbsent(route, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * 获取各连接池当前状态, 外层key为连接池名称, 内层key为路由, 汇总状态的key为{@link #totalStatsKey}
+     */
+    public Map<String, Map<String, PoolStats>> getPoolStats() {
+        Map<String, Map<String, PoolStats>> result = new LinkedHashMap<>();
+        for (BoundPool boundPool : this.pools) {
+            ConnPoolControl<HttpRoute> pool = boundPool.pool.get();
+            if (pool == null) {
+                this.pools.remove(boundPool);
+                continue;
+            }
+            Map<String, PoolStats> routeStats = new LinkedHashMap<>();
+            routeStats.put(totalStatsKey, pool.getTotalStats());
+            for (HttpRoute route : getRoutes(pool)) {
+                routeStats.put(RouteConfig.routeKey(route), pool.getStats(route));
+            }
+            result.put(boundPool.name, routeStats);
+        }
+        return result;
+    }
+
+    /**
+     * 获取连接等待时间, key为路由
+     */
+    public Map<String, Histogram> getLeaseWait() {
+        return new LinkedHashMap<>(this.leaseWait);
+    }
+
+    /**
+     * 获取获取连接失败次数, key为路由
+     */
+    public Map<String, Long> getLeaseFailures() {
+        return sum(this.leaseFailures);
+    }
+
+    /**
+     * 获取请求耗时, key为: 请求方法 主机 响应码
+     */
+    public Map<String, Histogram> getRequestLatency() {
+        return new LinkedHashMap<>(this.requestLatency);
+    }
+
+    /**
+     * 获取发送字节数, key为主机
+     */
+    public Map<String, Long> getBytesSent() {
+        return sum(this.bytesSent);
+    }
+
+    /**
+     * 获取接收字节数, key为主机
+     */
+    public Map<String, Long> getBytesReceived() {
+        return sum(this.bytesReceived);
+    }
+
+    /**
+     * 获取重试次数, key为路由
+     */
+    public Map<String, Long> getRetries() {
+        return sum(this.retries);
+    }
+
+    /**
+     * 清空已采集的耗时及计数指标, 连接池绑定保留
+     */
+    public void reset() {
+        this.leaseWait.clear();
+        this.leaseFailures.clear();
+        this.requestLatency.clear();
+        this.bytesSent.clear();
+        this.bytesReceived.clear();
+        this.retries.clear();
+    }
+
+    private static class BoundPool {
+        private final String name;
+        private final WeakReference<ConnPoolControl<HttpRoute>> pool;
+
+        private BoundPool(String name, ConnPoolControl<HttpRoute> pool) {
+            this.name = name;
+            this.pool = new WeakReference<>(pool);
+        }
+    }
+
+    /**
+     * 固定桶耗时直方图, 桶上限按1-2-5序列从0.1毫秒到50秒
+     */
+    public static class Histogram {
+        private static final long[] bucketBounds;
+
+        static {
+            long[] multipliers = {1, 2, 5};
+            long[] bounds = new long[18];
+            long base = TimeUnit.MICROSECONDS.toNanos(100);
+            for (int i = 0; i < bounds.length; i++) {
+                bounds[i] = base * multipliers[i % 3];
+                if (i % 3 == 2) {
+                    base *= 10;
+                }
+            }
+            bucketBounds = bounds;
+        }
+
+        private final LongAdder[] buckets = new LongAdder[bucketBounds.length + 1];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        public Histogram() {
+            for (int i = 0; i < this.buckets.length; i++) {
+                this.buckets[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * 记录耗时, 单位纳秒
+         */
+        public void record(long nanos) {
+            int index = 0;
+            while (index < bucketBounds.length && nanos > bucketBounds[index]) {
+                index++;
+            }
+            this.buckets[index].increment();
+            this.count.increment();
+            this.sum.add(nanos);
+            this.max.accumulate(nanos);
+        }
+
+        public long getCount() {
+            return this.count.sum();
+        }
+
+        /**
+         * 平均耗时, 单位纳秒
+         */
+        public long getMean() {
+            long count = this.count.sum();
+            return count == 0 ? 0 : this.sum.sum() / count;
+        }
+
+        /**
+         * 最大耗时, 单位纳秒
+         */
+        public long getMax() {
+            return this.max.get();
+        }
+
+        /**
+         * 近似分位数, 返回所在桶的上限, 单位纳秒
+         *
+         * @param quantile 分位, 取值0-1
+         */
+        public long getPercentile(double quantile) {
+            long count = this.count.sum();
+            if (count == 0) {
+                return 0;
+            }
+            long threshold = (long) Math.ceil(count * quantile);
+            long seen = 0;
+            for (int i = 0; i < bucketBounds.length; i++) {
+                seen += this.buckets[i].sum();
+                if (seen >= threshold) {
+                    return bucketBounds[i];
+                }
+            }
+            return this.getMax();
+        }
+
+        /**
+         * 各桶计数, key为桶上限(纳秒), 最后一个桶的key为Long.MAX_VALUE
+         */
+        public Map<Long, Long> getBuckets() {
+            Map<Long, Long> result = new LinkedHashMap<>();
+            for (int i = 0; i < this.buckets.length; i++) {
+                result.put(i < bucketBounds.length ? bucketBounds[i] : Long.MAX_VALUE, this.buckets[i].sum());
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "Histogram{count=" + this.getCount() + ", meanMs=" + TimeUnit.NANOSECONDS.toMillis(this.getMean())
+                    + ", p95Ms=" + TimeUnit.NANOSECONDS.toMillis(this.getPercentile(0.95)) + ", maxMs="
+                    + TimeUnit.NANOSECONDS.toMillis(this.getMax()) + "}";
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.rdlinux.luava.http;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 合并相同key的并发调用, 同一时刻只有一个调用真正执行, 其余调用等待并共享其结果
+ */
+final class SingleFlight<T> {
+    private final ConcurrentMap<String, CompletableFuture<T>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * @param timeout 等待其他调用结果的最长时间, 单位毫秒, 超时后单独执行, 小于等于0时一直等待
+     */
+    T execute(String key, Supplier<T> call, long timeout) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<T> existing = this.calls.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return await(existing, timeout);
+            } catch (TimeoutException e) {
+                return call.get();
+            }
+        }
+        try {
+            T result = call.get();
+            future.complete(result);
+            return result;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.calls.remove(key, future);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future, long timeout) throws TimeoutException {
+        try {
+            return timeout > 0 ? future.get(timeout, TimeUnit.MILLISECONDS) : future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.rdlinux.luava.http;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * 增量解析text/event-stream, 按收到的字节分段输入, 解析出完整事件时回调;<br/>
+ * 按规范处理CR、LF、CRLF行结束符, 注释行, 以及event、data、id、retry字段
+ */
+final class SseParser {
+    private static final String defaultEvent = "message";
+    private final Consumer<ServerSentEvent> eventConsumer;
+    private final Consumer<String> lastEventIdConsumer;
+    private final LongConsumer retryConsumer;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer chars = CharBuffer.allocate(4096);
+    /**
+     * 跨分段的未完整字节
+     */
+    private ByteBuffer remaining;
+    private final StringBuilder line = new StringBuilder();
+    private final StringBuilder data = new StringBuilder();
+    private String event;
+    private String lastEventId;
+    private boolean lastWasCr;
+    private boolean streamStart = true;
+
+    /**
+     * @param lastEventId   初始的最后事件id, 重连时为上次连接的最后事件id
+     * @param eventConsumer       事件回调
+     * @param lastEventIdConsumer 最后事件id回调, 每个事件块结束时回调, 没有data的事件块也回调
+     * @param retryConsumer       服务端指定的重连间隔回调
+     */
+    SseParser(String lastEventId, Consumer<ServerSentEvent> eventConsumer, Consumer<String> lastEventIdConsumer,
+              LongConsumer retryConsumer) {
+        this.lastEventId = lastEventId == null ? "" : lastEventId;
+        this.eventConsumer = eventConsumer;
+        this.lastEventIdConsumer = lastEventIdConsumer;
+        this.retryConsumer = retryConsumer;
+    }
+
+    String getLastEventId() {
+        return this.lastEventId;
+    }
+
+    void feed(ByteBuffer bytes) {
+        ByteBuffer input = bytes;
+        if (this.remaining != null && this.remaining.hasRemaining()) {
+            input = ByteBuffer.allocate(this.remaining.remaining() + bytes.remaining());
+            input.put(this.remaining).put(bytes);
+            ((Buffer) input).flip();
+        }
+        while (true) {
+            ((Buffer) this.chars).clear();
+            boolean overflow = this.decoder.decode(input, this.chars, false).isOverflow();
+            ((Buffer) this.chars).flip();
+            this.feed(this.chars);
+            if (!overflow) {
+                break;
+            }
+        }
+        if (input.hasRemaining()) {
+            this.remaining = ByteBuffer.allocate(input.remaining());
+            this.remaining.put(input);
+            ((Buffer) this.remaining).flip();
+        } else {
+            this.remaining = null;
+        }
+    }
+
+    private void feed(CharBuffer input) {
+        while (input.hasRemaining()) {
+            char c = input.get();
+            if (this.streamStart) {
+                this.streamStart = false;
+                if (c == '\uFEFF') {
+                    continue;
+                }
+            }
+            if (c == '\n' && this.lastWasCr) {
+                this.lastWasCr = false;
+                continue;
+            }
+            this.lastWasCr = c == '\r';
+            if (c == '\r' || c == '\n') {
+                this.processLine(this.line);
+                this.line.setLength(0);
+            } else {
+                this.line.append(c);
+            }
+        }
+    }
+
+    private void processLine(CharSequence line) {
+        if (line.length() == 0) {
+            this.dispatch();
+            return;
+        }
+        if (line.charAt(0) == ':') {
+            return;
+        }
+        String text = line.toString();
+        int colon = text.indexOf(':');
+        String field = colon < 0 ? text : text.substring(0, colon);
+        String value = "";
+        if (colon >= 0) {
+            int start = colon + 1;
+            if (start < text.length() && text.charAt(start) == ' ') {
+                start++;
+            }
+            value = text.substring(start);
+        }
+        switch (field) {
+            case "event":
+                this.event = value;
+                break;
+            case "data":
+                this.data.append(value).append('\n');
+                break;
+            case "id":
+                if (value.indexOf('\0') < 0) {
+                    this.lastEventId = value;
+                }
+                break;
+            case "retry":
+                if (!value.isEmpty() && value.chars().allMatch(ch -> ch >= '0' && ch <= '9')) {
+                    try {
+                        this.retryConsumer.accept(Long.parseLong(value));
+                    } catch (NumberFormatException ignored) {
+                        // 超出范围时忽略
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void dispatch() {
+        // 没有data的事件块不分发, 但其中的id仍然生效
+        this.lastEventIdConsumer.accept(this.lastEventId);
+        if (this.data.length() == 0) {
+            this.event = null;
+            return;
+        }
+        this.data.setLength(this.data.length() - 1);
+        String event = this.event == null || this.event.isEmpty() ? defaultEvent : this.event;
+        ServerSentEvent serverSentEvent = new ServerSentEvent(this.lastEventId, event, this.data.toString());
+        this.data.setLength(0);
+        this.event = null;
+        this.eventConsumer.accept(serverSentEvent);
+    }
+}
@@ -0,0 +1,141 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.conn.ssl.DefaultHostnameVerifier;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.ssl.SSLContextBuilder;
+import org.apache.http.ssl.SSLContexts;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+/**
+ * https配置, 同一配置创建的所有客户端共用一个SSLContext, 从而共用TLS会话缓存, 新连接可恢复会话而无需完整握手;<br/>
+ * 未配置时使用共享的默认配置, 与之前的行为一致: 信任所有证书且不校验主机名
+ */
+public class SslConfig {
+    private static final SslConfig defaultConfig = new SslConfig();
+    /**
+     * 是否信任所有证书, 默认true, 为false时使用trustStore校验证书
+     */
+    private boolean trustAll = true;
+    /**
+     * 信任的证书库, 为null时使用jdk默认的证书库
+     */
+    private KeyStore trustStore;
+    /**
+     * 是否校验证书中的主机名, 默认false
+     */
+    private boolean verifyHostname = false;
+    /**
+     * TLS会话缓存数量, 小于等于0时使用jdk默认值
+     */
+    private int sessionCacheSize;
+    /**
+     * TLS会话缓存时间, 单位秒, 小于等于0时使用jdk默认值
+     */
+    private int sessionTimeout;
+    private volatile SSLContext sslContext;
+
+    /**
+     * 共享的默认配置
+     */
+    static SslConfig getDefault() {
+        return defaultConfig;
+    }
+
+    /**
+     * 获取SSLContext, 首次调用时创建, 修改配置后重新创建
+     */
+    SSLContext getSSLContext() {
+        SSLContext context = this.sslContext;
+        if (context == null) {
+            synchronized (this) {
+                context = this.sslContext;
+                if (context == null) {
+                    context = this.createSSLContext();
+                    this.sslContext = context;
+                }
+            }
+        }
+        return context;
+    }
+
+    private SSLContext createSSLContext() {
+        SSLContext context;
+        try {
+            SSLContextBuilder builder = SSLContexts.custom();
+            if (this.trustAll) {
+                builder.loadTrustMaterial(null, (chain, authType) -> true);
+            } else {
+                builder.loadTrustMaterial(this.trustStore, null);
+            }
+            context = builder.build();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+        SSLSessionContext sessionContext = context.getClientSessionContext();
+        if (this.sessionCacheSize > 0) {
+            sessionContext.setSessionCacheSize(this.sessionCacheSize);
+        }
+        if (this.sessionTimeout > 0) {
+            sessionContext.setSessionTimeout(this.sessionTimeout);
+        }
+        return context;
+    }
+
+    HostnameVerifier getHostnameVerifier() {
+        return this.verifyHostname ? new DefaultHostnameVerifier() : NoopHostnameVerifier.INSTANCE;
+    }
+
+    public boolean isTrustAll() {
+        return this.trustAll;
+    }
+
+    public synchronized SslConfig setTrustAll(boolean trustAll) {
+        this.trustAll = trustAll;
+        this.sslContext = null;
+        return this;
+    }
+
+    public KeyStore getTrustStore() {
+        return this.trustStore;
+    }
+
+    public synchronized SslConfig setTrustStore(KeyStore trustStore) {
+        this.trustStore = trustStore;
+        this.sslContext = null;
+        return this;
+    }
+
+    public boolean isVerifyHostname() {
+        return this.verifyHostname;
+    }
+
+    public SslConfig setVerifyHostname(boolean verifyHostname) {
+        this.verifyHostname = verifyHostname;
+        return this;
+    }
+
+    public int getSessionCacheSize() {
+        return this.sessionCacheSize;
+    }
+
+    public synchronized SslConfig setSessionCacheSize(int sessionCacheSize) {
+        this.sessionCacheSize = sessionCacheSize;
+        this.sslContext = null;
+        return this;
+    }
+
+    public int getSessionTimeout() {
+        return this.sessionTimeout;
+    }
+
+    public synchronized SslConfig setSessionTimeout(int sessionTimeout) {
+        this.sessionTimeout = sessionTimeout;
+        this.sslContext = null;
+        return this;
+    }
+}
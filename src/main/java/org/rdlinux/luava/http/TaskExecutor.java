@@ -0,0 +1,104 @@
+package org.rdlinux.luava.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 阻塞请求任务执行器, 虚拟线程模式下每个任务一个虚拟线程并使用信号量限制并发, 否则使用固定大小的平台线程池
+ */
+final class TaskExecutor {
+    private static final Logger log = LoggerFactory.getLogger(TaskExecutor.class);
+    /**
+     * 当前线程是否在执行需要路由许可的任务, 见{@link RoutePermits}
+     */
+    private static final ThreadLocal<Boolean> routeLimited = new ThreadLocal<>();
+    private final ExecutorService executorService;
+    private final boolean routeLimit;
+    /**
+     * 虚拟线程模式下的并发限制, 平台线程池由线程数限制并发, 为null
+     */
+    private final Semaphore permits;
+
+    /**
+     * @param name           线程名称前缀
+     * @param virtualThreads 是否使用虚拟线程, 运行环境不支持时使用平台线程
+     * @param concurrency    最大并发数
+     * @param routeLimit     任务中的同步请求是否先获取路由许可再获取连接
+     */
+    TaskExecutor(String name, boolean virtualThreads, int concurrency, boolean routeLimit) {
+        this.routeLimit = routeLimit;
+        ExecutorService virtualExecutor = null;
+        if (virtualThreads) {
+            virtualExecutor = VirtualThreads.newExecutor(name);
+            if (virtualExecutor == null) {
+                log.warn("virtual threads are not supported by current jvm, use platform threads");
+            }
+        }
+        if (virtualExecutor != null) {
+            this.executorService = virtualExecutor;
+            this.permits = new Semaphore(concurrency);
+        } else {
+            ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(concurrency, concurrency, 60,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory(name));
+            threadPoolExecutor.allowCoreThreadTimeOut(true);
+            this.executorService = threadPoolExecutor;
+            this.permits = null;
+        }
+    }
+
+    /**
+     * 提交任务, 取消返回的future会中断执行中的任务
+     */
+    <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> future = this.executorService.submit(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            boolean acquired = false;
+            try {
+                if (this.permits != null) {
+                    this.permits.acquire();
+                    acquired = true;
+                }
+                if (this.routeLimit) {
+                    routeLimited.set(Boolean.TRUE);
+                }
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                routeLimited.remove();
+                if (acquired) {
+                    this.permits.release();
+                }
+            }
+        });
+        result.whenComplete((value, throwable) -> {
+            if (result.isCancelled()) {
+                future.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 当前线程是否在执行需要路由许可的任务
+     */
+    static boolean isRouteLimited() {
+        return routeLimited.get() != null;
+    }
+
+    void shutdown() {
+        this.executorService.shutdown();
+    }
+}
@@ -0,0 +1,39 @@
+package org.rdlinux.luava.http;
+
+/**
+ * 令牌预算, 每次请求累积ratio个令牌, 并按每秒最少次数匀速累积, 每次额外请求(如重试)消耗一个令牌,
+ * 最多累积10秒的最少次数, 且不少于一个令牌
+ */
+final class TokenBudget {
+    private static final int windowSeconds = 10;
+    private final int minPerSecond;
+    private final double capacity;
+    private double tokens;
+    private long refillNanos = System.nanoTime();
+
+    TokenBudget(int minPerSecond) {
+        this.minPerSecond = Math.max(0, minPerSecond);
+        this.capacity = Math.max(1, this.minPerSecond * windowSeconds);
+        this.tokens = this.capacity;
+    }
+
+    synchronized void deposit(double ratio) {
+        this.refill();
+        this.tokens = Math.min(this.capacity, this.tokens + ratio);
+    }
+
+    synchronized boolean tryAcquire() {
+        this.refill();
+        if (this.tokens < 1) {
+            return false;
+        }
+        this.tokens -= 1;
+        return true;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        this.tokens = Math.min(this.capacity, this.tokens + (now - this.refillNanos) / 1e9 * this.minPerSecond);
+        this.refillNanos = now;
+    }
+}
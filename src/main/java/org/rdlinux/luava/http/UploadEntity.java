@@ -0,0 +1,81 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上传请求体, 写出时回调进度并按配置限速, 每次写出都从头计算, 重试时进度回退到本次请求的起始位置
+ */
+class UploadEntity extends HttpEntityWrapper {
+    private final ProgressListener progressListener;
+    private final long bytesPerSecond;
+    /**
+     * 本请求体之前已上传的长度及上传总长度, 用于分片上传时回调整个文件的进度
+     */
+    private final long offset;
+    private final long total;
+
+    UploadEntity(HttpEntity wrappedEntity, UploadOptions options, long offset, long total) {
+        super(wrappedEntity);
+        this.progressListener = options.getProgressListener();
+        this.bytesPerSecond = options.getBytesPerSecond();
+        this.offset = offset;
+        this.total = total;
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        if (this.progressListener == null && this.bytesPerSecond <= 0) {
+            super.writeTo(outStream);
+            return;
+        }
+        super.writeTo(new ProgressOutputStream(outStream));
+    }
+
+    private class ProgressOutputStream extends FilterOutputStream {
+        private final long startNanos = System.nanoTime();
+        private long count;
+
+        private ProgressOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.onWritten(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+            this.onWritten(len);
+        }
+
+        private void onWritten(int len) throws IOException {
+            this.count += len;
+            if (UploadEntity.this.progressListener != null) {
+                UploadEntity.this.progressListener.onProgress(UploadEntity.this.offset + this.count,
+                        UploadEntity.this.total);
+            }
+            if (UploadEntity.this.bytesPerSecond > 0) {
+                long expectedMillis = this.count * 1000 / UploadEntity.this.bytesPerSecond;
+                long waitMillis = expectedMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startNanos);
+                if (waitMillis > 0) {
+                    try {
+                        Thread.sleep(waitMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("upload interrupted");
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.rdlinux.luava.http;
+
+/**
+ * 文件上传选项, 见{@link HttpRequestUtils#upload}及{@link HttpRequestUtils#uploadChunks}
+ */
+public class UploadOptions {
+    private static final long defaultChunkSize = 8 * 1024 * 1024;
+    /**
+     * 上传限速, 单位字节/秒, 默认0, 即不限速
+     */
+    private long bytesPerSecond = 0;
+    /**
+     * 分片上传时每个分片的大小, 默认8M, 单位字节
+     */
+    private long chunkSize = defaultChunkSize;
+    /**
+     * 分片上传的起始位置, 默认0, 续传时设置为服务端已接收的长度
+     */
+    private long startOffset = 0;
+    /**
+     * 进度监听, 请求重试时从该请求的起始位置重新计算
+     */
+    private ProgressListener progressListener;
+
+    public long getBytesPerSecond() {
+        return this.bytesPerSecond;
+    }
+
+    public UploadOptions setBytesPerSecond(long bytesPerSecond) {
+        if (bytesPerSecond < 0) {
+            throw new IllegalArgumentException("bytesPerSecond can not be negative");
+        }
+        this.bytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    public long getChunkSize() {
+        return this.chunkSize;
+    }
+
+    public UploadOptions setChunkSize(long chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be greater than 0");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public long getStartOffset() {
+        return this.startOffset;
+    }
+
+    public UploadOptions setStartOffset(long startOffset) {
+        if (startOffset < 0) {
+            throw new IllegalArgumentException("startOffset can not be negative");
+        }
+        this.startOffset = startOffset;
+        return this;
+    }
+
+    public ProgressListener getProgressListener() {
+        return this.progressListener;
+    }
+
+    public UploadOptions setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+}
@@ -0,0 +1,72 @@
+package org.rdlinux.luava.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程支持, 通过反射在运行时检测, 保证在java8上可以运行
+ */
+final class VirtualThreads {
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreads.class);
+    private static final Method ofVirtual;
+    private static final Method name;
+    private static final Method factory;
+    private static final Method newThreadPerTaskExecutor;
+
+    static {
+        Method ofVirtualMethod = null;
+        Method nameMethod = null;
+        Method factoryMethod = null;
+        Method newThreadPerTaskExecutorMethod = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtualMethod = Thread.class.getMethod("ofVirtual");
+            nameMethod = builderClass.getMethod("name", String.class, long.class);
+            factoryMethod = builderClass.getMethod("factory");
+            newThreadPerTaskExecutorMethod = Executors.class.getMethod("newThreadPerTaskExecutor",
+                    ThreadFactory.class);
+            // 预览版本中调用会抛出异常, 提前检测
+            ofVirtualMethod.invoke(null);
+        } catch (Throwable e) {
+            ofVirtualMethod = null;
+        }
+        ofVirtual = ofVirtualMethod;
+        name = nameMethod;
+        factory = factoryMethod;
+        newThreadPerTaskExecutor = newThreadPerTaskExecutorMethod;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * 当前运行环境是否支持虚拟线程
+     */
+    static boolean isSupported() {
+        return ofVirtual != null;
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的执行器, 不支持虚拟线程时返回null
+     *
+     * @param prefix 线程名称前缀
+     */
+    static ExecutorService newExecutor(String prefix) {
+        if (!isSupported()) {
+            return null;
+        }
+        try {
+            Object builder = name.invoke(ofVirtual.invoke(null), prefix + "-", 1L);
+            ThreadFactory threadFactory = (ThreadFactory) factory.invoke(builder);
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            log.warn("create virtual thread executor failed", e);
+            return null;
+        }
+    }
+}
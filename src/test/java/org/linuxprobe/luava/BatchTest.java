@@ -0,0 +1,64 @@
+package org.linuxprobe.luava;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.rdlinux.luava.http.BatchRequest;
+import org.rdlinux.luava.http.ConnectPool;
+import org.rdlinux.luava.http.HttpRequestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class BatchTest {
+    private HttpServer server;
+    private String url;
+
+    @Before
+    public void setUp() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.createContext("/", exchange -> {
+            byte[] body = "1".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        this.server.start();
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void tearDown() {
+        this.server.stop(0);
+    }
+
+    @Test
+    public void batchInsideSubmittedTasks() throws Exception {
+        HttpRequestUtils requestUtils = new HttpRequestUtils(new ConnectPool().setAllMaxActive(2)
+                .setSingleMaxActive(2));
+        // 任务数超过并发上限, 占满submit的线程后批量请求仍能执行
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            tasks.add(() -> requestUtils.batch(Arrays.asList(BatchRequest.get(this.url, null),
+                    BatchRequest.get(this.url, null), BatchRequest.get(this.url, null)), Integer.class).size());
+        }
+        try {
+            for (CompletableFuture<Integer> future : requestUtils.executeAll(tasks)) {
+                Assert.assertEquals(Integer.valueOf(3), future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            requestUtils.close();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.linuxprobe.luava;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.rdlinux.luava.http.ConnectPool;
+import org.rdlinux.luava.http.HedgePolicy;
+import org.rdlinux.luava.http.HttpRequestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HedgeTest {
+    private final AtomicInteger hits = new AtomicInteger();
+    private HttpServer server;
+    private String url;
+
+    @Before
+    public void setUp() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        // 第奇数个请求很慢, 对冲请求总是先返回
+        this.server.createContext("/", exchange -> {
+            int hit = this.hits.incrementAndGet();
+            try {
+                if (hit % 2 == 1) {
+                    Thread.sleep(2000);
+                }
+                byte[] body = ("hit-" + hit).getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            } catch (InterruptedException | IOException e) {
+                // 被中止的请求
+            }
+            exchange.close();
+        });
+        this.server.start();
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void tearDown() {
+        this.server.stop(0);
+    }
+
+    @Test
+    public void hedgeWinsAndAbortsPrimary() throws Exception {
+        HttpRequestUtils requestUtils = new HttpRequestUtils(new ConnectPool().setHedgePolicy(new HedgePolicy()
+                .setDelay(50).setBudgetMinPerSecond(100)));
+        try {
+            for (int i = 1; i <= 3; i++) {
+                long start = System.currentTimeMillis();
+                try (CloseableHttpResponse response = requestUtils.getRequest(this.url)) {
+                    Assert.assertEquals("hit-" + i * 2, EntityUtils.toString(response.getEntity()));
+                }
+                // 对冲请求胜出后中止主请求, 不等待慢请求返回
+                long elapsed = System.currentTimeMillis() - start;
+                Assert.assertTrue(String.valueOf(elapsed), elapsed < 1500);
+            }
+        } finally {
+            requestUtils.close();
+        }
+    }
+}
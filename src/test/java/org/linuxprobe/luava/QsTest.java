@@ -1,10 +1,16 @@
 package org.linuxprobe.luava;
 
+import org.junit.Assert;
 import org.junit.Test;
 import org.rdlinux.luava.http.Qs;
+import org.rdlinux.luava.http.QsOptions;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class QsTest {
     @Test
@@ -19,4 +25,91 @@ public class QsTest {
         map.put("students", students);
         System.out.println(Qs.stringify(map));
     }
+
+    @Test
+    public void stringifyMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("name", "张三 a&b");
+        map.put("empty", null);
+        map.put("sz", new String[]{"a", "b"});
+        Map<String, Object> student = new LinkedHashMap<>();
+        student.put("a", "z");
+        map.put("students", Arrays.asList(student, "c"));
+        Assert.assertEquals("name=%E5%BC%A0%E4%B8%89+a%26b&sz=a&sz=b&students.a=z&students=c", Qs.stringify(map));
+    }
+
+    @Test
+    public void stringifyBean() {
+        Query query = new Query();
+        query.setKeyword("a b");
+        query.setPage(2);
+        query.setIds(Arrays.asList(1L, 2L));
+        Query child = new Query();
+        child.setKeyword("c");
+        query.setChild(child);
+        Assert.assertEquals("keyword=a+b&page=2&ids=1&ids=2&child.keyword=c", Qs.stringify(query));
+        // 编码器缓存后结果不变
+        Assert.assertEquals("keyword=a+b&page=2&ids=1&ids=2&child.keyword=c", Qs.stringify(query));
+    }
+
+    @Test
+    public void stringifyPrimitiveArray() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("ids", new long[]{1, 2});
+        Assert.assertEquals("ids=1&ids=2", Qs.stringify(map));
+    }
+
+    @Test
+    public void stringifyWithOptions() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("ids", new long[]{1, 2});
+        map.put("a b", Arrays.asList("x,y", null, Arrays.asList("z")));
+        Assert.assertEquals("ids=1&ids=2&a+b=x%2Cy&a+b=z",
+                Qs.stringify(map, new QsOptions()));
+        Assert.assertEquals("ids%5B%5D=1&ids%5B%5D=2&a+b%5B%5D=x%2Cy&a+b%5B%5D%5B%5D=z",
+                Qs.stringify(map, new QsOptions().setArrayFormat(QsOptions.ArrayFormat.BRACKETS)));
+        Assert.assertEquals("ids%5B0%5D=1&ids%5B1%5D=2&a+b%5B0%5D=x%2Cy&a+b%5B2%5D%5B0%5D=z",
+                Qs.stringify(map, new QsOptions().setArrayFormat(QsOptions.ArrayFormat.INDICES)));
+        Assert.assertEquals("ids=1,2&a+b=x%2Cy,z",
+                Qs.stringify(map, new QsOptions().setArrayFormat(QsOptions.ArrayFormat.COMMA)));
+    }
+
+    public static class Query {
+        private String keyword;
+        private Integer page;
+        private List<Long> ids;
+        private Query child;
+
+        public String getKeyword() {
+            return this.keyword;
+        }
+
+        public void setKeyword(String keyword) {
+            this.keyword = keyword;
+        }
+
+        public Integer getPage() {
+            return this.page;
+        }
+
+        public void setPage(Integer page) {
+            this.page = page;
+        }
+
+        public List<Long> getIds() {
+            return this.ids;
+        }
+
+        public void setIds(List<Long> ids) {
+            this.ids = ids;
+        }
+
+        public Query getChild() {
+            return this.child;
+        }
+
+        public void setChild(Query child) {
+            this.child = child;
+        }
+    }
 }
@@ -0,0 +1,120 @@
+package org.linuxprobe.luava;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.rdlinux.luava.http.ConnectPool;
+import org.rdlinux.luava.http.HttpRequestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightTest {
+    private static final int callers = 8;
+    private final AtomicInteger hits = new AtomicInteger();
+    private volatile long delay = 300;
+    private HttpServer server;
+    private String url;
+    private ExecutorService executorService;
+
+    @Before
+    public void setUp() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.createContext("/", exchange -> {
+            int hit = this.hits.incrementAndGet();
+            try {
+                Thread.sleep(this.delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = ("hit-" + hit).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        this.server.start();
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/";
+        this.executorService = Executors.newFixedThreadPool(callers);
+    }
+
+    @After
+    public void tearDown() {
+        this.executorService.shutdownNow();
+        this.server.stop(0);
+    }
+
+    private List<Future<CloseableHttpResponse>> fire(HttpRequestUtils requestUtils) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<CloseableHttpResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            futures.add(this.executorService.submit((Callable<CloseableHttpResponse>) () -> {
+                start.await();
+                return requestUtils.getRequest(this.url);
+            }));
+        }
+        start.countDown();
+        return futures;
+    }
+
+    @Test
+    public void coalesceConcurrentGets() throws Exception {
+        HttpRequestUtils requestUtils = new HttpRequestUtils(new ConnectPool().setSingleFlight(true));
+        List<CloseableHttpResponse> responses = new ArrayList<>();
+        for (Future<CloseableHttpResponse> future : this.fire(requestUtils)) {
+            responses.add(future.get());
+        }
+        Assert.assertEquals(1, this.hits.get());
+        // 每个调用的响应体相互独立, 先读完的不影响后读的
+        for (CloseableHttpResponse response : responses) {
+            Assert.assertEquals(200, response.getStatusLine().getStatusCode());
+            Assert.assertEquals("hit-1", EntityUtils.toString(response.getEntity()));
+            response.close();
+        }
+        requestUtils.close();
+    }
+
+    @Test
+    public void leaderFailurePropagates() throws Exception {
+        this.delay = 1000;
+        HttpRequestUtils requestUtils = new HttpRequestUtils(new ConnectPool().setSingleFlight(true)
+                .setSocketTimeout(300).setRetryCount(1));
+        int failures = 0;
+        for (Future<CloseableHttpResponse> future : this.fire(requestUtils)) {
+            try {
+                future.get().close();
+            } catch (Exception e) {
+                failures++;
+            }
+        }
+        Assert.assertEquals(1, this.hits.get());
+        Assert.assertEquals(callers, failures);
+        requestUtils.close();
+    }
+
+    @Test
+    public void waitersFallBackAfterTimeout() throws Exception {
+        HttpRequestUtils requestUtils = new HttpRequestUtils(new ConnectPool().setSingleFlight(true)
+                .setSingleFlightTimeout(50).setSingleMaxActive(callers));
+        for (Future<CloseableHttpResponse> future : this.fire(requestUtils)) {
+            try (CloseableHttpResponse response = future.get()) {
+                Assert.assertEquals(200, response.getStatusLine().getStatusCode());
+            }
+        }
+        Assert.assertEquals(callers, this.hits.get());
+        requestUtils.close();
+    }
+}
@@ -0,0 +1,129 @@
+package org.rdlinux.luava.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+    private static final long openDuration = 100;
+
+    private static CircuitBreaker newBreaker() {
+        return new CircuitBreaker(new CircuitBreakerPolicy().setWindowSize(4).setMinimumCalls(4)
+                .setFailureRateThreshold(0.5).setOpenDuration(openDuration).setHalfOpenCalls(2));
+    }
+
+    private static void open(CircuitBreaker breaker) {
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(breaker.tryAcquire());
+            breaker.record(true, 0);
+        }
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void opensAfterMinimumCalls() {
+        CircuitBreaker breaker = newBreaker();
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(breaker.tryAcquire());
+            breaker.record(true, 0);
+        }
+        // 未达到最少调用次数
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.record(false, 0);
+        // 3/4失败
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void slidingWindowDropsOldCalls() {
+        CircuitBreaker breaker = newBreaker();
+        breaker.record(true, 0);
+        for (int i = 0; i < 6; i++) {
+            breaker.record(false, 0);
+        }
+        breaker.record(true, 0);
+        // 窗口内只有最近4次, 1/4失败
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void slowCallsOpen() {
+        CircuitBreaker breaker = new CircuitBreaker(new CircuitBreakerPolicy().setWindowSize(2).setMinimumCalls(2)
+                .setSlowCallDuration(10).setSlowCallRateThreshold(1));
+        breaker.record(false, 10);
+        breaker.record(false, 5);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.record(false, 20);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        // 窗口内全部为慢调用
+        breaker.record(false, 30);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void halfOpenClosesOnSuccess() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        open(breaker);
+        Thread.sleep(openDuration + 20);
+        Assert.assertTrue(breaker.tryAcquire());
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        Assert.assertTrue(breaker.tryAcquire());
+        // 探测次数已用完
+        Assert.assertFalse(breaker.tryAcquire());
+        breaker.record(false, 0);
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.record(false, 0);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        // 关闭后重新统计, 之前的失败不计入
+        breaker.record(true, 0);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void halfOpenReopensOnFailure() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        open(breaker);
+        Thread.sleep(openDuration + 20);
+        Assert.assertTrue(breaker.tryAcquire());
+        Assert.assertTrue(breaker.tryAcquire());
+        breaker.record(true, 0);
+        breaker.record(false, 0);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void releaseReturnsHalfOpenPermit() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        open(breaker);
+        Thread.sleep(openDuration + 20);
+        Assert.assertTrue(breaker.tryAcquire());
+        Assert.assertTrue(breaker.tryAcquire());
+        Assert.assertFalse(breaker.tryAcquire());
+        // 取消的探测归还许可, 不记录结果
+        breaker.release();
+        Assert.assertTrue(breaker.tryAcquire());
+        Assert.assertFalse(breaker.tryAcquire());
+        breaker.record(false, 0);
+        breaker.record(false, 0);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void releaseDoesNotExceedHalfOpenCalls() throws InterruptedException {
+        CircuitBreaker breaker = newBreaker();
+        open(breaker);
+        Thread.sleep(openDuration + 20);
+        Assert.assertTrue(breaker.tryAcquire());
+        breaker.release();
+        breaker.release();
+        breaker.release();
+        Assert.assertTrue(breaker.tryAcquire());
+        Assert.assertTrue(breaker.tryAcquire());
+        Assert.assertFalse(breaker.tryAcquire());
+        // 关闭状态下归还许可无影响
+        CircuitBreaker closed = newBreaker();
+        closed.release();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, closed.getState());
+    }
+}
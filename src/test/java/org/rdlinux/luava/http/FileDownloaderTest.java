@@ -0,0 +1,226 @@
+package org.rdlinux.luava.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FileDownloaderTest {
+    /**
+     * 请求的Range及If-Range请求头
+     */
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    /**
+     * 剩余的中断次数, 每次中断只发送dropAfter字节
+     */
+    private final AtomicInteger drops = new AtomicInteger();
+    private volatile int dropAfter;
+    private volatile byte[] content;
+    private volatile String etag = "\"v1\"";
+    /**
+     * 第一次中断后替换的资源版本
+     */
+    private volatile byte[] nextContent;
+    private HttpServer server;
+    private String url;
+    private Path target;
+    private HttpRequestUtils requestUtils;
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String sha256(byte[] bytes) throws NoSuchAlgorithmException {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        this.content = randomBytes(300000, 1);
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.createContext("/", this::handle);
+        this.server.start();
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/file";
+        this.target = Files.createTempFile("download", ".bin");
+        this.requestUtils = new HttpRequestUtils(new ConnectPool());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.requestUtils.close();
+        this.server.stop(0);
+        Files.deleteIfExists(this.target);
+    }
+
+    /**
+     * 支持Range及If-Range, 需要中断时发送部分响应体后断开连接
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        this.requests.add(range + "|" + ifRange);
+        byte[] body = this.content;
+        int start = 0;
+        if (range != null && (ifRange == null || ifRange.equals(this.etag))) {
+            start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+        }
+        exchange.getResponseHeaders().set("ETag", this.etag);
+        if (start >= body.length) {
+            exchange.getResponseHeaders().set("Content-Range", "bytes */" + body.length);
+            exchange.sendResponseHeaders(416, -1);
+            exchange.close();
+            return;
+        }
+        int length = body.length - start;
+        if (start > 0) {
+            exchange.getResponseHeaders().set("Content-Range",
+                    "bytes " + start + "-" + (body.length - 1) + "/" + body.length);
+        }
+        exchange.sendResponseHeaders(start > 0 ? 206 : 200, length);
+        OutputStream out = exchange.getResponseBody();
+        if (this.drops.getAndDecrement() > 0) {
+            out.write(body, start, Math.min(this.dropAfter, length));
+            out.flush();
+            if (this.nextContent != null) {
+                this.content = this.nextContent;
+                this.etag = "\"v2\"";
+            }
+            // 处理器抛出异常时服务端直接关闭连接
+            throw new IOException("connection dropped");
+        }
+        out.write(body, start, length);
+        exchange.close();
+    }
+
+    @Test
+    public void resumeAfterDroppedConnection() throws Exception {
+        this.drops.set(1);
+        this.dropAfter = 100000;
+        DownloadResult result = this.requestUtils.download(this.url, null, this.target, new DownloadOptions()
+                .setChecksumAlgorithm("SHA-256").setExpectedChecksum(sha256(this.content)));
+        Assert.assertArrayEquals(this.content, Files.readAllBytes(this.target));
+        Assert.assertEquals(this.content.length, result.getLength());
+        Assert.assertEquals(sha256(this.content), result.getChecksum());
+        Assert.assertEquals(1, result.getResumes());
+        // 续传从已写入的位置开始, 并带上首次响应的ETag
+        Assert.assertEquals(2, this.requests.size());
+        String resume = this.requests.get(1);
+        Assert.assertTrue(resume, resume.matches("bytes=\\d+-\\|\"v1\""));
+        int offset = Integer.parseInt(resume.substring("bytes=".length(), resume.indexOf('-')));
+        Assert.assertTrue(resume, offset > 0 && offset <= this.dropAfter);
+    }
+
+    @Test
+    public void restartWhenResourceChanged() throws Exception {
+        this.drops.set(1);
+        this.dropAfter = 100000;
+        this.nextContent = randomBytes(200000, 2);
+        DownloadResult result = this.requestUtils.download(this.url, null, this.target, new DownloadOptions()
+                .setChecksumAlgorithm("SHA-256"));
+        // If-Range不匹配时服务端返回200, 从头写入并重新计算校验和
+        Assert.assertArrayEquals(this.nextContent, Files.readAllBytes(this.target));
+        Assert.assertEquals(this.nextContent.length, result.getLength());
+        Assert.assertEquals(sha256(this.nextContent), result.getChecksum());
+        Assert.assertEquals(1, result.getResumes());
+    }
+
+    @Test
+    public void resumeExistingFile() throws Exception {
+        Files.write(this.target, Arrays.copyOf(this.content, 123456));
+        DownloadResult result = this.requestUtils.download(this.url, null, this.target, new DownloadOptions()
+                .setResumeExisting(true).setChecksumAlgorithm("SHA-256"));
+        Assert.assertArrayEquals(this.content, Files.readAllBytes(this.target));
+        Assert.assertEquals(sha256(this.content), result.getChecksum());
+        Assert.assertEquals("bytes=123456-|null", this.requests.get(0));
+    }
+
+    @Test
+    public void existingFileAlreadyComplete() throws Exception {
+        Files.write(this.target, this.content);
+        DownloadResult result = this.requestUtils.download(this.url, null, this.target, new DownloadOptions()
+                .setResumeExisting(true).setChecksumAlgorithm("SHA-256"));
+        // 416且总长度等于已存在的长度时视为已完成
+        Assert.assertEquals(this.content.length, result.getLength());
+        Assert.assertEquals(sha256(this.content), result.getChecksum());
+        Assert.assertEquals(0, result.getResumes());
+        Assert.assertArrayEquals(this.content, Files.readAllBytes(this.target));
+    }
+
+    @Test
+    public void failAfterMaxResumes() {
+        this.drops.set(Integer.MAX_VALUE);
+        this.dropAfter = 1000;
+        try {
+            this.requestUtils.download(this.url, null, this.target, new DownloadOptions().setMaxResumes(2));
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+        Assert.assertEquals(3, this.requests.size());
+    }
+
+    @Test
+    public void checksumMismatchDeletesFile() {
+        try {
+            this.requestUtils.download(this.url, null, this.target, new DownloadOptions()
+                    .setChecksumAlgorithm("SHA-256").setExpectedChecksum("00"));
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("checksum mismatch"));
+        }
+        Assert.assertFalse(Files.exists(this.target));
+    }
+
+    @Test
+    public void parseContentRange() {
+        Assert.assertArrayEquals(new long[]{0, 99, 200}, FileDownloader.parseContentRange("bytes 0-99/200"));
+        Assert.assertArrayEquals(new long[]{100, 199, 200}, FileDownloader.parseContentRange(" BYTES 100 - 199 / 200 "));
+        // 总长度未知
+        Assert.assertArrayEquals(new long[]{0, 99, -1}, FileDownloader.parseContentRange("bytes 0-99/*"));
+        // 416响应只有总长度
+        Assert.assertArrayEquals(new long[]{-1, -1, 200}, FileDownloader.parseContentRange("bytes */200"));
+    }
+
+    @Test
+    public void parseInvalidContentRange() {
+        Assert.assertArrayEquals(new long[]{-1, -1, -1}, FileDownloader.parseContentRange("bytes a-b/200"));
+        Assert.assertArrayEquals(new long[]{-1, -1, -1}, FileDownloader.parseContentRange("bytes 0-99/abc"));
+        Assert.assertArrayEquals(new long[]{-1, -1, -1}, FileDownloader.parseContentRange(""));
+    }
+
+    @Test
+    public void verifyChecksum() throws IOException {
+        DownloadResult result = new DownloadResult(3, "ABCDEF", 0);
+        FileDownloader.verify(result, new DownloadOptions());
+        FileDownloader.verify(result, new DownloadOptions().setExpectedChecksum("abcdef"));
+        try {
+            FileDownloader.verify(result, new DownloadOptions().setExpectedChecksum("012345"));
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("checksum mismatch"));
+        }
+    }
+}
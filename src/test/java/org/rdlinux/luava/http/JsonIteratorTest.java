@@ -0,0 +1,118 @@
+package org.rdlinux.luava.http;
+
+import com.fasterxml.jackson.databind.JavaType;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class JsonIteratorTest {
+    private static final JavaType mapType = JacksonSupport.camelCaseMapper.getTypeFactory()
+            .constructMapType(Map.class, String.class, Integer.class);
+
+    private static TrackedResponse response(String body) {
+        return new TrackedResponse(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<Map<String, Integer>> readAll(TrackedResponse response) {
+        JsonIterator<Map<String, Integer>> iterator = new JsonIterator<>(response, JacksonSupport.camelCaseMapper,
+                mapType);
+        try (Stream<Map<String, Integer>> stream = iterator.stream()) {
+            return stream.collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void array() {
+        TrackedResponse response = response(" [{\"a\":1}, {\"a\":2},{\"a\":3}] \n");
+        List<Map<String, Integer>> values = readAll(response);
+        Assert.assertEquals(3, values.size());
+        Assert.assertEquals(Integer.valueOf(3), values.get(2).get("a"));
+        Assert.assertTrue(response.closed);
+        // 遍历结束时读完剩余内容
+        Assert.assertEquals(0, response.content.available());
+    }
+
+    @Test
+    public void emptyArray() {
+        TrackedResponse response = response("[]");
+        Assert.assertEquals(Collections.emptyList(), readAll(response));
+        Assert.assertTrue(response.closed);
+    }
+
+    @Test
+    public void ndjson() {
+        TrackedResponse response = response("{\"a\":1}\n{\"a\":2}\r\n\n{\"a\":3} {\"a\":4}\n");
+        List<Map<String, Integer>> values = readAll(response);
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4), values.stream().map(value -> value.get("a"))
+                .collect(Collectors.toList()));
+        Assert.assertTrue(response.closed);
+    }
+
+    @Test
+    public void emptyBody() {
+        TrackedResponse response = response("");
+        Assert.assertEquals(Collections.emptyList(), readAll(response));
+        Assert.assertTrue(response.closed);
+    }
+
+    @Test
+    public void earlyClose() {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 100000; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"a\":").append(i).append('}');
+        }
+        TrackedResponse response = response(body.append(']').toString());
+        JsonIterator<Map<String, Integer>> iterator = new JsonIterator<>(response, JacksonSupport.camelCaseMapper,
+                mapType);
+        Assert.assertEquals(Integer.valueOf(0), iterator.next().get("a"));
+        Assert.assertEquals(Integer.valueOf(1), iterator.next().get("a"));
+        iterator.close();
+        Assert.assertTrue(response.closed);
+        // 提前结束时不读完剩余内容
+        Assert.assertTrue(response.content.available() > 0);
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void invalidJsonClosesResponse() {
+        TrackedResponse response = response("[{\"a\":1}, {\"a\":");
+        JsonIterator<Map<String, Integer>> iterator = new JsonIterator<>(response, JacksonSupport.camelCaseMapper,
+                mapType);
+        Assert.assertEquals(Integer.valueOf(1), iterator.next().get("a"));
+        try {
+            iterator.next();
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertTrue(response.closed);
+        }
+    }
+
+    private static class TrackedResponse extends BasicHttpResponse implements Closeable {
+        private final ByteArrayInputStream content;
+        private boolean closed;
+
+        private TrackedResponse(byte[] body) {
+            super(HttpVersion.HTTP_1_1, 200, "OK");
+            this.content = new ByteArrayInputStream(body);
+            this.setEntity(new InputStreamEntity(this.content, body.length));
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.closed = true;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.rdlinux.luava.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public class LoadBalancerTest {
+    private static ServiceConfig newService(int size) {
+        String[] endpoints = new String[size];
+        for (int i = 0; i < size; i++) {
+            endpoints[i] = "http://10.0.0." + (i + 1) + ":8080";
+        }
+        return new ServiceConfig("demo", Arrays.asList(endpoints)).setConsecutiveFailures(3);
+    }
+
+    private static void call(ServiceEndpoint endpoint, int status, long durationMillis) {
+        endpoint.onStart();
+        endpoint.onComplete(status, TimeUnit.MILLISECONDS.toNanos(durationMillis));
+    }
+
+    private static void fail(ServiceEndpoint endpoint, int times) {
+        for (int i = 0; i < times; i++) {
+            call(endpoint, 503, 1);
+        }
+    }
+
+    @Test
+    public void ejectAfterConsecutiveFailures() {
+        ServiceConfig service = newService(2);
+        ServiceEndpoint endpoint = service.getEndpoints().get(0);
+        fail(endpoint, 2);
+        // 成功后重新计数
+        call(endpoint, 200, 1);
+        fail(endpoint, 2);
+        Assert.assertFalse(endpoint.isEjected());
+        fail(endpoint, 1);
+        Assert.assertTrue(endpoint.isEjected());
+        Assert.assertEquals(0, endpoint.getInFlight());
+        for (int i = 0; i < 10; i++) {
+            Assert.assertSame(service.getEndpoints().get(1), service.choose());
+        }
+    }
+
+    @Test
+    public void maxEjectionPercent() {
+        ServiceConfig service = newService(4);
+        List<ServiceEndpoint> endpoints = service.getEndpoints();
+        for (ServiceEndpoint endpoint : endpoints) {
+            fail(endpoint, 3);
+        }
+        // 默认最多剔除50%
+        int ejected = 0;
+        for (ServiceEndpoint endpoint : endpoints) {
+            ejected += endpoint.isEjected() ? 1 : 0;
+        }
+        Assert.assertEquals(2, ejected);
+        // 剔除比例未超限时, 后续失败的实例仍不会被剔除
+        fail(endpoints.get(3), 3);
+        Assert.assertFalse(endpoints.get(3).isEjected());
+    }
+
+    @Test
+    public void noEjectionWhenDisabled() {
+        ServiceConfig service = newService(2).setConsecutiveFailures(0);
+        ServiceEndpoint endpoint = service.getEndpoints().get(0);
+        fail(endpoint, 10);
+        Assert.assertFalse(endpoint.isEjected());
+    }
+
+    @Test
+    public void allEjectedFallBackToAll() {
+        ServiceConfig service = newService(2).setMaxEjectionPercent(100).setEjectionTime(60000);
+        for (ServiceEndpoint endpoint : service.getEndpoints()) {
+            fail(endpoint, 3);
+            Assert.assertTrue(endpoint.isEjected());
+        }
+        Set<ServiceEndpoint> chosen = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            chosen.add(service.choose());
+        }
+        Assert.assertEquals(2, chosen.size());
+    }
+
+    @Test
+    public void ejectionExpires() throws InterruptedException {
+        ServiceConfig service = newService(2).setEjectionTime(50);
+        ServiceEndpoint endpoint = service.getEndpoints().get(0);
+        fail(endpoint, 3);
+        Assert.assertTrue(endpoint.isEjected());
+        Thread.sleep(80);
+        Assert.assertFalse(endpoint.isEjected());
+    }
+
+    @Test
+    public void roundRobin() {
+        ServiceConfig service = newService(3).setLoadBalancer(LoadBalancers.roundRobin());
+        ServiceEndpoint first = service.choose();
+        Set<ServiceEndpoint> chosen = new HashSet<>();
+        chosen.add(first);
+        chosen.add(service.choose());
+        chosen.add(service.choose());
+        Assert.assertEquals(3, chosen.size());
+        Assert.assertSame(first, service.choose());
+    }
+
+    @Test
+    public void leastInFlight() {
+        ServiceConfig service = newService(3).setLoadBalancer(LoadBalancers.leastInFlight());
+        List<ServiceEndpoint> endpoints = service.getEndpoints();
+        endpoints.get(0).onStart();
+        endpoints.get(1).onStart();
+        endpoints.get(1).onStart();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertSame(endpoints.get(2), service.choose());
+        }
+    }
+
+    @Test
+    public void powerOfTwoChoices() {
+        ServiceConfig service = newService(2).setLoadBalancer(LoadBalancers.powerOfTwoChoices());
+        List<ServiceEndpoint> endpoints = service.getEndpoints();
+        call(endpoints.get(0), 200, 100);
+        call(endpoints.get(1), 200, 10);
+        // 两个实例时总是比较全部实例
+        for (int i = 0; i < 10; i++) {
+            Assert.assertSame(endpoints.get(1), service.choose());
+        }
+        // 进行中的请求数增加代价
+        for (int i = 0; i < 20; i++) {
+            endpoints.get(1).onStart();
+        }
+        Assert.assertSame(endpoints.get(0), service.choose());
+    }
+
+    @Test
+    public void skipOpenBreaker() {
+        ConnectPool connectPool = new ConnectPool().setCircuitBreakerPolicy(new CircuitBreakerPolicy()
+                .setWindowSize(2).setMinimumCalls(2).setOpenDuration(60000));
+        ServiceConfig service = newService(2).setLoadBalancer(LoadBalancers.leastInFlight());
+        connectPool.putServiceConfig(service);
+        List<ServiceEndpoint> endpoints = service.getEndpoints();
+        RouteGuard routeGuard = connectPool.getRouteGuard();
+        String route = RouteGuard.routeKey(endpoints.get(0).resolve(URI.create("lb://demo/")));
+        routeGuard.onComplete(route, 500, 0);
+        routeGuard.onComplete(route, 500, 0);
+        // 熔断的实例进行中请求数为0, 但不会被选择
+        for (int i = 0; i < 10; i++) {
+            Assert.assertSame(endpoints.get(1), HttpRequestFactory.resolveEndpoint(new HttpGet("lb://demo/x"),
+                    connectPool, null));
+        }
+        // 全部熔断时仍从全部实例中选择
+        String other = RouteGuard.routeKey(endpoints.get(1).resolve(URI.create("lb://demo/")));
+        routeGuard.onComplete(other, 500, 0);
+        routeGuard.onComplete(other, 500, 0);
+        Assert.assertNotNull(HttpRequestFactory.resolveEndpoint(new HttpGet("lb://demo/x"), connectPool, null));
+    }
+
+    @Test
+    public void breakerRoutesTrafficToHealthyEndpoint() throws IOException {
+        HttpServer bad = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        bad.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        HttpServer good = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        good.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        bad.start();
+        good.start();
+        ServiceConfig service = new ServiceConfig("demo", Arrays.asList(
+                "http://127.0.0.1:" + bad.getAddress().getPort(), "http://127.0.0.1:" + good.getAddress().getPort()))
+                .setConsecutiveFailures(0).setLoadBalancer(LoadBalancers.leastInFlight());
+        ConnectPool connectPool = new ConnectPool().putServiceConfig(service)
+                .setCircuitBreakerPolicy(new CircuitBreakerPolicy().setWindowSize(2).setMinimumCalls(2)
+                        .setOpenDuration(60000));
+        HttpRequestUtils requestUtils = new HttpRequestUtils(connectPool);
+        int failures = 0;
+        try {
+            for (int i = 0; i < 20; i++) {
+                try (CloseableHttpResponse response = requestUtils.getRequest("lb://demo/x")) {
+                    failures += response.getStatusLine().getStatusCode() == 200 ? 0 : 1;
+                }
+            }
+        } finally {
+            requestUtils.close();
+            bad.stop(0);
+            good.stop(0);
+        }
+        // 熔断前最多失败2次, 之后不再选择熔断的实例, 也不会被拒绝
+        Assert.assertTrue(String.valueOf(failures), failures <= 2);
+    }
+}
@@ -0,0 +1,98 @@
+package org.rdlinux.luava.http;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.net.ssl.SSLException;
+import java.io.ByteArrayInputStream;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Date;
+
+public class RetryTest {
+    @Test
+    public void backoff() {
+        RetryPolicy policy = new RetryPolicy().setInitialBackoff(100).setMultiplier(2).setMaxBackoff(1000);
+        Assert.assertEquals(100, policy.backoff(1, 1));
+        Assert.assertEquals(200, policy.backoff(2, 1));
+        Assert.assertEquals(400, policy.backoff(3, 1));
+        // 不超过maxBackoff
+        Assert.assertEquals(1000, policy.backoff(5, 1));
+        Assert.assertEquals(1000, policy.backoff(100, 1));
+        // 在[0, 上限]内随机
+        Assert.assertEquals(0, policy.backoff(3, 0));
+        Assert.assertEquals(200, policy.backoff(3, 0.5));
+    }
+
+    @Test
+    public void parseRetryAfterSeconds() {
+        Assert.assertEquals(-1, RetrySupport.parseRetryAfter(null));
+        Assert.assertEquals(3000, RetrySupport.parseRetryAfter(new BasicHeader("Retry-After", "3")));
+        Assert.assertEquals(3000, RetrySupport.parseRetryAfter(new BasicHeader("Retry-After", " 3 ")));
+        Assert.assertEquals(0, RetrySupport.parseRetryAfter(new BasicHeader("Retry-After", "-5")));
+        Assert.assertEquals(-1, RetrySupport.parseRetryAfter(new BasicHeader("Retry-After", "soon")));
+    }
+
+    @Test
+    public void parseRetryAfterDate() {
+        String future = DateUtils.formatDate(new Date(System.currentTimeMillis() + 10000));
+        long delay = RetrySupport.parseRetryAfter(new BasicHeader("Retry-After", future));
+        // http日期精确到秒
+        Assert.assertTrue(String.valueOf(delay), delay > 8000 && delay <= 10000);
+        String past = DateUtils.formatDate(new Date(System.currentTimeMillis() - 10000));
+        Assert.assertEquals(0, RetrySupport.parseRetryAfter(new BasicHeader("Retry-After", past)));
+    }
+
+    @Test
+    public void retryable() {
+        RetryPolicy policy = new RetryPolicy();
+        HttpGet get = new HttpGet("http://localhost/");
+        HttpPost post = new HttpPost("http://localhost/");
+        // 连接未建立时任何方法都可重试
+        Assert.assertTrue(RetrySupport.isRetryable(policy, post, new ConnectException()));
+        Assert.assertTrue(RetrySupport.isRetryable(policy, post, new ConnectTimeoutException()));
+        // 服务端可能已处理请求时只重试幂等方法
+        Assert.assertTrue(RetrySupport.isRetryable(policy, get, new NoHttpResponseException("closed")));
+        Assert.assertFalse(RetrySupport.isRetryable(policy, post, new NoHttpResponseException("closed")));
+        Assert.assertFalse(RetrySupport.isRetryable(policy, get, new SocketTimeoutException()));
+        Assert.assertFalse(RetrySupport.isRetryable(policy, get, new UnknownHostException()));
+        Assert.assertFalse(RetrySupport.isRetryable(policy, get, new SSLException("handshake")));
+    }
+
+    @Test
+    public void nonRepeatableBodyNotRetried() {
+        RetrySupport retrySupport = new ConnectPool().setRetryPolicy(new RetryPolicy()).getRetrySupport();
+        HttpResponse unavailable = new BasicHttpResponse(HttpVersion.HTTP_1_1, 503, "Service Unavailable");
+        HttpPut repeatable = new HttpPut("http://localhost/");
+        repeatable.setEntity(new StringEntity("a", "UTF-8"));
+        Assert.assertTrue(retrySupport.retryDelay(repeatable, unavailable, 1, "route") >= 0);
+        Assert.assertTrue(retrySupport.retryDelay(repeatable, new ConnectException(), 1, "route") >= 0);
+        // 请求体只能发送一次时不重试, 也不消耗重试预算
+        HttpPut oneShot = new HttpPut("http://localhost/");
+        oneShot.setEntity(new InputStreamEntity(new ByteArrayInputStream(new byte[]{1})));
+        Assert.assertEquals(-1, retrySupport.retryDelay(oneShot, unavailable, 1, "route"));
+        Assert.assertEquals(-1, retrySupport.retryDelay(oneShot, new ConnectException(), 1, "route"));
+    }
+
+    @Test
+    public void statusCodesNotRetriedByDefault() {
+        RetrySupport retrySupport = new ConnectPool().getRetrySupport();
+        HttpGet get = new HttpGet("http://localhost/");
+        HttpResponse unavailable = new BasicHttpResponse(HttpVersion.HTTP_1_1, 503, "Service Unavailable");
+        Assert.assertEquals(-1, retrySupport.retryDelay(get, unavailable, 1, "route"));
+        Assert.assertTrue(retrySupport.retryDelay(get, new ConnectException(), 1, "route") >= 0);
+    }
+}
@@ -0,0 +1,119 @@
+package org.rdlinux.luava.http;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SseParserTest {
+    private final List<ServerSentEvent> events = new ArrayList<>();
+    private final List<String> ids = new ArrayList<>();
+    private final List<Long> retries = new ArrayList<>();
+    private SseParser parser;
+
+    @Before
+    public void setUp() {
+        this.parser = new SseParser(null, this.events::add, this.ids::add, this.retries::add);
+    }
+
+    private void feed(String text) {
+        this.parser.feed(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void lineEndings() {
+        this.feed("data: lf\n\ndata: cr\r\rdata: crlf\r\n\r\n");
+        Assert.assertEquals(3, this.events.size());
+        Assert.assertEquals("lf", this.events.get(0).getData());
+        Assert.assertEquals("cr", this.events.get(1).getData());
+        Assert.assertEquals("crlf", this.events.get(2).getData());
+    }
+
+    @Test
+    public void crlfSplitAcrossChunks() {
+        this.feed("data: a\r");
+        this.feed("\n\r");
+        this.feed("\ndata: b\r\n\r\n");
+        // 分段的CRLF只算一个换行, 不会产生空行
+        Assert.assertEquals(2, this.events.size());
+        Assert.assertEquals("a", this.events.get(0).getData());
+        Assert.assertEquals("b", this.events.get(1).getData());
+    }
+
+    @Test
+    public void byteOrderMark() {
+        this.feed("\uFEFFdata: first\n\n");
+        this.feed("\uFEFFdata: second\n\n");
+        // 只忽略流开头的BOM, 之后的BOM作为字段名的一部分, 该行被忽略
+        Assert.assertEquals(1, this.events.size());
+        Assert.assertEquals("first", this.events.get(0).getData());
+    }
+
+    @Test
+    public void multiLineData() {
+        this.feed("event: update\ndata: line1\ndata:line2\ndata\n: comment\n\n");
+        Assert.assertEquals(1, this.events.size());
+        ServerSentEvent event = this.events.get(0);
+        Assert.assertEquals("update", event.getEvent());
+        Assert.assertEquals("line1\nline2\n", event.getData());
+    }
+
+    @Test
+    public void defaultEventAndEmptyData() {
+        this.feed("event: ignored\n\ndata\n\n");
+        // 没有data的事件不分发, 事件类型随之重置
+        Assert.assertEquals(1, this.events.size());
+        Assert.assertEquals("message", this.events.get(0).getEvent());
+        Assert.assertEquals("", this.events.get(0).getData());
+    }
+
+    @Test
+    public void lastEventId() {
+        this.parser = new SseParser("initial", this.events::add, this.ids::add, this.retries::add);
+        this.feed("data: a\n\nid: 1\ndata: b\n\nid: bad\0id\ndata: c\n\nid\ndata: d\n\n");
+        Assert.assertEquals("initial", this.events.get(0).getId());
+        Assert.assertEquals("1", this.events.get(1).getId());
+        // 包含NUL的id被忽略
+        Assert.assertEquals("1", this.events.get(2).getId());
+        // 空id重置最后事件id
+        Assert.assertEquals("", this.events.get(3).getId());
+        Assert.assertEquals("", this.parser.getLastEventId());
+    }
+
+    @Test
+    public void lastEventIdWithoutData() {
+        this.feed("data: a\n\nid: 2\n\nid: 3\nevent: ping\n");
+        // 没有data的事件块不分发, 但id在块结束时生效
+        Assert.assertEquals(1, this.events.size());
+        Assert.assertEquals("2", this.ids.get(this.ids.size() - 1));
+        // 未结束的事件块中的id尚未生效
+        Assert.assertEquals(2, this.ids.size());
+        this.feed("\n");
+        Assert.assertEquals("3", this.ids.get(this.ids.size() - 1));
+        Assert.assertEquals(1, this.events.size());
+    }
+
+    @Test
+    public void retry() {
+        this.feed("retry: 3000\nretry: 1.5\nretry: abc\nretry:\nretry: 99999999999999999999\nretry: 10\n\n");
+        Assert.assertEquals(2, this.retries.size());
+        Assert.assertEquals(3000L, (long) this.retries.get(0));
+        Assert.assertEquals(10L, (long) this.retries.get(1));
+        // 只有retry字段时不分发事件
+        Assert.assertTrue(this.events.isEmpty());
+    }
+
+    @Test
+    public void multiByteCharacterSplitAcrossChunks() {
+        byte[] bytes = "data: 中文\n\n".getBytes(StandardCharsets.UTF_8);
+        for (byte b : bytes) {
+            this.parser.feed(ByteBuffer.wrap(new byte[]{b}));
+        }
+        Assert.assertEquals(1, this.events.size());
+        Assert.assertEquals("中文", this.events.get(0).getData());
+    }
+}